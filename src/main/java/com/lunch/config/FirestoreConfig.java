@@ -5,6 +5,7 @@ import com.google.cloud.firestore.Firestore;
 import com.google.cloud.firestore.FirestoreOptions;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -16,6 +17,7 @@ import java.io.IOException;
  */
 @Slf4j
 @Configuration
+@ConditionalOnProperty(name = "lunch.storage.type", havingValue = "firestore", matchIfMissing = true)
 public class FirestoreConfig {
 
     @Value("${gcp.project-id:}")
@@ -1,6 +1,7 @@
 package com.lunch.config;
 
 import com.linecorp.bot.client.LineMessagingClient;
+import com.linecorp.bot.client.RetryableLineMessagingClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -17,4 +18,14 @@ public class LineConfig {
             .builder(channelToken)
             .build();
     }
+
+    /**
+     * push / multicast 專用的 client：每次呼叫帶入 X-Line-Retry-Key
+     */
+    @Bean
+    public RetryableLineMessagingClient retryableLineMessagingClient() {
+        return RetryableLineMessagingClient
+            .builder(channelToken)
+            .build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package com.lunch.controller;
+
+import com.lunch.dto.ApiResponse;
+import com.lunch.dto.ImportResult;
+import com.lunch.service.BulkTransferService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * 管理用 API：users / user_restaurants 整批匯入匯出、補建餐廳名稱唯一鍵
+ * 需在 X-Admin-Token header 帶入 lunch.admin.token；未設定 token 時一律拒絕。
+ * 只在使用 Firestore 存儲時提供。
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin")
+@ConditionalOnProperty(name = "lunch.storage.type", havingValue = "firestore", matchIfMissing = true)
+public class AdminController {
+
+    static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final BulkTransferService bulkTransferService;
+    private final String adminToken;
+    private final String legacyUsersPath;
+
+    public AdminController(
+            BulkTransferService bulkTransferService,
+            @Value("${lunch.admin.token:}") String adminToken,
+            @Value("${lunch.users.storage-path:users.json}") String legacyUsersPath) {
+        this.bulkTransferService = bulkTransferService;
+        this.adminToken = adminToken;
+        this.legacyUsersPath = legacyUsersPath;
+    }
+
+    /**
+     * 匯出集合為 NDJSON
+     * GET /api/admin/export/{collection}
+     */
+    @GetMapping("/export/{collection}")
+    public void export(
+            @RequestHeader(value = ADMIN_TOKEN_HEADER, required = false) String token,
+            @PathVariable String collection,
+            HttpServletResponse response) throws IOException {
+
+        if (!isAuthorized(token)) {
+            response.sendError(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+        if (!BulkTransferService.isSupported(collection)) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "不支援的集合: " + collection);
+            return;
+        }
+
+        log.info("📤 開始匯出: {}", collection);
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + collection + ".ndjson\"");
+        bulkTransferService.exportNdjson(collection, response.getOutputStream());
+    }
+
+    /**
+     * 從 NDJSON（或舊版 JSON 陣列）匯入集合
+     * POST /api/admin/import/{collection}
+     */
+    @PostMapping("/import/{collection}")
+    public ResponseEntity<ApiResponse<ImportResult>> importCollection(
+            @RequestHeader(value = ADMIN_TOKEN_HEADER, required = false) String token,
+            @PathVariable String collection,
+            HttpServletRequest request) throws IOException {
+
+        if (!isAuthorized(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("未授權"));
+        }
+        if (!BulkTransferService.isSupported(collection)) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("不支援的集合: " + collection));
+        }
+
+        log.info("📥 開始匯入: {}", collection);
+        ImportResult result = bulkTransferService.importNdjson(collection, request.getInputStream());
+        return ResponseEntity.ok(ApiResponse.success("匯入完成", result));
+    }
+
+    /**
+     * 匯入舊版 users.json（lunch.users.storage-path）
+     * POST /api/admin/import/users/legacy
+     */
+    @PostMapping("/import/users/legacy")
+    public ResponseEntity<ApiResponse<ImportResult>> importLegacyUsers(
+            @RequestHeader(value = ADMIN_TOKEN_HEADER, required = false) String token) throws IOException {
+
+        if (!isAuthorized(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("未授權"));
+        }
+
+        Path path = Path.of(legacyUsersPath);
+        if (!Files.isRegularFile(path)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error("找不到檔案: " + path));
+        }
+
+        log.info("📥 開始匯入舊版用戶檔案: {}", path);
+        try (InputStream in = Files.newInputStream(path)) {
+            ImportResult result = bulkTransferService.importNdjson(BulkTransferService.USERS, in);
+            return ResponseEntity.ok(ApiResponse.success("匯入完成", result));
+        }
+    }
+
+    /**
+     * 為唯一鍵上線前建立的有效餐廳補建名稱唯一鍵（可重複執行）
+     * POST /api/admin/backfill/restaurant-names
+     */
+    @PostMapping("/backfill/restaurant-names")
+    public ResponseEntity<ApiResponse<ImportResult>> backfillRestaurantNames(
+            @RequestHeader(value = ADMIN_TOKEN_HEADER, required = false) String token) throws IOException {
+
+        if (!isAuthorized(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("未授權"));
+        }
+
+        log.info("🔑 開始補建餐廳名稱唯一鍵");
+        ImportResult result = bulkTransferService.backfillRestaurantNameKeys();
+        return ResponseEntity.ok(ApiResponse.success("補建完成", result));
+    }
+
+    private boolean isAuthorized(String token) {
+        if (adminToken == null || adminToken.isBlank() || token == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,8 +2,13 @@ package com.lunch.controller;
 
 import com.lunch.service.LunchService;
 import com.lunch.service.LineMessagingService;
+import com.lunch.service.UserCacheStats;
+import com.lunch.service.UserReplica;
+import com.lunch.service.UserReplicaStats;
+import com.lunch.service.UserStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,12 +20,34 @@ public class LunchController {
     
     private final LunchService lunchService;
     private final LineMessagingService lineMessagingService;
+    private final UserStorageService userStorageService;
+    private final ObjectProvider<UserReplica> userReplica;
     
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("OK");
     }
     
+    /**
+     * 用戶快取命中率與淘汰數
+     */
+    @GetMapping("/users/cache/stats")
+    public ResponseEntity<UserCacheStats> userCacheStats() {
+        return ResponseEntity.ok(userStorageService.getCacheStats());
+    }
+
+    /**
+     * 活躍用戶 replica 的同步狀態（使用本機存儲時沒有 replica）
+     */
+    @GetMapping("/users/replica/stats")
+    public ResponseEntity<UserReplicaStats> userReplicaStats() {
+        UserReplica replica = userReplica.getIfAvailable();
+        if (replica == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(replica.stats());
+    }
+
     @GetMapping("/lunch/manual")
     public ResponseEntity<String> selectLunchManual() {
         String restaurant = lunchService.selectRandomRestaurant();
@@ -2,8 +2,13 @@ package com.lunch.controller;
 
 import com.lunch.dto.AddRestaurantRequest;
 import com.lunch.dto.ApiResponse;
+import com.lunch.dto.RecordVisitsRequest;
+import com.lunch.dto.RestaurantFields;
+import com.lunch.dto.RestaurantPage;
 import com.lunch.dto.RestaurantResponse;
 import com.lunch.dto.UpdateRestaurantRequest;
+import com.lunch.dto.VisitBatchResult;
+import com.lunch.exception.InvalidQueryException;
 import com.lunch.service.UserRestaurantService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -26,24 +31,51 @@ import java.util.List;
 @CrossOrigin(origins = "*") // 暫時允許所有來源，後續會在配置中統一設定
 public class RestaurantController {
 
+    /**
+     * 分頁時的預設與最大每頁筆數
+     */
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final UserRestaurantService restaurantService;
 
     /**
      * 取得用戶的所有餐廳
      * GET /api/users/{userId}/restaurants
+     * 帶 limit / pageToken / fields 任一參數時改為分頁回應（data 為 RestaurantPage）
      */
     @GetMapping
-    public ResponseEntity<ApiResponse<List<RestaurantResponse>>> getAllRestaurants(
+    public ResponseEntity<ApiResponse<?>> getAllRestaurants(
             @PathVariable String userId,
             @RequestParam(required = false) String category,
-            @RequestParam(required = false) List<String> tags) {
+            @RequestParam(required = false) List<String> tags,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String pageToken,
+            @RequestParam(required = false) List<String> fields) {
+
+        if (limit == null && pageToken == null && fields == null) {
+            log.info("📋 取得餐廳清單: userId={}, category={}, tags={}", userId, category, tags);
 
-        log.info("📋 取得餐廳清單: userId={}, category={}, tags={}", userId, category, tags);
+            List<RestaurantResponse> restaurants = restaurantService.getUserRestaurants(userId, category, tags);
 
-        List<RestaurantResponse> restaurants = restaurantService.getUserRestaurants(userId, category, tags);
+            return ResponseEntity.ok(
+                    ApiResponse.success("成功取得餐廳清單", restaurants)
+            );
+        }
+
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new InvalidQueryException("limit 必須介於 1 到 " + MAX_PAGE_SIZE);
+        }
+
+        log.info("📋 取得餐廳清單（分頁）: userId={}, category={}, tags={}, limit={}, fields={}",
+                userId, category, tags, pageSize, fields);
+
+        RestaurantPage page = restaurantService.getUserRestaurantPage(
+                userId, category, tags, pageSize, pageToken, RestaurantFields.parse(fields));
 
         return ResponseEntity.ok(
-                ApiResponse.success("成功取得餐廳清單", restaurants)
+                ApiResponse.success("成功取得餐廳清單", page)
         );
     }
 
@@ -160,4 +192,22 @@ public class RestaurantController {
                 ApiResponse.success("成功記錄造訪", null)
         );
     }
+
+    /**
+     * 批次記錄造訪（例如離線用戶端同步多筆打卡）
+     * POST /api/users/{userId}/restaurants/visits
+     */
+    @PostMapping("/visits")
+    public ResponseEntity<ApiResponse<VisitBatchResult>> recordVisits(
+            @PathVariable String userId,
+            @Valid @RequestBody RecordVisitsRequest request) {
+
+        log.info("📝 批次記錄造訪: userId={}, 筆數={}", userId, request.getVisits().size());
+
+        VisitBatchResult result = restaurantService.recordVisits(userId, request.getVisits());
+
+        return ResponseEntity.ok(
+                ApiResponse.success("成功記錄造訪", result)
+        );
+    }
 }
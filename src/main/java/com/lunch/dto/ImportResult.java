@@ -0,0 +1,36 @@
+package com.lunch.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 整批匯入（或名稱唯一鍵補建）結果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportResult {
+
+    /**
+     * 成功寫入的文件數
+     */
+    private long written;
+
+    /**
+     * 寫入失敗的文件數（含匯入餐廳時名稱唯一鍵寫入失敗）
+     */
+    private long failed;
+
+    /**
+     * 格式不符、缺少 ID，或（舊版 users.json）用戶已存在、（補建）唯一鍵已存在而略過的筆數
+     */
+    private long skipped;
+
+    /**
+     * 匯入餐廳時名稱唯一鍵已存在（同名餐廳已佔用該名稱，或重複匯入同一份檔案）而未寫入的筆數
+     */
+    private long conflicts;
+}
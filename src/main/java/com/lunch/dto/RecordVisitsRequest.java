@@ -0,0 +1,52 @@
+package com.lunch.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 批次記錄造訪請求 DTO（例如離線用戶端一次同步多筆打卡）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecordVisitsRequest {
+
+    /**
+     * 造訪記錄（必填）
+     * 上限與 Firestore 單一 transaction 的寫入上限一致，整批可以一次原子寫入
+     */
+    @NotEmpty(message = "造訪記錄不可為空")
+    @Size(max = 500, message = "單次最多 500 筆造訪記錄")
+    private List<@Valid Visit> visits;
+
+    /**
+     * 單筆造訪
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Visit {
+
+        /**
+         * 餐廳 ID（必填）
+         */
+        @NotBlank(message = "餐廳 ID 不可為空")
+        private String restaurantId;
+
+        /**
+         * 造訪時間（選填，預設為現在；晚於現在時視為現在）
+         */
+        private LocalDateTime visitedAt;
+    }
+}
@@ -0,0 +1,86 @@
+package com.lunch.dto;
+
+import com.lunch.exception.InvalidQueryException;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 餐廳列表的欄位選擇（fields=name,category）
+ * 欄位名稱與 RestaurantResponse 的屬性、以及 user_restaurants 文件的欄位相同（id 為 Document ID）。
+ */
+public final class RestaurantFields {
+
+    /**
+     * 所有可選欄位（輸出順序）
+     */
+    public static final List<String> ALL = List.of(
+            "id", "name", "category", "tags", "rating", "notes",
+            "visitCount", "lastVisit", "createdAt", "updatedAt");
+
+    private RestaurantFields() {
+    }
+
+    /**
+     * 解析 fields 參數
+     *
+     * @param fields 欄位名稱（null 或空 = 全部欄位）
+     * @return 依輸出順序排列的欄位
+     * @throws InvalidQueryException 如果包含未知的欄位
+     */
+    public static Set<String> parse(List<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return new LinkedHashSet<>(ALL);
+        }
+
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields) {
+            String name = field.trim();
+            if (!name.isEmpty() && !ALL.contains(name)) {
+                throw new InvalidQueryException("不支援的欄位: " + name);
+            }
+            requested.add(name);
+        }
+
+        Set<String> selected = new LinkedHashSet<>();
+        for (String name : ALL) {
+            if (requested.contains(name)) {
+                selected.add(name);
+            }
+        }
+        if (selected.isEmpty()) {
+            throw new InvalidQueryException("fields 不可為空");
+        }
+        return selected;
+    }
+
+    /**
+     * 只保留選擇的欄位
+     */
+    public static Map<String, Object> project(RestaurantResponse restaurant, Set<String> fields) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String field : fields) {
+            result.put(field, valueOf(restaurant, field));
+        }
+        return result;
+    }
+
+    private static Object valueOf(RestaurantResponse restaurant, String field) {
+        return switch (field) {
+            case "id" -> restaurant.getId();
+            case "name" -> restaurant.getName();
+            case "category" -> restaurant.getCategory();
+            case "tags" -> restaurant.getTags();
+            case "rating" -> restaurant.getRating();
+            case "notes" -> restaurant.getNotes();
+            case "visitCount" -> restaurant.getVisitCount();
+            case "lastVisit" -> restaurant.getLastVisit();
+            case "createdAt" -> restaurant.getCreatedAt();
+            case "updatedAt" -> restaurant.getUpdatedAt();
+            default -> throw new InvalidQueryException("不支援的欄位: " + field);
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package com.lunch.dto;
+
+import com.lunch.exception.InvalidQueryException;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 餐廳列表的一頁（依名稱排序）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RestaurantPage {
+
+    /**
+     * 本頁餐廳（只含選擇的欄位）
+     */
+    private List<Map<String, Object>> restaurants;
+
+    /**
+     * 下一頁的 pageToken（null = 已是最後一頁）
+     */
+    private String nextPageToken;
+
+    /**
+     * 分頁位置：上一頁最後一筆的名稱與 ID
+     */
+    public record Cursor(String name, String id) {
+    }
+
+    /**
+     * 以多取一筆的查詢結果組成一頁
+     *
+     * @param fetched 依名稱排序、最多 limit + 1 筆的餐廳
+     * @param limit   每頁筆數
+     * @param fields  選擇的欄位
+     */
+    public static RestaurantPage of(List<RestaurantResponse> fetched, int limit, Set<String> fields) {
+        boolean hasMore = fetched.size() > limit;
+        List<RestaurantResponse> page = hasMore ? fetched.subList(0, limit) : fetched;
+
+        return RestaurantPage.builder()
+                .restaurants(page.stream()
+                        .map(restaurant -> RestaurantFields.project(restaurant, fields))
+                        .collect(Collectors.toList()))
+                .nextPageToken(hasMore ? encodeToken(page.get(page.size() - 1)) : null)
+                .build();
+    }
+
+    /**
+     * 將最後一筆餐廳編碼為 pageToken
+     */
+    public static String encodeToken(RestaurantResponse last) {
+        String value = last.getName() + '\0' + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析 pageToken
+     *
+     * @return 分頁位置（token 為空時回傳 null = 第一頁）
+     * @throws InvalidQueryException 如果 token 格式錯誤
+     */
+    public static Cursor decodeToken(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf('\0');
+            if (separator < 0) {
+                throw new InvalidQueryException("無效的 pageToken");
+            }
+            return new Cursor(value.substring(0, separator), value.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidQueryException("無效的 pageToken", e);
+        }
+    }
+}
@@ -1,22 +1,27 @@
 package com.lunch.dto;
 
+import com.google.cloud.Timestamp;
+import com.lunch.model.UserRestaurant;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 /**
  * 餐廳響應 DTO
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class RestaurantResponse {
 
+    private static final ZoneId ZONE = ZoneId.of("Asia/Taipei");
+
     /**
      * 餐廳 ID
      */
@@ -66,4 +71,32 @@ public class RestaurantResponse {
      * 更新時間
      */
     private LocalDateTime updatedAt;
+
+    /**
+     * 將 UserRestaurant 轉換為 Response DTO
+     */
+    public static RestaurantResponse from(UserRestaurant restaurant) {
+        return RestaurantResponse.builder()
+                .id(restaurant.getId())
+                .name(restaurant.getName())
+                .category(restaurant.getCategory())
+                .tags(restaurant.getTags())
+                .rating(restaurant.getRating())
+                .notes(restaurant.getNotes())
+                .visitCount(restaurant.getVisitCount())
+                .lastVisit(toLocalDateTime(restaurant.getLastVisit()))
+                .createdAt(toLocalDateTime(restaurant.getCreatedAt()))
+                .updatedAt(toLocalDateTime(restaurant.getUpdatedAt()))
+                .build();
+    }
+
+    /**
+     * 將 Firestore Timestamp 轉換為 LocalDateTime（台北時間）
+     */
+    public static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(timestamp.toDate().toInstant(), ZONE);
+    }
 }
@@ -0,0 +1,28 @@
+package com.lunch.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批次記錄造訪結果 DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VisitBatchResult {
+
+    /**
+     * 已記錄的造訪筆數
+     */
+    private int recorded;
+
+    /**
+     * 不存在或不屬於該用戶而略過的餐廳 ID
+     */
+    private List<String> notFound;
+}
@@ -41,6 +41,17 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error(e.getMessage()));
     }
 
+    /**
+     * 處理查詢參數錯誤異常
+     */
+    @ExceptionHandler(InvalidQueryException.class)
+    public ResponseEntity<ApiResponse<Void>> handleInvalidQuery(InvalidQueryException e) {
+        log.warn("查詢參數錯誤: {}", e.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
     /**
      * 處理驗證失敗異常
      */
@@ -0,0 +1,15 @@
+package com.lunch.exception;
+
+/**
+ * 查詢參數錯誤異常（例如無效的 pageToken 或 fields）
+ */
+public class InvalidQueryException extends RuntimeException {
+
+    public InvalidQueryException(String message) {
+        super(message);
+    }
+
+    public InvalidQueryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
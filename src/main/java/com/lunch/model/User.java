@@ -46,4 +46,18 @@ public class User {
      */
     @Builder.Default
     private Boolean active = true;
+
+    /**
+     * 深層複本（偏好設定與其中的列表也一併複製）
+     */
+    public User copy() {
+        return User.builder()
+                .userId(userId)
+                .displayName(displayName)
+                .registeredAt(registeredAt)
+                .lastActiveAt(lastActiveAt)
+                .preferences(preferences != null ? preferences.copy() : null)
+                .active(active)
+                .build();
+    }
 }
@@ -46,4 +46,17 @@ public class UserPreferences {
      * 自訂訊息前綴
      */
     private String customMessage;
+
+    /**
+     * 深層複本（列表也一併複製）
+     */
+    public UserPreferences copy() {
+        return UserPreferences.builder()
+                .restaurants(restaurants != null ? new ArrayList<>(restaurants) : null)
+                .excludeRestaurants(excludeRestaurants != null ? new ArrayList<>(excludeRestaurants) : null)
+                .notificationEnabled(notificationEnabled)
+                .notificationTime(notificationTime)
+                .customMessage(customMessage)
+                .build();
+    }
 }
@@ -81,4 +81,24 @@ public class UserRestaurant {
      */
     @Builder.Default
     private Boolean active = true;
+
+    /**
+     * 深層複本（標籤列表也一併複製）
+     */
+    public UserRestaurant copy() {
+        return UserRestaurant.builder()
+                .id(id)
+                .userId(userId)
+                .name(name)
+                .category(category)
+                .tags(tags != null ? new ArrayList<>(tags) : null)
+                .rating(rating)
+                .notes(notes)
+                .visitCount(visitCount)
+                .lastVisit(lastVisit)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .active(active)
+                .build();
+    }
 }
@@ -0,0 +1,41 @@
+package com.lunch.notification;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 一次批次發送的統計結果
+ */
+@Getter
+@AllArgsConstructor
+public class DispatchResult {
+
+    /**
+     * 成功數
+     */
+    private final int successCount;
+
+    /**
+     * 失敗數（包含產生訊息失敗與發送失敗）
+     */
+    private final int failCount;
+
+    /**
+     * 略過數（今日已送達的用戶）
+     */
+    private final int skippedCount;
+
+    /**
+     * 總耗時（毫秒）
+     */
+    private final long elapsedMillis;
+
+    /**
+     * 是否讀完所有接收者（false = 讀取接收者途中失敗，之後的用戶沒有收到通知）
+     */
+    private final boolean complete;
+
+    public int getTotal() {
+        return successCount + failCount + skippedCount;
+    }
+}
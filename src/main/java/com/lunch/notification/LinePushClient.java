@@ -0,0 +1,165 @@
+package com.lunch.notification;
+
+import com.linecorp.bot.client.RetryableLineMessagingClient;
+import com.linecorp.bot.client.exception.ConflictException;
+import com.linecorp.bot.client.exception.GeneralLineMessagingException;
+import com.linecorp.bot.client.exception.LineServerException;
+import com.linecorp.bot.client.exception.TooManyRequestsException;
+import com.linecorp.bot.model.Multicast;
+import com.linecorp.bot.model.PushMessage;
+import com.linecorp.bot.model.message.TextMessage;
+import com.linecorp.bot.model.response.BotApiResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * LINE push / multicast 發送管線
+ * 每次請求先經過 token bucket 限流；遇到 429 或 5xx（以及網路錯誤）時以 jittered exponential backoff 重試。
+ * 每次邏輯發送產生一把新的 X-Line-Retry-Key，只在這次發送的重試之間共用，確保 LINE 端不會重複投遞；
+ * 內容相同的另一次發送（例如隔天同樣的提醒）會使用不同的 key。
+ */
+@Slf4j
+@Component
+public class LinePushClient {
+
+    private final RetryableLineMessagingClient lineMessagingClient;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "line-push-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LinePushClient(
+            RetryableLineMessagingClient lineMessagingClient,
+            @Value("${lunch.notification.rate-limit.permits-per-second:2000}") double permitsPerSecond,
+            @Value("${lunch.notification.rate-limit.burst:200}") double burst,
+            @Value("${lunch.notification.retry.max-attempts:5}") int maxAttempts,
+            @Value("${lunch.notification.retry.base-delay-ms:500}") long baseDelayMillis,
+            @Value("${lunch.notification.retry.max-delay-ms:30000}") long maxDelayMillis) {
+        this.lineMessagingClient = lineMessagingClient;
+        this.rateLimiter = new TokenBucketRateLimiter(permitsPerSecond, Math.max(1, burst));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = Math.max(1, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+    }
+
+    /**
+     * 發送訊息給單一用戶（呼叫端會在限流時阻塞）
+     */
+    public CompletableFuture<BotApiResponse> push(String userId, String message) throws InterruptedException {
+        TextMessage textMessage = new TextMessage(message);
+        return execute(retryKey -> lineMessagingClient.pushMessage(retryKey, new PushMessage(userId, textMessage)));
+    }
+
+    /**
+     * 以 multicast 發送相同訊息給多位用戶（呼叫端會在限流時阻塞）
+     */
+    public CompletableFuture<BotApiResponse> multicast(Collection<String> userIds, String message)
+            throws InterruptedException {
+        Set<String> recipients = new LinkedHashSet<>(userIds);
+        TextMessage textMessage = new TextMessage(message);
+        return execute(retryKey -> lineMessagingClient.multicast(retryKey, new Multicast(recipients, textMessage)));
+    }
+
+    private CompletableFuture<BotApiResponse> execute(Function<UUID, CompletableFuture<BotApiResponse>> send)
+            throws InterruptedException {
+        rateLimiter.acquire();
+
+        // 每次邏輯發送一把新的 key，所有重試沿用同一把
+        UUID retryKey = UUID.randomUUID();
+        CompletableFuture<BotApiResponse> result = new CompletableFuture<>();
+        attempt(() -> send.apply(retryKey), 1, result);
+        return result;
+    }
+
+    private void attempt(Supplier<CompletableFuture<BotApiResponse>> call, int attempt,
+                         CompletableFuture<BotApiResponse> result) {
+        CompletableFuture<BotApiResponse> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((response, error) -> {
+            if (error == null) {
+                result.complete(response);
+                return;
+            }
+
+            Throwable cause = unwrap(error);
+            if (cause instanceof ConflictException && attempt > 1) {
+                // 先前逾時的請求其實已被 LINE 接受，retry key 擋下了重複投遞
+                log.info("ℹ️ 重試請求已由先前的嘗試送達，略過重複投遞");
+                result.complete(null);
+                return;
+            }
+            if (!isRetryable(cause) || attempt >= maxAttempts) {
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            long delayMillis = backoffMillis(attempt) + TimeUnit.NANOSECONDS.toMillis(rateLimiter.reserve());
+            log.warn("⚠️ LINE 請求失敗（第 {} 次），{} ms 後重試: {}", attempt, delayMillis, cause.getMessage());
+            try {
+                retryScheduler.schedule(() -> attempt(call, attempt + 1, result), delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    /**
+     * Full jitter：在 [0, min(max, base * 2^(attempt-1))] 之間隨機取值
+     */
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * SDK 只把 500 轉為 LineServerException，其餘 5xx（502/503/504）與無法解析的錯誤回應
+     * 都會變成 GeneralLineMessagingException，因此一併視為可重試
+     */
+    private static boolean isRetryable(Throwable cause) {
+        return cause instanceof TooManyRequestsException
+                || cause instanceof LineServerException
+                || cause instanceof GeneralLineMessagingException
+                || cause instanceof IOException;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,256 @@
+package com.lunch.notification;
+
+import com.linecorp.bot.model.response.BotApiResponse;
+import com.lunch.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 通知扇出發送器
+ * 同時保持最多 max-in-flight 個請求在途，不再逐一等待每位用戶的回應。
+ * 訊息內容完全相同的用戶會合併為 multicast（每批最多 500 人），只有獨特的訊息才逐一 push。
+ * 指定 runKey 時，每筆通知的計畫與完成都會寫入 outbox，已送達的用戶不會重複發送。
+ */
+@Slf4j
+@Component
+public class NotificationDispatcher {
+
+    /**
+     * LINE multicast 單次最多接收者數
+     */
+    static final int MAX_MULTICAST_RECIPIENTS = 500;
+
+    /**
+     * 等待湊批的通知上限；超過時先送出所有分組，讓串流輸入的記憶體用量不隨用戶數成長
+     */
+    static final int MAX_BUFFERED_TASKS = 2_000;
+
+    private final LinePushClient linePushClient;
+    private final NotificationOutbox outbox;
+    private final int maxInFlight;
+    private final int multicastBatchSize;
+
+    public NotificationDispatcher(
+            LinePushClient linePushClient,
+            NotificationOutbox outbox,
+            @Value("${lunch.notification.max-in-flight:16}") int maxInFlight,
+            @Value("${lunch.notification.multicast-batch-size:500}") int multicastBatchSize) {
+        this.linePushClient = linePushClient;
+        this.outbox = outbox;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.multicastBatchSize = Math.max(1, Math.min(MAX_MULTICAST_RECIPIENTS, multicastBatchSize));
+    }
+
+    /**
+     * 依序為每位用戶產生通知並非同步發送，全部完成後才返回
+     *
+     * @param runKey  outbox 批次 key（null = 不記錄，例如臨時的統一訊息）
+     * @param users   接收者
+     * @param planner 將用戶轉換為通知（產生訊息失敗時可拋出例外，計入失敗數）
+     * @return 發送統計
+     */
+    public DispatchResult dispatch(String runKey, Iterable<User> users, Function<User, NotificationTask> planner) {
+        return run(runKey, users, User::getUserId, user -> plan(runKey, user, planner));
+    }
+
+    /**
+     * 重送 outbox 中尚未完成的通知（沿用當初產生的訊息）
+     *
+     * @param runKey outbox 批次 key
+     * @param tasks  未完成的通知
+     * @return 發送統計
+     */
+    public DispatchResult resume(String runKey, Collection<NotificationTask> tasks) {
+        return run(runKey, tasks, NotificationTask::getUserId,
+                task -> outbox.isDone(runKey, task.getUserId()) ? null : task);
+    }
+
+    private <T> DispatchResult run(String runKey, Iterable<T> items, Function<T, String> idOf,
+                                   Function<T, NotificationTask> planner) {
+        long start = System.nanoTime();
+        Run run = new Run(runKey, new Semaphore(maxInFlight));
+
+        // 依訊息內容分組，等待湊滿一批再以 multicast 發送
+        Map<String, List<NotificationTask>> groups = new LinkedHashMap<>();
+
+        try {
+            try {
+                dispatchAll(items, idOf, planner, run, groups);
+            } catch (RuntimeException e) {
+                // 讀取接收者失敗（例如分頁查詢重試後仍失敗）：送出已排入的通知，並把這次扇出記為未完成
+                log.error("❌ 讀取接收者失敗，扇出未完成: {}", e.getMessage(), e);
+                run.complete = false;
+            }
+
+            // 送出剩餘的分組：只有一位接收者的改用 push
+            flush(groups, run);
+
+            // 取回所有許可 = 等待所有在途請求完成
+            run.permits.acquire(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("⚠️ 通知發送被中斷，已發送的請求仍會在背景完成");
+            run.complete = false;
+        }
+
+        if (run.tracked()) {
+            outbox.flush();
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return new DispatchResult(run.successCount.get(), run.failCount.get(),
+                run.skippedCount.get(), elapsedMillis, run.complete);
+    }
+
+    private <T> void dispatchAll(Iterable<T> items, Function<T, String> idOf, Function<T, NotificationTask> planner,
+                                 Run run, Map<String, List<NotificationTask>> groups) throws InterruptedException {
+        int buffered = 0;
+        for (T item : items) {
+            NotificationTask task;
+            try {
+                task = planner.apply(item);
+            } catch (Exception e) {
+                log.error("❌ 產生通知失敗 (userId: {}): {}", idOf.apply(item), e.getMessage(), e);
+                run.failCount.incrementAndGet();
+                continue;
+            }
+
+            if (task == null) {
+                run.skippedCount.incrementAndGet();
+                continue;
+            }
+
+            List<NotificationTask> group = groups.computeIfAbsent(task.getMessage(), k -> new ArrayList<>());
+            group.add(task);
+            buffered++;
+            if (group.size() >= multicastBatchSize) {
+                groups.remove(task.getMessage());
+                buffered -= group.size();
+                run.permits.acquire();
+                send(group, run);
+            } else if (buffered >= MAX_BUFFERED_TASKS) {
+                flush(groups, run);
+                buffered = 0;
+            }
+        }
+    }
+
+    private void flush(Map<String, List<NotificationTask>> groups, Run run) throws InterruptedException {
+        for (List<NotificationTask> group : groups.values()) {
+            run.permits.acquire();
+            send(group, run);
+        }
+        groups.clear();
+    }
+
+    /**
+     * 已送達的用戶回傳 null；先前計畫過但未完成的沿用同一則訊息，其餘重新產生並記錄到 outbox
+     */
+    private NotificationTask plan(String runKey, User user, Function<User, NotificationTask> planner) {
+        if (runKey == null || !outbox.isEnabled()) {
+            return planner.apply(user);
+        }
+        if (outbox.isDone(runKey, user.getUserId())) {
+            log.debug("ℹ️ 今日已送達，略過: {}", user.getUserId());
+            return null;
+        }
+
+        Optional<NotificationTask> pending = outbox.pendingTask(runKey, user.getUserId());
+        if (pending.isPresent()) {
+            return pending.get();
+        }
+
+        NotificationTask task = planner.apply(user);
+        outbox.recordPlanned(runKey, task);
+        return task;
+    }
+
+    private void send(List<NotificationTask> group, Run run) throws InterruptedException {
+        NotificationTask first = group.get(0);
+        try {
+            request(group).whenComplete((response, error) -> {
+                try {
+                    if (error == null) {
+                        logSuccess(group);
+                        run.successCount.addAndGet(group.size());
+                        if (run.tracked()) {
+                            outbox.recordDone(run.runKey, group.stream().map(NotificationTask::getUserId).toList());
+                        }
+                    } else {
+                        log.error("❌ 發送訊息失敗 (userId: {}, 接收者數: {}): {}",
+                                first.getUserId(), group.size(), error.getMessage(), error);
+                        run.failCount.addAndGet(group.size());
+                    }
+                } catch (RuntimeException e) {
+                    log.error("❌ 記錄發送結果失敗 (userId: {}): {}", first.getUserId(), e.getMessage(), e);
+                } finally {
+                    run.permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("❌ 發送訊息失敗 (userId: {}, 接收者數: {}): {}",
+                    first.getUserId(), group.size(), e.getMessage(), e);
+            run.failCount.addAndGet(group.size());
+            run.permits.release();
+        }
+    }
+
+    /**
+     * 單一接收者使用 push，多位接收者使用 multicast
+     */
+    private CompletableFuture<BotApiResponse> request(List<NotificationTask> group) throws InterruptedException {
+        String message = group.get(0).getMessage();
+        if (group.size() == 1) {
+            return linePushClient.push(group.get(0).getUserId(), message);
+        }
+
+        List<String> recipients = new ArrayList<>(group.size());
+        group.forEach(task -> recipients.add(task.getUserId()));
+        return linePushClient.multicast(recipients, message);
+    }
+
+    private void logSuccess(List<NotificationTask> group) {
+        NotificationTask task = group.get(0);
+        if (group.size() > 1) {
+            log.info("✅ 已群發訊息給 {} 位使用者 (餐廳: {})", group.size(),
+                    task.getRestaurant() != null ? task.getRestaurant() : "-");
+        } else if (task.getRestaurant() != null) {
+            log.info("✅ 已發送個性化推薦給使用者: {} (餐廳: {})", task.getUserId(), task.getRestaurant());
+        } else {
+            log.info("✅ 已成功發送訊息給使用者: {}", task.getUserId());
+        }
+    }
+
+    /**
+     * 單次扇出的執行狀態
+     */
+    private class Run {
+        private final String runKey;
+        private final Semaphore permits;
+        private final AtomicInteger successCount = new AtomicInteger();
+        private final AtomicInteger failCount = new AtomicInteger();
+        private final AtomicInteger skippedCount = new AtomicInteger();
+        private boolean complete = true;
+
+        private Run(String runKey, Semaphore permits) {
+            this.runKey = runKey;
+            this.permits = permits;
+        }
+
+        private boolean tracked() {
+            return runKey != null && outbox.isEnabled();
+        }
+    }
+}
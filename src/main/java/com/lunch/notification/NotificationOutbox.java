@@ -0,0 +1,384 @@
+package com.lunch.notification;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 通知 outbox（本機 append-only journal）
+ * 每筆計畫發送的通知與其完成狀態都會依序寫入 memory-mapped 檔案，
+ * 行程被回收後重新啟動時，只需重送尚未完成的項目；同一天重複觸發也不會重複發送。
+ *
+ * <p>寫入只是對映射記憶體的循序複製，行程異常終止時資料仍留在 OS page cache；
+ * 落盤（force）由背景執行緒依 flush-interval-ms 批次進行，不會拖慢扇出。</p>
+ */
+@Slf4j
+@Component
+public class NotificationOutbox {
+
+    private static final byte PLANNED = 1;
+    private static final byte DONE = 2;
+
+    /**
+     * 紀錄標頭：type(1) + payload 長度(4) + CRC32(4)
+     */
+    private static final int HEADER_BYTES = 9;
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Taipei");
+
+    private final boolean enabled;
+    private final Path path;
+    private final int initialCapacity;
+    private final long flushIntervalMillis;
+
+    /**
+     * runKey → 該批次的狀態（只保留當天的批次）
+     */
+    private final Map<String, RunState> runs = new LinkedHashMap<>();
+
+    private FileChannel channel;
+    private MappedByteBuffer journal;
+    private boolean dirty;
+    private ScheduledExecutorService flusher;
+
+    public NotificationOutbox(
+            @Value("${lunch.notification.outbox.enabled:true}") boolean enabled,
+            @Value("${lunch.notification.outbox.path:data/notification-outbox.journal}") String path,
+            @Value("${lunch.notification.outbox.capacity-mb:16}") int capacityMb,
+            @Value("${lunch.notification.outbox.flush-interval-ms:100}") long flushIntervalMillis) {
+        this.enabled = enabled;
+        this.path = Paths.get(path).toAbsolutePath();
+        this.initialCapacity = Math.max(1, capacityMb) * 1024 * 1024;
+        this.flushIntervalMillis = Math.max(10, flushIntervalMillis);
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            log.info("ℹ️ 通知 outbox 已停用");
+            return;
+        }
+
+        Files.createDirectories(path.getParent());
+        if (Files.exists(path)) {
+            recover();
+        }
+        // 丟棄前幾天的批次，重新寫出精簡後的 journal
+        compact(0);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "notification-outbox-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+        int pending = runs.values().stream().mapToInt(run -> run.pending.size()).sum();
+        log.info("✅ 通知 outbox 已開啟: {} (未完成: {})", path, pending);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        synchronized (this) {
+            flush();
+            closeChannel();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 產生當天某類通知的批次 key
+     */
+    public String todayRunKey(String kind) {
+        return kind + "@" + LocalDate.now(ZONE);
+    }
+
+    /**
+     * 用戶在此批次中是否已送達
+     */
+    public synchronized boolean isDone(String runKey, String userId) {
+        RunState run = runs.get(runKey);
+        return run != null && run.done.contains(userId);
+    }
+
+    /**
+     * 取得先前已計畫但尚未完成的通知（重送時沿用同一則訊息）
+     */
+    public synchronized Optional<NotificationTask> pendingTask(String runKey, String userId) {
+        RunState run = runs.get(runKey);
+        return run == null ? Optional.empty() : Optional.ofNullable(run.pending.get(userId));
+    }
+
+    /**
+     * 取得當天所有未完成的通知
+     *
+     * @return runKey → 未完成的通知
+     */
+    public synchronized Map<String, List<NotificationTask>> unfinishedRuns() {
+        Map<String, List<NotificationTask>> unfinished = new LinkedHashMap<>();
+        runs.forEach((runKey, run) -> {
+            if (!run.pending.isEmpty()) {
+                unfinished.put(runKey, new ArrayList<>(run.pending.values()));
+            }
+        });
+        return unfinished;
+    }
+
+    /**
+     * 記錄計畫發送的通知
+     */
+    public synchronized void recordPlanned(String runKey, NotificationTask task) {
+        if (!enabled) {
+            return;
+        }
+        if (!runs.containsKey(runKey) && !runs.isEmpty()) {
+            // 新批次開始時順便清掉前幾天的紀錄
+            compact(0);
+        }
+        append(PLANNED, encodePlanned(runKey, task));
+        apply(PLANNED, runKey, task, List.of());
+    }
+
+    /**
+     * 記錄一批已送達的用戶（multicast 一次寫入一筆紀錄）
+     */
+    public synchronized void recordDone(String runKey, Collection<String> userIds) {
+        if (!enabled || userIds.isEmpty()) {
+            return;
+        }
+        append(DONE, encodeDone(runKey, userIds));
+        apply(DONE, runKey, null, userIds);
+    }
+
+    /**
+     * 將映射記憶體中的變更落盤
+     */
+    public synchronized void flush() {
+        if (journal != null && dirty) {
+            journal.force();
+            dirty = false;
+        }
+    }
+
+    private void apply(byte type, String runKey, NotificationTask task, Collection<String> doneUserIds) {
+        RunState run = runs.computeIfAbsent(runKey, k -> new RunState());
+        if (type == PLANNED) {
+            if (!run.done.contains(task.getUserId())) {
+                run.pending.put(task.getUserId(), task);
+            }
+        } else {
+            for (String userId : doneUserIds) {
+                run.pending.remove(userId);
+                run.done.add(userId);
+            }
+        }
+    }
+
+    private void append(byte type, byte[] payload) {
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (journal.remaining() < recordBytes + 1) {
+            compact(recordBytes);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        // 先寫 payload 再寫 type，type 不為 0 即代表整筆紀錄已完整寫入
+        int start = journal.position();
+        journal.position(start + 1);
+        journal.putInt(payload.length);
+        journal.putInt((int) crc.getValue());
+        journal.put(payload);
+        journal.put(start, type);
+        dirty = true;
+    }
+
+    /**
+     * 讀取既有 journal 重建狀態；遇到未寫完或 CRC 不符的紀錄即停止
+     */
+    private void recover() throws IOException {
+        try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            int records = 0;
+
+            while (buffer.remaining() >= HEADER_BYTES) {
+                byte type = buffer.get();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if ((type != PLANNED && type != DONE) || length < 0 || length > buffer.remaining()) {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("⚠️ outbox 紀錄 CRC 不符，忽略其後的內容");
+                    break;
+                }
+
+                decode(type, payload);
+                records++;
+            }
+            log.info("📂 已從 outbox 復原 {} 筆紀錄", records);
+        }
+    }
+
+    /**
+     * 只保留當天的批次並寫入新的 journal 檔，再以 atomic rename 取代舊檔
+     */
+    private void compact(int extraBytes) {
+        String today = "@" + LocalDate.now(ZONE);
+        runs.keySet().removeIf(runKey -> !runKey.endsWith(today));
+
+        try {
+            ByteArrayOutputStream live = new ByteArrayOutputStream();
+            for (Map.Entry<String, RunState> entry : runs.entrySet()) {
+                RunState run = entry.getValue();
+                if (!run.done.isEmpty()) {
+                    writeRecord(live, DONE, encodeDone(entry.getKey(), run.done));
+                }
+                for (NotificationTask task : run.pending.values()) {
+                    writeRecord(live, PLANNED, encodePlanned(entry.getKey(), task));
+                }
+            }
+
+            long capacity = Math.max(initialCapacity, 2L * (live.size() + extraBytes + HEADER_BYTES));
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IOException("outbox journal 超過單一映射上限");
+            }
+
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.deleteIfExists(temp);
+            FileChannel newChannel = FileChannel.open(temp,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer newJournal = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            newJournal.put(live.toByteArray());
+            newJournal.force();
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            closeChannel();
+            channel = newChannel;
+            journal = newJournal;
+            dirty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("無法壓縮通知 outbox", e);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("⚠️ 關閉 outbox 檔案失敗: {}", e.getMessage());
+            }
+            channel = null;
+            journal = null;
+        }
+    }
+
+    private static void writeRecord(ByteArrayOutputStream out, byte type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(type);
+        data.writeInt(payload.length);
+        data.writeInt((int) crc.getValue());
+        data.write(payload);
+    }
+
+    private static byte[] encodePlanned(String runKey, NotificationTask task) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(runKey);
+            out.writeUTF(task.getUserId());
+            out.writeUTF(task.getMessage());
+            out.writeBoolean(task.getRestaurant() != null);
+            if (task.getRestaurant() != null) {
+                out.writeUTF(task.getRestaurant());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeDone(String runKey, Collection<String> userIds) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(runKey);
+            out.writeInt(userIds.size());
+            for (String userId : userIds) {
+                out.writeUTF(userId);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void decode(byte type, byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            String runKey = in.readUTF();
+            if (type == PLANNED) {
+                String userId = in.readUTF();
+                String message = in.readUTF();
+                String restaurant = in.readBoolean() ? in.readUTF() : null;
+                apply(PLANNED, runKey, new NotificationTask(userId, message, restaurant), List.of());
+            } else {
+                int count = in.readInt();
+                List<String> userIds = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    userIds.add(in.readUTF());
+                }
+                apply(DONE, runKey, null, userIds);
+            }
+        }
+    }
+
+    /**
+     * 單一批次的狀態
+     */
+    private static class RunState {
+        private final Map<String, NotificationTask> pending = new LinkedHashMap<>();
+        private final Set<String> done = new HashSet<>();
+    }
+}
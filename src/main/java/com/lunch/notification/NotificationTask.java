@@ -0,0 +1,27 @@
+package com.lunch.notification;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 單筆待發送的通知
+ */
+@Getter
+@AllArgsConstructor
+public class NotificationTask {
+
+    /**
+     * 接收者 LINE User ID
+     */
+    private final String userId;
+
+    /**
+     * 已渲染完成的訊息內容
+     */
+    private final String message;
+
+    /**
+     * 推薦的餐廳（僅用於日誌，可為 null）
+     */
+    private final String restaurant;
+}
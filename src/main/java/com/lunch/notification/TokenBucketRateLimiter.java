@@ -0,0 +1,54 @@
+package com.lunch.notification;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket 限流器
+ * 以固定速率補充 token，最多累積 capacity 個；token 不足時以「預支」方式排隊，
+ * 呼叫端可取得需要等待的時間自行排程，或直接阻塞等待。
+ */
+public class TokenBucketRateLimiter {
+
+    private final double permitsPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucketRateLimiter(double permitsPerSecond, double capacity) {
+        if (permitsPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("permitsPerSecond 必須大於 0，capacity 至少為 1");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 預約一個 token
+     *
+     * @return 需要等待的奈秒數（0 = 可立即使用）
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-tokens / permitsPerNano);
+    }
+
+    /**
+     * 取得一個 token，不足時阻塞等待
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
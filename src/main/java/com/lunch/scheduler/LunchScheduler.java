@@ -1,5 +1,6 @@
 package com.lunch.scheduler;
 
+import com.lunch.model.User;
 import com.lunch.service.LunchService;
 import com.lunch.service.LineMessagingService;
 import lombok.RequiredArgsConstructor;
@@ -8,7 +9,9 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 @Slf4j
 @Component
@@ -17,13 +20,34 @@ public class LunchScheduler {
 
     private final LunchService lunchService;
     private final LineMessagingService lineMessagingService;
+    private final NotificationTimingWheel notificationTimingWheel;
 
     /**
-     * 每個平日 11:50 自動發送個性化午餐推薦
+     * 每分鐘推進通知時間輪，只發送給通知時間落在這一分鐘的用戶
+     * （UserPreferences.notificationTime，未設定者為 11:50）
+     */
+    @Scheduled(cron = "${lunch.notification.scheduler.tick-cron:0 * * * * *}", zone = "Asia/Taipei")
+    public void dispatchDueNotifications() {
+        try {
+            List<User> dueUsers = notificationTimingWheel.advance(LocalDateTime.now(ZoneId.of("Asia/Taipei")));
+            if (dueUsers.isEmpty()) {
+                return;
+            }
+
+            log.info("⏰ 通知時間到，發送給 {} 位用戶", dueUsers.size());
+            lineMessagingService.sendPersonalizedLunchNotifications(dueUsers);
+
+        } catch (Exception e) {
+            log.error("❌ 定時午餐通知發送失敗", e);
+        }
+    }
+
+    /**
+     * 一次發送給所有啟用通知的用戶（舊版單一排程，預設停用）
+     * 設定 lunch.notification.scheduler.daily-cron（例如 "0 50 11 * * *"）即可恢復
      * Cron 表達式: "秒 分 時 日 月 星期"
-     * 0 50 11 * * 1-5 = 週一到週五的 11:50:00
      */
-    @Scheduled(cron = "0 50 11 * * *", zone = "Asia/Taipei")
+    @Scheduled(cron = "${lunch.notification.scheduler.daily-cron:-}", zone = "Asia/Taipei")
     public void sendDailyLunchNotification() {
         String currentTime = LocalDateTime.now()
             .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
@@ -0,0 +1,206 @@
+package com.lunch.scheduler;
+
+import com.lunch.model.User;
+import com.lunch.model.UserPreferences;
+import com.lunch.service.UserPreferencesChangedEvent;
+import com.lunch.service.UserStorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 每日通知時間輪
+ * 一天切成 1440 個分鐘格，每位啟用通知的用戶依 UserPreferences.notificationTime（HH:mm，預設 11:50）
+ * 放入對應的格子；每分鐘推進一次指針，只取出到期格子內的用戶，將流量分散到整個午餐時段。
+ * 偏好變更會依 UserPreferencesChangedEvent 帶來的寫入後用戶即時搬移格子（不再讀取），
+ * 並定期整批重新載入以同步其他執行個體的變更。
+ */
+@Slf4j
+@Component
+public class NotificationTimingWheel {
+
+    private static final int SLOTS = 24 * 60;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("H:mm");
+
+    private final UserStorageService userStorageService;
+    private final int defaultSlot;
+
+    /**
+     * 每個分鐘格內的用戶（userId → User）
+     */
+    private final List<Map<String, User>> buckets = new ArrayList<>(SLOTS);
+
+    /**
+     * userId → 所在的分鐘格
+     */
+    private final Map<String, Integer> slotOfUser = new HashMap<>();
+
+    /**
+     * 指針：今天最後一個已處理的分鐘格
+     */
+    private LocalDate cursorDate;
+    private int cursor = -1;
+
+    public NotificationTimingWheel(
+            UserStorageService userStorageService,
+            @Value("${lunch.notification.scheduler.default-time:11:50}") String defaultTime) {
+        this.userStorageService = userStorageService;
+        for (int i = 0; i < SLOTS; i++) {
+            buckets.add(new LinkedHashMap<>());
+        }
+        this.defaultSlot = toSlot(LocalTime.parse(defaultTime, TIME_FORMAT));
+    }
+
+    /**
+     * 啟動時載入所有啟用通知的用戶
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        reload();
+    }
+
+    /**
+     * 定期整批重新載入（同步其他執行個體或 Firestore Console 的直接修改）
+     */
+    @Scheduled(fixedDelayString = "${lunch.notification.scheduler.reload-interval-ms:300000}",
+            initialDelayString = "${lunch.notification.scheduler.reload-interval-ms:300000}")
+    public void reload() {
+        try {
+            List<User> users = userStorageService.getNotificationEnabledUsers();
+            rebuild(users);
+            log.info("🕰️ 通知時間輪已載入 {} 位用戶", users.size());
+        } catch (Exception e) {
+            log.error("❌ 載入通知時間輪失敗", e);
+        }
+    }
+
+    /**
+     * 用戶偏好變更時依事件中的寫入後用戶重新放置（不讀取 Firestore）；
+     * 事件沒有帶出寫入後的用戶時維持原位置，等下一次整批重新載入
+     */
+    @EventListener
+    public void onUserPreferencesChanged(UserPreferencesChangedEvent event) {
+        if (event.getUser() != null) {
+            schedule(event.getUser());
+        } else {
+            log.debug("ℹ️ 用戶 {} 的偏好變更未帶出寫入後的狀態，等待下次重新載入", event.getUserId());
+        }
+    }
+
+    /**
+     * 依用戶偏好放入（或搬移到）對應的分鐘格；未啟用通知的用戶會被移除
+     */
+    public synchronized void schedule(User user) {
+        unschedule(user.getUserId());
+        if (!isNotificationEnabled(user)) {
+            return;
+        }
+
+        int slot = slotFor(user);
+        buckets.get(slot).put(user.getUserId(), user);
+        slotOfUser.put(user.getUserId(), slot);
+    }
+
+    /**
+     * 從時間輪移除用戶
+     */
+    public synchronized void unschedule(String userId) {
+        Integer slot = slotOfUser.remove(userId);
+        if (slot != null) {
+            buckets.get(slot).remove(userId);
+        }
+    }
+
+    /**
+     * 以整批用戶重建時間輪（指針位置不變）
+     */
+    public synchronized void rebuild(Collection<User> users) {
+        buckets.forEach(Map::clear);
+        slotOfUser.clear();
+        users.forEach(this::schedule);
+    }
+
+    /**
+     * 推進指針到目前的分鐘，取出這段期間到期的用戶
+     * 若上次推進後錯過了幾分鐘（例如 GC 停頓），會一併補發；跨日時從今天的第一格開始
+     *
+     * @param now 目前時間（Asia/Taipei）
+     * @return 到期的用戶
+     */
+    public synchronized List<User> advance(LocalDateTime now) {
+        int nowSlot = toSlot(now.toLocalTime());
+
+        if (cursorDate == null) {
+            // 第一次推進：只處理當下這一分鐘，不補發啟動前的格子
+            cursor = nowSlot - 1;
+        } else if (!cursorDate.equals(now.toLocalDate())) {
+            cursor = -1;
+        }
+        cursorDate = now.toLocalDate();
+
+        List<User> due = new ArrayList<>();
+        for (int slot = cursor + 1; slot <= nowSlot; slot++) {
+            due.addAll(buckets.get(slot).values());
+        }
+        cursor = Math.max(cursor, nowSlot);
+        return due;
+    }
+
+    /**
+     * 查看某一分鐘格內的用戶（不移動指針）
+     *
+     * @param time 通知時間
+     * @return 該分鐘格內的用戶
+     */
+    public synchronized List<User> usersAt(LocalTime time) {
+        return new ArrayList<>(buckets.get(toSlot(time)).values());
+    }
+
+    /**
+     * 目前排入時間輪的用戶數
+     */
+    public synchronized int size() {
+        return slotOfUser.size();
+    }
+
+    private int slotFor(User user) {
+        String notificationTime = user.getPreferences() != null ? user.getPreferences().getNotificationTime() : null;
+        if (notificationTime == null || notificationTime.isBlank()) {
+            return defaultSlot;
+        }
+        try {
+            return toSlot(LocalTime.parse(notificationTime.trim(), TIME_FORMAT));
+        } catch (DateTimeParseException e) {
+            log.warn("⚠️ 用戶 {} 的通知時間格式錯誤: {}，使用預設時間", user.getUserId(), notificationTime);
+            return defaultSlot;
+        }
+    }
+
+    private static boolean isNotificationEnabled(User user) {
+        if (user.getActive() != null && !user.getActive()) {
+            return false;
+        }
+        UserPreferences preferences = user.getPreferences();
+        return preferences == null || preferences.getNotificationEnabled() == null
+                || preferences.getNotificationEnabled();
+    }
+
+    private static int toSlot(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+}
@@ -0,0 +1,209 @@
+package com.lunch.scheduler;
+
+import com.lunch.model.User;
+import com.lunch.model.UserPreferences;
+import com.lunch.notification.NotificationTask;
+import com.lunch.service.LunchService;
+import com.lunch.service.RestaurantIndex;
+import com.lunch.service.UserPreferencesChangedEvent;
+import com.lunch.service.UserRestaurantService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 推薦預先計算
+ * 在通知時間前 lead-minutes 分鐘，先為該分鐘格的用戶選好餐廳並產生訊息，暫存在記憶體中；
+ * 到了發送時間只剩網路 I/O。預先計算時載入的餐廳索引不放入快取，避免整批用戶擠掉互動中用戶的索引；
+ * 各用戶的索引載入在專用的 precompute-worker 執行緒上平行進行（最多 workers 個），不佔用排程執行緒。
+ * 預先計算後偏好有變更（或沒有預先計算到）的用戶在發送時重新計算，但只使用已快取的餐廳索引，
+ * 沒有時改為均勻推薦，發送迴圈中不做逐一用戶的 Firestore 讀取。
+ */
+@Slf4j
+@Component
+public class RecommendationPrecomputer {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Taipei");
+
+    private final LunchService lunchService;
+    private final UserRestaurantService userRestaurantService;
+    private final NotificationTimingWheel notificationTimingWheel;
+    private final int leadMinutes;
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * userId → 預先計算的通知
+     */
+    private final Map<String, StagedNotification> staged = new ConcurrentHashMap<>();
+
+    public RecommendationPrecomputer(
+            LunchService lunchService,
+            UserRestaurantService userRestaurantService,
+            NotificationTimingWheel notificationTimingWheel,
+            @Value("${lunch.notification.precompute.lead-minutes:10}") int leadMinutes,
+            @Value("${lunch.notification.precompute.workers:8}") int workers) {
+        this.lunchService = lunchService;
+        this.userRestaurantService = userRestaurantService;
+        this.notificationTimingWheel = notificationTimingWheel;
+        this.leadMinutes = Math.max(1, leadMinutes);
+
+        int workerCount = Math.max(1, workers);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "precompute-worker-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * 每分鐘為 lead-minutes 分鐘後到期的用戶預先計算推薦
+     */
+    @Scheduled(cron = "${lunch.notification.scheduler.tick-cron:0 * * * * *}", zone = "Asia/Taipei")
+    public void precomputeUpcoming() {
+        try {
+            precompute(LocalDateTime.now(ZONE).plusMinutes(leadMinutes));
+        } catch (Exception e) {
+            log.error("❌ 預先計算推薦失敗", e);
+        }
+    }
+
+    /**
+     * 為指定發送時間的用戶預先計算推薦
+     *
+     * @param sendTime 發送時間
+     * @return 預先計算的用戶數
+     */
+    public int precompute(LocalDateTime sendTime) {
+        LocalDate today = LocalDate.now(ZONE);
+        staged.values().removeIf(entry -> !entry.date.equals(today));
+
+        List<User> users = notificationTimingWheel.usersAt(sendTime.toLocalTime());
+        List<CompletableFuture<Boolean>> stagings = users.stream()
+                .map(user -> CompletableFuture.supplyAsync(() -> stage(user, today), workers))
+                .toList();
+
+        int count = 0;
+        for (CompletableFuture<Boolean> staging : stagings) {
+            if (staging.join()) {
+                count++;
+            }
+        }
+
+        if (count > 0) {
+            log.info("🧮 已預先計算 {} 位用戶的推薦 (發送時間: {})", count, sendTime.toLocalTime());
+        }
+        return count;
+    }
+
+    /**
+     * 為單一用戶預先計算並暫存（在 precompute-worker 上執行）
+     *
+     * @return false 如果計算失敗
+     */
+    private boolean stage(User user, LocalDate today) {
+        try {
+            staged.put(user.getUserId(),
+                    new StagedNotification(plan(user, loadIndex(user)), snapshot(user), today));
+            return true;
+        } catch (Exception e) {
+            log.warn("⚠️ 預先計算推薦失敗 (userId: {}): {}", user.getUserId(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 關閉時停止預先計算
+     */
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * 取得用戶的通知：優先使用預先計算的結果，偏好在預先計算後有變更則以已快取的餐廳索引重新計算（不做 I/O）
+     *
+     * @param user 用戶
+     * @return 通知
+     */
+    public NotificationTask resolve(User user) {
+        StagedNotification entry = staged.remove(user.getUserId());
+        if (entry != null && entry.date.equals(LocalDate.now(ZONE))
+                && Objects.equals(entry.preferences, snapshot(user))) {
+            return entry.task;
+        }
+        return plan(user, userRestaurantService.getCachedRestaurantIndex(user.getUserId()));
+    }
+
+    /**
+     * 偏好變更時丟棄預先計算的結果
+     */
+    @EventListener
+    public void onUserPreferencesChanged(UserPreferencesChangedEvent event) {
+        staged.remove(event.getUserId());
+    }
+
+    private NotificationTask plan(User user, RestaurantIndex index) {
+        // 根據用戶偏好選擇餐廳
+        String restaurant = lunchService.selectRestaurantForUser(user, index);
+
+        // 生成個性化訊息
+        String message = lunchService.formatLunchMessageForUser(restaurant, user);
+
+        return new NotificationTask(user.getUserId(), message, restaurant);
+    }
+
+    /**
+     * 載入用戶的餐廳索引（載入失敗時改為均勻推薦）
+     */
+    private RestaurantIndex loadIndex(User user) {
+        if (!lunchService.isWeighted()) {
+            return null;
+        }
+        try {
+            return userRestaurantService.loadRestaurantIndex(user.getUserId());
+        } catch (RuntimeException e) {
+            log.warn("⚠️ 無法取得用戶 {} 的餐廳清單，改為均勻推薦: {}", user.getUserId(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 複製一份偏好，避免之後對同一個物件的修改影響比對
+     */
+    private static UserPreferences snapshot(User user) {
+        return user.getPreferences() != null ? user.getPreferences().copy() : null;
+    }
+
+    /**
+     * 暫存的預先計算結果
+     */
+    private static class StagedNotification {
+        private final NotificationTask task;
+        private final UserPreferences preferences;
+        private final LocalDate date;
+
+        private StagedNotification(NotificationTask task, UserPreferences preferences, LocalDate date) {
+            this.task = task;
+            this.preferences = preferences;
+            this.date = date;
+        }
+    }
+}
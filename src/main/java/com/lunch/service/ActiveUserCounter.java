@@ -0,0 +1,123 @@
+package com.lunch.service;
+
+import com.google.cloud.firestore.AggregateQuery;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.UpdateBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 活躍用戶計數器
+ * 在 stats/users 文件維護 activeCount，新增 / 移除用戶時與用戶文件在同一個 batch 或 transaction 內以 increment 更新，
+ * 讀取用戶數只需讀一份文件，不必下載整個 users 集合。
+ * 計數器不存在時（第一次部署）以 count aggregation 初始化，並每天校正一次以修正任何漂移。
+ * 尚未確認計數器存在前的增減寫入 pendingDelta 欄位（同樣與用戶文件一起提交），讀取時與 activeCount 相加，
+ * 校正時歸零；不會因為執行個體還沒初始化就遺失增減。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "lunch.storage.type", havingValue = "firestore", matchIfMissing = true)
+public class ActiveUserCounter {
+
+    private static final String COLLECTION_NAME = "stats";
+    private static final String DOCUMENT_ID = "users";
+    private static final String FIELD = "activeCount";
+    private static final String PENDING_FIELD = "pendingDelta";
+
+    private final Firestore firestore;
+
+    /**
+     * 計數器文件已確認存在；在此之前的增減寫入 pendingDelta，避免從 0 開始累加出錯誤的 activeCount
+     */
+    private volatile boolean initialized;
+
+    public ActiveUserCounter(Firestore firestore) {
+        this.firestore = firestore;
+    }
+
+    /**
+     * 啟動時確認計數器存在
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            log.info("📊 活躍用戶數: {}", get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("❌ 初始化活躍用戶計數器失敗", e);
+        }
+    }
+
+    /**
+     * 讀取活躍用戶數（單一文件讀取）
+     */
+    public long get() throws InterruptedException, ExecutionException {
+        DocumentSnapshot snapshot = counterRef().get().get();
+        Long count = snapshot.exists() ? snapshot.getLong(FIELD) : null;
+        if (count == null) {
+            return reconcile();
+        }
+        initialized = true;
+        Long pending = snapshot.getLong(PENDING_FIELD);
+        return count + (pending != null ? pending : 0);
+    }
+
+    /**
+     * 每天校正一次
+     */
+    @Scheduled(cron = "${lunch.users.counter.reconcile-cron:0 0 4 * * *}", zone = "Asia/Taipei")
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("❌ 校正活躍用戶計數器失敗", e);
+        }
+    }
+
+    /**
+     * 以伺服器端 count aggregation 重新計算並寫回計數器
+     */
+    public long reconcile() throws InterruptedException, ExecutionException {
+        AggregateQuery activeUsers = firestore.collection("users").whereEqualTo("active", true).count();
+        long count = firestore.runTransaction(transaction -> {
+            // 一併讀取計數器文件：校正期間有用戶新增 / 移除時，該筆寫入會等 transaction 結束後才套用到歸零後的計數器
+            transaction.get(counterRef()).get();
+            long total = transaction.get(activeUsers).get().getCount();
+            transaction.set(counterRef(), Map.of(FIELD, total, PENDING_FIELD, 0L));
+            return total;
+        }).get();
+
+        initialized = true;
+        log.info("📊 已校正活躍用戶計數器: {}", count);
+        return count;
+    }
+
+    /**
+     * 在同一個 batch / transaction 內調整計數
+     *
+     * @param writer batch 或 transaction
+     * @param delta  增減量
+     */
+    public void increment(UpdateBuilder<?> writer, long delta) {
+        String field = initialized ? FIELD : PENDING_FIELD;
+        writer.set(counterRef(), Map.of(field, FieldValue.increment(delta)), SetOptions.merge());
+    }
+
+    private DocumentReference counterRef() {
+        return firestore.collection(COLLECTION_NAME).document(DOCUMENT_ID);
+    }
+}
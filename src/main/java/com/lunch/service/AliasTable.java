@@ -0,0 +1,101 @@
+package com.lunch.service;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 加權抽樣的 alias table（Vose's alias method）
+ * 建表 O(n)，之後每次抽樣只需一次 nextInt 與一次 nextDouble，與項目數無關。
+ * 所有權重為 0 時退化為均勻抽樣。
+ */
+public final class AliasTable {
+
+    private final double[] probability;
+    private final int[] alias;
+
+    private AliasTable(double[] probability, int[] alias) {
+        this.probability = probability;
+        this.alias = alias;
+    }
+
+    /**
+     * 以權重建表
+     *
+     * @param weights 各項目的權重（不可為負）
+     * @throws IllegalArgumentException 如果沒有任何項目或權重為負
+     */
+    public static AliasTable of(double[] weights) {
+        int n = weights.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("沒有任何項目");
+        }
+
+        double total = 0;
+        for (double weight : weights) {
+            if (weight < 0 || Double.isNaN(weight)) {
+                throw new IllegalArgumentException("權重不可為負: " + weight);
+            }
+            total += weight;
+        }
+
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+        if (total <= 0 || Double.isInfinite(total)) {
+            Arrays.fill(probability, 1.0);
+            return new AliasTable(probability, alias);
+        }
+
+        // 平均權重縮放為 1，小於 1 的格子由大於 1 的項目補滿
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // 剩下的（含浮點誤差造成的）都是滿格
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1.0;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1.0;
+        }
+        return new AliasTable(probability, alias);
+    }
+
+    /**
+     * 依權重抽出一個項目
+     *
+     * @return 項目的索引
+     */
+    public int sample(Random random) {
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    /**
+     * 項目數
+     */
+    public int size() {
+        return probability.length;
+    }
+}
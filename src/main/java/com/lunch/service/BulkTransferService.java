@@ -0,0 +1,449 @@
+package com.lunch.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.WriteResult;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.lunch.dto.ImportResult;
+import com.lunch.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * users / user_restaurants 的整批匯入匯出（NDJSON，一行一份文件）
+ * 匯出以 cursor 分頁逐頁讀取並用 JsonGenerator 直接寫出；匯入以 JsonParser 逐筆解析，
+ * 透過 BulkWriter 寫入並以 semaphore 限制在途寫入數，記憶體用量不隨文件數成長。
+ * 匯入 users 時也接受舊版 users.json（JSON 陣列，元素為 userId 字串或用戶物件）；舊版檔案只新增尚不存在的用戶，
+ * 已存在的用戶（偏好、通知設定、啟用狀態）不會被覆寫。
+ * 匯入 user_restaurants 時，有效餐廳的名稱唯一鍵（RestaurantNameKey）在同一個 BulkWriter 中以 create() 一併寫入，
+ * 不會覆寫既有餐廳的唯一鍵；唯一鍵上線前就存在的餐廳以 backfillRestaurantNameKeys 補建。
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "lunch.storage.type", havingValue = "firestore", matchIfMissing = true)
+public class BulkTransferService {
+
+    public static final String USERS = "users";
+    public static final String USER_RESTAURANTS = "user_restaurants";
+
+    /**
+     * 各集合中存放 Document ID 的欄位
+     */
+    private static final Map<String, String> ID_FIELDS = Map.of(USERS, "userId", USER_RESTAURANTS, "id");
+
+    /**
+     * 以 ISO-8601 字串匯出、匯入時轉回 Timestamp 的欄位
+     */
+    private static final Set<String> TIMESTAMP_FIELDS =
+            Set.of("registeredAt", "lastActiveAt", "lastVisit", "createdAt", "updatedAt");
+
+    private static final TypeReference<Map<String, Object>> DOCUMENT_TYPE = new TypeReference<>() {};
+    private static final ZoneId LEGACY_ZONE = ZoneId.of("Asia/Taipei");
+
+    private final Firestore firestore;
+    private final ObjectMapper objectMapper;
+    private final UserCache userCache;
+    private final RestaurantIndexCache restaurantIndexCache;
+    private final ActiveUserCounter activeUserCounter;
+    private final int pageSize;
+    private final int maxInFlight;
+
+    public BulkTransferService(
+            Firestore firestore,
+            ObjectMapper objectMapper,
+            UserCache userCache,
+            RestaurantIndexCache restaurantIndexCache,
+            ActiveUserCounter activeUserCounter,
+            @Value("${lunch.admin.transfer.page-size:500}") int pageSize,
+            @Value("${lunch.admin.transfer.max-in-flight:500}") int maxInFlight) {
+        this.firestore = firestore;
+        this.objectMapper = objectMapper;
+        this.userCache = userCache;
+        this.restaurantIndexCache = restaurantIndexCache;
+        this.activeUserCounter = activeUserCounter;
+        this.pageSize = Math.max(1, pageSize);
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * 是否為支援匯入匯出的集合
+     */
+    public static boolean isSupported(String collection) {
+        return ID_FIELDS.containsKey(collection);
+    }
+
+    /**
+     * 將整個集合以 NDJSON 寫出
+     *
+     * @param collection users 或 user_restaurants
+     * @param out        輸出串流（不會被關閉）
+     * @return 匯出的文件數
+     */
+    public long exportNdjson(String collection, OutputStream out) throws IOException {
+        String idField = idFieldOf(collection);
+        Iterator<DocumentSnapshot> documents =
+                new FirestorePageIterator<>(firestore.collection(collection), pageSize, document -> document);
+
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            while (documents.hasNext()) {
+                writeDocument(generator, idField, documents.next());
+                count++;
+            }
+            if (count > 0) {
+                generator.writeRaw('\n');
+            }
+        }
+
+        log.info("📤 已匯出 {} 筆 {} 文件", count, collection);
+        return count;
+    }
+
+    /**
+     * 從 NDJSON（或舊版 JSON 陣列）匯入文件
+     * NDJSON 的文件會覆寫既有文件（還原匯出檔）；舊版 users.json 以 create() 寫入，已存在的用戶計入略過數。
+     * 有效餐廳的名稱唯一鍵已存在時不覆寫，計入衝突數。匯入完成後清空對應的快取（用戶快取或餐廳索引快取）
+     *
+     * @param collection users 或 user_restaurants
+     * @param in         輸入串流（不會被關閉）
+     * @return 匯入統計
+     */
+    public ImportResult importNdjson(String collection, InputStream in) throws IOException {
+        String idField = idFieldOf(collection);
+        CollectionReference collectionRef = firestore.collection(collection);
+        Semaphore permits = new Semaphore(maxInFlight);
+        AtomicLong written = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        AtomicLong conflicts = new AtomicLong();
+        boolean legacy = false;
+
+        BulkWriter writer = firestore.bulkWriter();
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                log.info("📥 偵測到舊版 JSON 陣列格式");
+                legacy = true;
+                token = parser.nextToken();
+            }
+
+            for (; token != null && token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                Object document;
+                String id;
+                if (token == JsonToken.VALUE_STRING && USERS.equals(collection)) {
+                    // 舊版 users.json 只記錄 userId
+                    id = parser.getText();
+                    document = legacyUser(id);
+                } else if (token == JsonToken.START_OBJECT) {
+                    Map<String, Object> data = parser.readValueAs(DOCUMENT_TYPE);
+                    id = data.get(idField) instanceof String value ? value : null;
+                    convertTimestamps(data);
+                    document = data;
+                } else {
+                    parser.skipChildren();
+                    skipped.incrementAndGet();
+                    continue;
+                }
+
+                if (id == null || id.isBlank()) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+
+                acquire(permits);
+                DocumentReference docRef = collectionRef.document(id);
+                if (legacy && USERS.equals(collection)) {
+                    // 舊版檔案只補上還不存在的用戶，ALREADY_EXISTS 計入略過數
+                    write(writer.create(docRef, document), id, permits, written, failed, skipped);
+                } else {
+                    write(writer.set(docRef, document), id, permits, written, failed, null);
+                }
+
+                if (USER_RESTAURANTS.equals(collection) && document instanceof Map<?, ?> data
+                        && Boolean.TRUE.equals(data.get("active"))
+                        && data.get("userId") instanceof String userId && data.get("name") instanceof String name) {
+                    acquire(permits);
+                    writeNameKey(writer.create(nameKeyRef(userId, name), RestaurantNameKey.document(userId, name, id)),
+                            id, permits, failed, conflicts);
+                }
+            }
+        } finally {
+            close(writer);
+        }
+
+        if (USERS.equals(collection)) {
+            userCache.invalidateAll();
+            reconcileCounter();
+        } else {
+            restaurantIndexCache.invalidateAll();
+        }
+
+        ImportResult result = ImportResult.builder()
+                .written(written.get())
+                .failed(failed.get())
+                .skipped(skipped.get())
+                .conflicts(conflicts.get())
+                .build();
+        log.info("📥 {} 匯入完成 - 寫入: {}, 失敗: {}, 略過: {}, 名稱衝突: {}",
+                collection, result.getWritten(), result.getFailed(), result.getSkipped(), result.getConflicts());
+        return result;
+    }
+
+    /**
+     * 為所有有效餐廳補上名稱唯一鍵（RestaurantNameKey 上線前建立的餐廳沒有唯一鍵文件）
+     * 以 cursor 分頁掃過有效餐廳，唯一鍵以 create() 經 BulkWriter 寫入；已存在的唯一鍵
+     * （已補建過，或舊資料中已有同名的餐廳）計入略過數，不會被覆寫。可重複執行。
+     *
+     * @return 補建統計（written = 新建立的唯一鍵數）
+     */
+    public ImportResult backfillRestaurantNameKeys() throws IOException {
+        Query activeRestaurants = firestore.collection(USER_RESTAURANTS).whereEqualTo("active", true);
+        Iterator<DocumentSnapshot> restaurants =
+                new FirestorePageIterator<>(activeRestaurants, pageSize, document -> document);
+        Semaphore permits = new Semaphore(maxInFlight);
+        AtomicLong written = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+
+        BulkWriter writer = firestore.bulkWriter();
+        try {
+            while (restaurants.hasNext()) {
+                DocumentSnapshot restaurant = restaurants.next();
+                String userId = restaurant.getString("userId");
+                String name = restaurant.getString("name");
+                if (userId == null || name == null) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+
+                acquire(permits);
+                write(writer.create(nameKeyRef(userId, name),
+                                RestaurantNameKey.document(userId, name, restaurant.getId())),
+                        restaurant.getId(), permits, written, failed, skipped);
+            }
+        } finally {
+            close(writer);
+        }
+        restaurantIndexCache.invalidateAll();
+
+        ImportResult result = ImportResult.builder()
+                .written(written.get())
+                .failed(failed.get())
+                .skipped(skipped.get())
+                .build();
+        log.info("🔑 名稱唯一鍵補建完成 - 建立: {}, 失敗: {}, 略過: {}",
+                result.getWritten(), result.getFailed(), result.getSkipped());
+        return result;
+    }
+
+    private DocumentReference nameKeyRef(String userId, String name) {
+        return firestore.collection(RestaurantNameKey.COLLECTION_NAME)
+                .document(RestaurantNameKey.documentId(userId, name));
+    }
+
+    private void writeDocument(JsonGenerator generator, String idField, DocumentSnapshot document)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField(idField, document.getId());
+        Map<String, Object> data = document.getData();
+        if (data != null) {
+            for (Map.Entry<String, Object> field : data.entrySet()) {
+                if (!idField.equals(field.getKey())) {
+                    generator.writeFieldName(field.getKey());
+                    writeValue(generator, field.getValue());
+                }
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof Timestamp timestamp) {
+            generator.writeString(timestamp.toString());
+        } else if (value instanceof Map<?, ?> map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (value instanceof List<?> list) {
+            generator.writeStartArray();
+            for (Object element : list) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeObject(value);
+        }
+    }
+
+    /**
+     * @param skippedIfExists 不為 null 時，文件已存在（create 的 ALREADY_EXISTS）計入略過數而不是失敗數
+     */
+    private static void write(ApiFuture<WriteResult> future, String id, Semaphore permits,
+                              AtomicLong written, AtomicLong failed, AtomicLong skippedIfExists) {
+        ApiFutures.addCallback(future, new ApiFutureCallback<>() {
+            @Override
+            public void onSuccess(WriteResult result) {
+                written.incrementAndGet();
+                permits.release();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (skippedIfExists != null && FirestoreErrors.hasCode(t, StatusCode.Code.ALREADY_EXISTS)) {
+                    log.debug("ℹ️ 文件已存在，略過 (id: {})", id);
+                    skippedIfExists.incrementAndGet();
+                } else {
+                    log.error("❌ 匯入文件失敗 (id: {}): {}", id, t.getMessage());
+                    failed.incrementAndGet();
+                }
+                permits.release();
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * 餐廳的名稱唯一鍵寫入：不計入寫入數（每間餐廳只算一筆），唯一鍵已存在時計入衝突數，其他失敗計入失敗數
+     */
+    private static void writeNameKey(ApiFuture<WriteResult> future, String restaurantId, Semaphore permits,
+                                     AtomicLong failed, AtomicLong conflicts) {
+        ApiFutures.addCallback(future, new ApiFutureCallback<>() {
+            @Override
+            public void onSuccess(WriteResult result) {
+                permits.release();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (FirestoreErrors.hasCode(t, StatusCode.Code.ALREADY_EXISTS)) {
+                    log.warn("⚠️ 名稱唯一鍵已存在，未覆寫 (restaurantId: {})", restaurantId);
+                    conflicts.incrementAndGet();
+                } else {
+                    log.error("❌ 寫入名稱唯一鍵失敗 (restaurantId: {}): {}", restaurantId, t.getMessage());
+                    failed.incrementAndGet();
+                }
+                permits.release();
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * 送出剩餘的寫入並等待全部完成（個別失敗已由 callback 記錄）
+     */
+    private static void close(BulkWriter writer) throws InterruptedIOException {
+        try {
+            writer.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("匯入被中斷");
+        } catch (ExecutionException e) {
+            log.error("❌ 等待匯入寫入完成時發生錯誤", e);
+        }
+    }
+
+    private static void acquire(Semaphore permits) throws InterruptedIOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("匯入被中斷");
+        }
+    }
+
+    /**
+     * 匯出時 Timestamp 寫成 ISO-8601 字串，匯入時轉回 Timestamp；
+     * 舊版檔案的 LocalDateTime 字串（無時區）視為台北時間，無法解析的值直接捨棄
+     */
+    static void convertTimestamps(Map<String, Object> data) {
+        for (String field : TIMESTAMP_FIELDS) {
+            if (data.get(field) instanceof String text) {
+                Timestamp timestamp = parseTimestamp(text);
+                if (timestamp != null) {
+                    data.put(field, timestamp);
+                } else {
+                    log.warn("⚠️ 無法解析時間欄位 {}: {}", field, text);
+                    data.remove(field);
+                }
+            }
+        }
+    }
+
+    private static Timestamp parseTimestamp(String text) {
+        try {
+            return Timestamp.parseTimestamp(text);
+        } catch (RuntimeException e) {
+            try {
+                Instant instant = LocalDateTime.parse(text).atZone(LEGACY_ZONE).toInstant();
+                return Timestamp.ofTimeSecondsAndNanos(instant.getEpochSecond(), instant.getNano());
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private static User legacyUser(String userId) {
+        Timestamp now = Timestamp.now();
+        return User.builder()
+                .userId(userId)
+                .registeredAt(now)
+                .lastActiveAt(now)
+                .build();
+    }
+
+    private void reconcileCounter() {
+        try {
+            activeUserCounter.reconcile();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("❌ 匯入後校正活躍用戶計數器失敗", e);
+        }
+    }
+
+    private static String idFieldOf(String collection) {
+        String idField = ID_FIELDS.get(collection);
+        if (idField == null) {
+            throw new IllegalArgumentException("不支援的集合: " + collection);
+        }
+        return idField;
+    }
+}
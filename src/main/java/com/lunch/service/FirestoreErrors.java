@@ -0,0 +1,37 @@
+package com.lunch.service;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.firestore.FirestoreException;
+
+/**
+ * Firestore 錯誤判斷工具
+ * 寫入失敗時 SDK 可能拋出 ApiException 或 FirestoreException（通常包在 ExecutionException 中），
+ * 這裡沿著 cause 鏈找出 gRPC 狀態碼，讓呼叫端可以用一次往返的條件寫入取代「先讀再寫」。
+ */
+public final class FirestoreErrors {
+
+    private FirestoreErrors() {
+    }
+
+    /**
+     * 錯誤（或其 cause）是否為指定的狀態碼
+     */
+    public static boolean hasCode(Throwable error, StatusCode.Code code) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ApiException apiException
+                    && apiException.getStatusCode().getCode() == code) {
+                return true;
+            }
+            if (cause instanceof FirestoreException firestoreException
+                    && firestoreException.getStatus() != null
+                    && firestoreException.getStatus().getCode().name().equals(code.name())) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+}
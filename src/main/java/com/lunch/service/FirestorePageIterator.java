@@ -0,0 +1,118 @@
+package com.lunch.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * 以 cursor 分頁逐頁讀取 Firestore 文件
+ * 依文件 ID 排序，每頁 pageSize 筆，以上一頁最後一筆文件作為 startAfter 游標。
+ * 拿到一頁後立即送出下一頁的查詢，讓呼叫端處理目前這頁時下一頁已在路上；記憶體中最多只有兩頁。
+ * 某一頁讀取失敗時以同一個游標重試（最多 MAX_PAGE_ATTEMPTS 次），仍失敗則拋出 RuntimeException，
+ * 呼叫端不會把讀到一半的結果誤認為完整的掃描。
+ */
+@Slf4j
+class FirestorePageIterator<T> implements Iterator<T> {
+
+    /**
+     * 同一頁最多嘗試次數
+     */
+    static final int MAX_PAGE_ATTEMPTS = 3;
+
+    private final Query query;
+    private final int pageSize;
+    private final Function<DocumentSnapshot, T> mapper;
+
+    private Iterator<QueryDocumentSnapshot> page = Collections.emptyIterator();
+    private Query nextQuery;
+    private ApiFuture<QuerySnapshot> nextPage;
+    private T next;
+
+    FirestorePageIterator(Query query, int pageSize, Function<DocumentSnapshot, T> mapper) {
+        this.query = query.orderBy(FieldPath.documentId());
+        this.pageSize = Math.max(1, pageSize);
+        this.mapper = mapper;
+        this.nextQuery = this.query.limit(this.pageSize);
+        this.nextPage = nextQuery.get();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (!page.hasNext() && !fetchNextPage()) {
+                return false;
+            }
+            if (page.hasNext()) {
+                next = mapper.apply(page.next());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T value = next;
+        next = null;
+        return value;
+    }
+
+    /**
+     * 等待已送出的下一頁查詢，並預先送出再下一頁
+     *
+     * @return false 如果沒有更多資料
+     * @throws RuntimeException 如果同一頁重試後仍讀取失敗
+     */
+    private boolean fetchNextPage() {
+        if (nextQuery == null) {
+            return false;
+        }
+
+        List<QueryDocumentSnapshot> documents = awaitNextPage();
+
+        // 未滿一頁代表已經是最後一頁
+        if (documents.size() < pageSize) {
+            nextQuery = null;
+            nextPage = null;
+        } else {
+            nextQuery = query.startAfter(documents.get(documents.size() - 1)).limit(pageSize);
+            nextPage = nextQuery.get();
+        }
+
+        page = documents.iterator();
+        return !documents.isEmpty();
+    }
+
+    private List<QueryDocumentSnapshot> awaitNextPage() {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return nextPage.get().getDocuments();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                nextQuery = null;
+                throw new RuntimeException("分頁讀取文件被中斷", e);
+            } catch (ExecutionException e) {
+                if (attempt >= MAX_PAGE_ATTEMPTS) {
+                    log.error("❌ 分頁讀取文件失敗，已重試 {} 次", attempt, e);
+                    nextQuery = null;
+                    throw new RuntimeException("分頁讀取文件失敗", e);
+                }
+                log.warn("⚠️ 分頁讀取文件失敗（第 {} 次），以同一個游標重試: {}", attempt, e.getMessage());
+                nextPage = nextQuery.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,625 @@
+package com.lunch.service;
+
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import com.lunch.dto.AddRestaurantRequest;
+import com.lunch.dto.RecordVisitsRequest;
+import com.lunch.dto.RestaurantPage;
+import com.lunch.dto.RestaurantResponse;
+import com.lunch.dto.UpdateRestaurantRequest;
+import com.lunch.dto.VisitBatchResult;
+import com.lunch.exception.DuplicateRestaurantException;
+import com.lunch.exception.RestaurantNotFoundException;
+import com.lunch.model.UserRestaurant;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * 用戶餐廳服務（使用 Firestore）
+ * 列表、篩選與隨機推薦由 RestaurantIndexCache 中的各用戶索引回答；索引冷的時候以一次查詢載入該用戶所有有效餐廳。
+ * 隨機推薦依 RecommendationScorer 的權重抽樣；新增、編輯、刪除與造訪成功後直接修補索引，只重新計算異動餐廳的權重。
+ * 名稱不重複由 RestaurantNameKey 唯一鍵文件保證，新增時不需先查詢同名餐廳。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "lunch.storage.type", havingValue = "firestore", matchIfMissing = true)
+public class FirestoreUserRestaurantService implements UserRestaurantService {
+
+    private static final String COLLECTION_NAME = "user_restaurants";
+    private static final ZoneId ZONE = ZoneId.of("Asia/Taipei");
+
+    private final Firestore firestore;
+    private final RestaurantIndexCache restaurantIndexCache;
+    private final RecommendationScorer recommendationScorer;
+
+    /**
+     * 取得用戶的所有餐廳
+     *
+     * @param userId   用戶 ID
+     * @param category 分類篩選（可選）
+     * @param tags     標籤篩選（可選）
+     * @return 餐廳列表
+     */
+    @Override
+    public List<RestaurantResponse> getUserRestaurants(String userId, String category, List<String> tags) {
+        RestaurantIndex index = restaurantIndexCache.get(userId, () -> loadIndex(userId));
+        List<RestaurantResponse> restaurants = index.list(index.matching(category, tags));
+
+        log.info("✅ 取得用戶 {} 的餐廳清單，共 {} 筆", userId, restaurants.size());
+        return restaurants;
+    }
+
+    /**
+     * 分頁取得用戶的餐廳
+     * 索引已在快取中時直接由記憶體分頁；否則把排序、cursor、筆數與欄位選擇都交給 Firestore 查詢，
+     * 只讀取這一頁需要的文件與欄位（需要 userId + active + name 的複合索引）。
+     */
+    @Override
+    public RestaurantPage getUserRestaurantPage(String userId, String category, List<String> tags,
+                                                int limit, String pageToken, Set<String> fields) {
+        RestaurantPage.Cursor after = RestaurantPage.decodeToken(pageToken);
+
+        RestaurantIndex index = restaurantIndexCache.getIfPresent(userId);
+        List<RestaurantResponse> fetched = index != null
+                ? index.page(index.matching(category, tags), after, limit + 1)
+                : queryPage(userId, category, tags, after, limit + 1, fields);
+
+        RestaurantPage page = RestaurantPage.of(fetched, limit, fields);
+        log.info("✅ 取得用戶 {} 的餐廳清單（分頁），本頁 {} 筆", userId, page.getRestaurants().size());
+        return page;
+    }
+
+    private List<RestaurantResponse> queryPage(String userId, String category, List<String> tags,
+                                               RestaurantPage.Cursor after, int max, Set<String> fields) {
+        try {
+            Query query = firestore.collection(COLLECTION_NAME)
+                    .whereEqualTo("userId", userId)
+                    .whereEqualTo("active", true);
+
+            // 分類篩選
+            if (category != null && !category.trim().isEmpty()) {
+                query = query.whereEqualTo("category", category);
+            }
+
+            // 標籤篩選（包含任一標籤）
+            if (tags != null && !tags.isEmpty()) {
+                query = query.whereArrayContainsAny("tags", tags);
+            }
+
+            query = query.orderBy("name").orderBy(FieldPath.documentId());
+            if (after != null) {
+                query = query.startAfter(after.name(), after.id());
+            }
+
+            // name 是 cursor 的一部分，一定要讀取；id 來自 Document ID
+            Set<String> selected = new LinkedHashSet<>(fields);
+            selected.remove("id");
+            selected.add("name");
+            query = query.limit(max).select(selected.toArray(new String[0]));
+
+            return query.get().get().getDocuments().stream()
+                    .map(this::documentToResponse)
+                    .collect(Collectors.toList());
+
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("❌ 取得餐廳清單失敗: userId={}", userId, e);
+            throw new RuntimeException("取得餐廳清單失敗", e);
+        }
+    }
+
+    /**
+     * 取得用戶的餐廳索引（已快取時不查詢）
+     *
+     * @param userId 用戶 ID
+     * @return 餐廳索引
+     */
+    @Override
+    public RestaurantIndex getRestaurantIndex(String userId) {
+        return restaurantIndexCache.get(userId, () -> loadIndex(userId));
+    }
+
+    @Override
+    public RestaurantIndex getCachedRestaurantIndex(String userId) {
+        return restaurantIndexCache.getIfPresent(userId);
+    }
+
+    @Override
+    public RestaurantIndex loadRestaurantIndex(String userId) {
+        RestaurantIndex cached = restaurantIndexCache.getIfPresent(userId);
+        return cached != null ? cached : loadIndex(userId);
+    }
+
+    /**
+     * 以一次查詢載入用戶所有有效餐廳並建立索引
+     */
+    private RestaurantIndex loadIndex(String userId) {
+        try {
+            Query query = firestore.collection(COLLECTION_NAME)
+                    .whereEqualTo("userId", userId)
+                    .whereEqualTo("active", true);
+
+            List<QueryDocumentSnapshot> documents = query.get().get().getDocuments();
+            log.debug("📇 已載入用戶 {} 的餐廳索引，共 {} 筆", userId, documents.size());
+
+            return RestaurantIndex.build(documents.stream()
+                    .map(this::documentToResponse)
+                    .collect(Collectors.toList()), recommendationScorer.weigher());
+
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("❌ 取得餐廳清單失敗: userId={}", userId, e);
+            throw new RuntimeException("取得餐廳清單失敗", e);
+        }
+    }
+
+    /**
+     * 取得單一餐廳
+     *
+     * @param userId       用戶 ID
+     * @param restaurantId 餐廳 ID
+     * @return 餐廳資訊
+     */
+    @Override
+    public RestaurantResponse getRestaurant(String userId, String restaurantId) {
+        try {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(restaurantId);
+            DocumentSnapshot document = docRef.get().get();
+
+            if (!document.exists()) {
+                throw new RestaurantNotFoundException("餐廳不存在: " + restaurantId);
+            }
+
+            UserRestaurant restaurant = document.toObject(UserRestaurant.class);
+
+            // 驗證是否屬於該用戶
+            if (restaurant != null && !restaurant.getUserId().equals(userId)) {
+                throw new RestaurantNotFoundException("無權訪問此餐廳");
+            }
+
+            if (restaurant == null || !restaurant.getActive()) {
+                throw new RestaurantNotFoundException("餐廳不存在: " + restaurantId);
+            }
+
+            log.info("✅ 取得餐廳: {}", restaurant.getName());
+            return RestaurantResponse.from(restaurant);
+
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("❌ 取得餐廳失敗: restaurantId={}", restaurantId, e);
+            throw new RuntimeException("取得餐廳失敗", e);
+        }
+    }
+
+    /**
+     * 新增餐廳
+     *
+     * @param userId  用戶 ID
+     * @param request 新增請求
+     * @return 新增的餐廳
+     */
+    @Override
+    public RestaurantResponse addRestaurant(String userId, AddRestaurantRequest request) {
+        RestaurantResponse added = null;
+        try {
+            UserRestaurant restaurant = UserRestaurant.builder()
+                    .id(UUID.randomUUID().toString())
+                    .userId(userId)
+                    .name(request.getName().trim())
+                    .category(request.getCategory() != null ? request.getCategory().trim() : null)
+                    .tags(request.getTags() != null ? request.getTags() : new ArrayList<>())
+                    .rating(request.getRating())
+                    .notes(request.getNotes())
+                    .visitCount(0)
+                    .createdAt(Timestamp.now())
+                    .updatedAt(Timestamp.now())
+                    .active(true)
+                    .build();
+
+            // 名稱唯一鍵與餐廳在同一個 batch 以 create() 寫入：一次往返，名稱重複時整批以 ALREADY_EXISTS 失敗
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(restaurant.getId());
+            WriteBatch batch = firestore.batch();
+            batch.create(nameKeyRef(userId, restaurant.getName()),
+                    RestaurantNameKey.document(userId, restaurant.getName(), restaurant.getId()));
+            batch.create(docRef, restaurant);
+            batch.commit().get();
+
+            log.info("✅ 新增餐廳成功: userId={}, name={}", userId, restaurant.getName());
+
+            added = RestaurantResponse.from(restaurant);
+            return added;
+
+        } catch (InterruptedException | ExecutionException e) {
+            if (FirestoreErrors.hasCode(e, StatusCode.Code.ALREADY_EXISTS)) {
+                log.warn("⚠️ 餐廳已存在: {}", request.getName());
+                throw new DuplicateRestaurantException("餐廳已存在: " + request.getName().trim());
+            }
+            log.error("❌ 新增餐廳失敗: userId={}, name={}", userId, request.getName(), e);
+            throw new RuntimeException("新增餐廳失敗", e);
+        } finally {
+            refreshIndex(userId, added);
+        }
+    }
+
+    /**
+     * 更新餐廳
+     *
+     * @param userId       用戶 ID
+     * @param restaurantId 餐廳 ID
+     * @param request      更新請求
+     * @return 更新後的餐廳
+     */
+    @Override
+    public RestaurantResponse updateRestaurant(String userId, String restaurantId, UpdateRestaurantRequest request) {
+        RestaurantResponse updated = null;
+        try {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(restaurantId);
+            DocumentSnapshot document = docRef.get().get();
+
+            if (!document.exists()) {
+                throw new RestaurantNotFoundException("餐廳不存在: " + restaurantId);
+            }
+
+            UserRestaurant restaurant = document.toObject(UserRestaurant.class);
+
+            // 驗證是否屬於該用戶
+            if (restaurant != null && !restaurant.getUserId().equals(userId)) {
+                throw new RestaurantNotFoundException("無權修改此餐廳");
+            }
+
+            // 建立更新 Map
+            Map<String, Object> updates = new HashMap<>();
+
+            if (request.getName() != null && !request.getName().trim().isEmpty()) {
+                updates.put("name", request.getName().trim());
+            }
+            if (request.getCategory() != null) {
+                updates.put("category", request.getCategory().trim());
+            }
+            if (request.getTags() != null) {
+                updates.put("tags", request.getTags());
+            }
+            if (request.getRating() != null) {
+                updates.put("rating", request.getRating());
+            }
+            if (request.getNotes() != null) {
+                updates.put("notes", request.getNotes());
+            }
+
+            updates.put("updatedAt", Timestamp.now());
+
+            String newName = (String) updates.get("name");
+            if (newName != null && restaurant != null && Boolean.TRUE.equals(restaurant.getActive())
+                    && !sameName(newName, restaurant.getName())) {
+                rename(userId, docRef, restaurant.getName(), newName, updates);
+            } else {
+                docRef.update(updates).get();
+            }
+            log.info("✅ 更新餐廳成功: restaurantId={}", restaurantId);
+
+            // 重新取得更新後的資料
+            updated = getRestaurant(userId, restaurantId);
+            return updated;
+
+        } catch (InterruptedException | ExecutionException e) {
+            if (FirestoreErrors.hasCode(e, StatusCode.Code.ALREADY_EXISTS)) {
+                log.warn("⚠️ 餐廳已存在: {}", request.getName());
+                throw new DuplicateRestaurantException("餐廳已存在: " + request.getName().trim());
+            }
+            log.error("❌ 更新餐廳失敗: restaurantId={}", restaurantId, e);
+            throw new RuntimeException("更新餐廳失敗", e);
+        } finally {
+            refreshIndex(userId, updated);
+        }
+    }
+
+    /**
+     * 刪除餐廳（軟刪除）
+     *
+     * @param userId       用戶 ID
+     * @param restaurantId 餐廳 ID
+     */
+    @Override
+    public void deleteRestaurant(String userId, String restaurantId) {
+        boolean deleted = false;
+        try {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(restaurantId);
+            DocumentSnapshot document = docRef.get().get();
+
+            if (!document.exists()) {
+                throw new RestaurantNotFoundException("餐廳不存在: " + restaurantId);
+            }
+
+            UserRestaurant restaurant = document.toObject(UserRestaurant.class);
+
+            // 驗證是否屬於該用戶
+            if (restaurant != null && !restaurant.getUserId().equals(userId)) {
+                throw new RestaurantNotFoundException("無權刪除此餐廳");
+            }
+
+            // 軟刪除，並在同一個 transaction 釋放這間餐廳擁有的名稱唯一鍵（已刪除的餐廳不再占用名稱）
+            String knownName = restaurant != null ? restaurant.getName() : null;
+            firestore.runTransaction(transaction -> {
+                DocumentReference ownedKey = readWithNameKey(transaction, userId, docRef, knownName).ownedKey();
+                if (ownedKey != null) {
+                    transaction.delete(ownedKey);
+                }
+                transaction.update(docRef,
+                        "active", false,
+                        "updatedAt", Timestamp.now());
+                return null;
+            }).get();
+            deleted = true;
+
+            log.info("✅ 刪除餐廳成功: restaurantId={}", restaurantId);
+
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("❌ 刪除餐廳失敗: restaurantId={}", restaurantId, e);
+            throw new RuntimeException("刪除餐廳失敗", e);
+        } finally {
+            if (deleted) {
+                restaurantIndexCache.update(userId, index -> index.without(restaurantId));
+            } else {
+                restaurantIndexCache.invalidate(userId);
+            }
+        }
+    }
+
+    /**
+     * 隨機推薦餐廳
+     *
+     * @param userId        用戶 ID
+     * @param category      分類篩選（可選）
+     * @param tags          標籤篩選（可選）
+     * @param excludeRecent 是否排除最近造訪的（7天內）
+     * @return 隨機推薦的餐廳
+     */
+    @Override
+    public RestaurantResponse getRandomRestaurant(String userId, String category,
+                                                   List<String> tags, boolean excludeRecent) {
+        RestaurantIndex index = restaurantIndexCache.get(userId, () -> loadIndex(userId));
+        RestaurantIndex.Candidates candidates = index.candidates(category, tags);
+
+        if (candidates.size() == 0) {
+            throw new RestaurantNotFoundException("沒有符合條件的餐廳");
+        }
+
+        // 排除最近 7 天造訪過的（候選依 lastVisit 排序，只取前段）
+        int eligible = candidates.size();
+        if (excludeRecent) {
+            eligible = candidates.countVisitedBefore(LocalDateTime.now(ZONE).minusDays(7));
+
+            if (eligible == 0) {
+                throw new RestaurantNotFoundException("沒有符合條件的餐廳（已排除最近造訪）");
+            }
+        }
+
+        // 隨機選擇
+        RestaurantResponse selected = candidates.pick(eligible, ThreadLocalRandom.current());
+
+        log.info("🎲 隨機推薦餐廳: userId={}, restaurant={}", userId, selected.getName());
+
+        return selected;
+    }
+
+    /**
+     * 記錄餐廳造訪
+     * 一次 update 完成：visitCount 以 FieldValue.increment 在伺服器端累加，lastVisit / updatedAt 同時寫入。
+     * 餐廳已在該用戶的索引中時不需先讀取文件確認擁有者。
+     *
+     * @param userId       用戶 ID
+     * @param restaurantId 餐廳 ID
+     */
+    @Override
+    public void recordVisit(String userId, String restaurantId) {
+        Timestamp visitedAt = null;
+        try {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(restaurantId);
+
+            RestaurantIndex index = restaurantIndexCache.getIfPresent(userId);
+            if (index == null || !index.contains(restaurantId)) {
+                DocumentSnapshot document = docRef.get().get();
+
+                if (!document.exists()) {
+                    throw new RestaurantNotFoundException("餐廳不存在: " + restaurantId);
+                }
+
+                // 驗證是否屬於該用戶
+                if (!userId.equals(document.getString("userId"))) {
+                    throw new RestaurantNotFoundException("無權操作此餐廳");
+                }
+            }
+
+            Timestamp now = Timestamp.now();
+            docRef.update(
+                    "visitCount", FieldValue.increment(1),
+                    "lastVisit", now,
+                    "updatedAt", now
+            ).get();
+            visitedAt = now;
+
+            log.info("✅ 記錄造訪: restaurantId={}", restaurantId);
+
+        } catch (InterruptedException | ExecutionException e) {
+            if (FirestoreErrors.hasCode(e, StatusCode.Code.NOT_FOUND)) {
+                throw new RestaurantNotFoundException("餐廳不存在: " + restaurantId);
+            }
+            log.error("❌ 記錄造訪失敗: restaurantId={}", restaurantId, e);
+            throw new RuntimeException("記錄造訪失敗", e);
+        } finally {
+            if (visitedAt != null) {
+                LocalDateTime lastVisit = RestaurantResponse.toLocalDateTime(visitedAt);
+                restaurantIndexCache.update(userId, index -> index.find(restaurantId)
+                        .map(restaurant -> index.withRestaurant(restaurant.toBuilder()
+                                .visitCount((restaurant.getVisitCount() != null ? restaurant.getVisitCount() : 0) + 1)
+                                .lastVisit(lastVisit)
+                                .updatedAt(lastVisit)
+                                .build(), recommendationScorer.weigher()))
+                        .orElse(index));
+            } else {
+                restaurantIndexCache.invalidate(userId);
+            }
+        }
+    }
+
+    /**
+     * 批次記錄造訪
+     * 讀取擁有者與 lastVisit、寫入 visitCount / lastVisit 都在同一個 transaction 中完成：
+     * 整批全部寫入或全部不寫（失敗重送不會重複累加），讀取後若有其他造訪寫入同一間餐廳，
+     * transaction 會重試，較舊的造訪時間不會覆蓋較新的 lastVisit。
+     * 同一間餐廳只寫一次；請求最多 500 筆造訪（RecordVisitsRequest），寫入數不超過單一 transaction 上限。
+     *
+     * @param userId 用戶 ID
+     * @param visits 造訪記錄
+     * @return 記錄結果
+     */
+    @Override
+    public VisitBatchResult recordVisits(String userId, List<RecordVisitsRequest.Visit> visits) {
+        Timestamp now = Timestamp.now();
+        List<VisitTally> tallies = new ArrayList<>(VisitTally.of(visits, now));
+        CollectionReference collection = firestore.collection(COLLECTION_NAME);
+        DocumentReference[] refs = tallies.stream()
+                .map(tally -> collection.document(tally.restaurantId()))
+                .toArray(DocumentReference[]::new);
+
+        try {
+            VisitBatchResult result = firestore.runTransaction(transaction -> {
+                List<DocumentSnapshot> documents = transaction.getAll(refs, FieldMask.of("userId", "lastVisit")).get();
+
+                List<String> notFound = new ArrayList<>();
+                int recorded = 0;
+
+                for (int i = 0; i < tallies.size(); i++) {
+                    VisitTally tally = tallies.get(i);
+                    DocumentSnapshot document = documents.get(i);
+
+                    if (!document.exists() || !userId.equals(document.getString("userId"))) {
+                        notFound.add(tally.restaurantId());
+                        continue;
+                    }
+
+                    transaction.update(refs[i],
+                            "visitCount", FieldValue.increment(tally.count()),
+                            "lastVisit", VisitTally.later(document.getTimestamp("lastVisit"), tally.latest()),
+                            "updatedAt", now);
+                    recorded += tally.count();
+                }
+
+                return VisitBatchResult.builder()
+                        .recorded(recorded)
+                        .notFound(notFound)
+                        .build();
+            }).get();
+
+            log.info("✅ 批次記錄造訪: userId={}, 記錄: {}, 略過: {}",
+                    userId, result.getRecorded(), result.getNotFound().size());
+
+            return result;
+
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("❌ 批次記錄造訪失敗: userId={}", userId, e);
+            throw new RuntimeException("批次記錄造訪失敗", e);
+        } finally {
+            restaurantIndexCache.invalidate(userId);
+        }
+    }
+
+    /**
+     * 寫入後更新快取的索引：有寫入結果時只修補這間餐廳（重新計算它的推薦權重），
+     * 否則（寫入失敗或結果不明）讓索引失效
+     */
+    private void refreshIndex(String userId, RestaurantResponse written) {
+        if (written != null) {
+            restaurantIndexCache.update(userId, index -> index.withRestaurant(written, recommendationScorer.weigher()));
+        } else {
+            restaurantIndexCache.invalidate(userId);
+        }
+    }
+
+    /**
+     * 改名：在 transaction 中重新讀取目前名稱，建立新名稱的唯一鍵、釋放舊名稱中屬於這間餐廳的唯一鍵，並寫入更新；
+     * 新名稱已被占用時 create() 以 ALREADY_EXISTS 失敗，整個 transaction 不會寫入
+     */
+    private void rename(String userId, DocumentReference docRef, String knownName, String newName,
+                        Map<String, Object> updates) throws InterruptedException, ExecutionException {
+        firestore.runTransaction(transaction -> {
+            NameKeyRead current = readWithNameKey(transaction, userId, docRef, knownName);
+            DocumentSnapshot restaurant = current.restaurant();
+
+            if (Boolean.TRUE.equals(restaurant.getBoolean("active")) && !sameName(newName, restaurant.getString("name"))) {
+                transaction.create(nameKeyRef(userId, newName), RestaurantNameKey.document(userId, newName, docRef.getId()));
+                if (current.ownedKey() != null) {
+                    transaction.delete(current.ownedKey());
+                }
+            }
+            transaction.update(docRef, updates);
+            return null;
+        }).get();
+    }
+
+    /**
+     * 在 transaction 中讀取餐廳與它目前名稱的唯一鍵；唯一鍵只在屬於這間餐廳時才可釋放
+     * （補建唯一鍵時舊資料中的同名餐廳只有一間拿到唯一鍵，其他同名餐廳刪除或改名時不可釋放它）。
+     * 名稱通常與先前讀到的 knownName 相同，餐廳與唯一鍵以一次 getAll 讀取；必須在 transaction 的寫入之前呼叫。
+     */
+    private NameKeyRead readWithNameKey(Transaction transaction, String userId, DocumentReference docRef,
+                                               String knownName) throws InterruptedException, ExecutionException {
+        DocumentReference knownKeyRef = knownName != null ? nameKeyRef(userId, knownName) : null;
+        List<DocumentSnapshot> snapshots = knownKeyRef != null
+                ? transaction.getAll(docRef, knownKeyRef).get()
+                : List.of(transaction.get(docRef).get());
+
+        DocumentSnapshot restaurant = snapshots.get(0);
+        String currentName = restaurant.getString("name");
+        if (!Boolean.TRUE.equals(restaurant.getBoolean("active")) || currentName == null) {
+            return new NameKeyRead(restaurant, null);
+        }
+
+        DocumentReference keyRef = nameKeyRef(userId, currentName);
+        DocumentSnapshot key = keyRef.equals(knownKeyRef) ? snapshots.get(1) : transaction.get(keyRef).get();
+        boolean owned = key.exists() && docRef.getId().equals(key.getString("restaurantId"));
+        return new NameKeyRead(restaurant, owned ? keyRef : null);
+    }
+
+    /**
+     * transaction 中讀到的餐廳，與屬於它的名稱唯一鍵（沒有時為 null）
+     */
+    private record NameKeyRead(DocumentSnapshot restaurant, DocumentReference ownedKey) {
+    }
+
+    private static boolean sameName(String name, String other) {
+        return other != null && RestaurantNameKey.normalize(name).equals(RestaurantNameKey.normalize(other));
+    }
+
+    private DocumentReference nameKeyRef(String userId, String name) {
+        return firestore.collection(RestaurantNameKey.COLLECTION_NAME)
+                .document(RestaurantNameKey.documentId(userId, name));
+    }
+
+    /**
+     * 將 Firestore Document 轉換為 Response DTO
+     */
+    private RestaurantResponse documentToResponse(QueryDocumentSnapshot document) {
+        return RestaurantResponse.builder()
+                .id(document.getId())
+                .name(document.getString("name"))
+                .category(document.getString("category"))
+                .tags((List<String>) document.get("tags"))
+                .rating(document.getLong("rating") != null ? document.getLong("rating").intValue() : null)
+                .notes(document.getString("notes"))
+                .visitCount(document.getLong("visitCount") != null ?
+                        document.getLong("visitCount").intValue() : 0)
+                .lastVisit(RestaurantResponse.toLocalDateTime(document.getTimestamp("lastVisit")))
+                .createdAt(RestaurantResponse.toLocalDateTime(document.getTimestamp("createdAt")))
+                .updatedAt(RestaurantResponse.toLocalDateTime(document.getTimestamp("updatedAt")))
+                .build();
+    }
+}
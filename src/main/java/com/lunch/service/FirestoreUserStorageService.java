@@ -0,0 +1,505 @@
+package com.lunch.service;
+
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import com.lunch.model.User;
+import com.lunch.model.UserPreferences;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 用戶存儲服務（使用 Firestore）
+ * UserReplica 同步中時，用戶查詢與扇出直接讀取記憶體 replica；未同步時改為直接查詢 Firestore。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "lunch.storage.type", havingValue = "firestore", matchIfMissing = true)
+public class FirestoreUserStorageService implements UserStorageService {
+
+    private static final String COLLECTION_NAME = "users";
+
+    /**
+     * 發送通知只需要的欄位（LunchService 選餐廳與產生訊息、時間輪排程）
+     */
+    private static final String[] NOTIFICATION_FIELDS = {
+            "preferences.restaurants",
+            "preferences.excludeRestaurants",
+            "preferences.notificationTime",
+            "preferences.customMessage"
+    };
+
+    private final Firestore firestore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserActivityBuffer userActivityBuffer;
+    private final UserCache userCache;
+    private final ActiveUserCounter activeUserCounter;
+    private final UserReplica userReplica;
+
+    /**
+     * 分頁讀取用戶時每頁的筆數
+     */
+    @Value("${lunch.users.page-size:500}")
+    private int pageSize = 500;
+
+    /**
+     * 添加新用戶（如果不存在）
+     *
+     * @param userId LINE 用戶 ID
+     * @return true 如果是新用戶，false 如果已存在
+     */
+    @Override
+    public boolean addUser(String userId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            log.warn("⚠️ 嘗試添加空的用戶 ID");
+            return false;
+        }
+
+        // 快取中已有的用戶一定存在，不必再讀取文件
+        if (userCache.get(userId).isPresent()) {
+            userActivityBuffer.touch(userId);
+            return false;
+        }
+
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
+        User newUser = User.builder()
+                .userId(userId)
+                .registeredAt(Timestamp.now())
+                .lastActiveAt(Timestamp.now())
+                .preferences(UserPreferences.builder().build())
+                .active(true)
+                .build();
+
+        try {
+            // create() 只在文件不存在時成功：一次往返完成註冊，並發的第二個請求會得到 ALREADY_EXISTS 而不會覆蓋偏好
+            WriteBatch batch = firestore.batch();
+            batch.create(docRef, newUser);
+            activeUserCounter.increment(batch, 1);
+            List<WriteResult> results = batch.commit().get();
+
+            userReplica.markWritten(userId, results.get(0).getUpdateTime());
+            userCache.put(newUser);
+            log.info("✅ 新用戶已註冊: {}", userId);
+            eventPublisher.publishEvent(new UserPreferencesChangedEvent(userId, newUser.copy()));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("❌ 添加用戶被中斷: {}", userId);
+            return false;
+        } catch (ExecutionException e) {
+            if (FirestoreErrors.hasCode(e, StatusCode.Code.ALREADY_EXISTS)) {
+                // 用戶已存在，活躍時間交給緩衝區批次寫回
+                userActivityBuffer.touch(userId);
+                log.debug("ℹ️ 用戶已存在，已記錄活躍時間: {}", userId);
+                return false;
+            }
+            log.error("❌ 添加用戶時發生錯誤: {}", userId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 獲取用戶資訊
+     *
+     * @param userId LINE 用戶 ID
+     * @return Optional<User>
+     */
+    @Override
+    public Optional<User> getUser(String userId) {
+        Optional<User> replicated = userReplica.get(userId);
+        if (replicated.isPresent()) {
+            return replicated;
+        }
+
+        Optional<User> cached = userCache.get(userId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        try {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
+            DocumentSnapshot document = docRef.get().get();
+
+            if (document.exists()) {
+                User user = document.toObject(User.class);
+                userCache.put(user);
+                return Optional.ofNullable(user);
+            }
+            return Optional.empty();
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("❌ 獲取用戶時發生錯誤: {}", userId, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 獲取所有活躍用戶
+     *
+     * @return 用戶列表
+     */
+    @Override
+    public List<User> getAllActiveUsers() {
+        try (Stream<User> users = streamAllActiveUsers()) {
+            return users.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 以分頁串流讀取所有活躍用戶（一次只保留一到兩頁在記憶體中）
+     * replica 同步中時直接讀取 replica（回傳的 User 為唯讀）
+     *
+     * @return 用戶串流
+     */
+    @Override
+    public Stream<User> streamAllActiveUsers() {
+        if (userReplica.isReady()) {
+            return userReplica.streamActiveUsers();
+        }
+
+        Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("active", true);
+        return stream(query, document -> document.toObject(User.class));
+    }
+
+    /**
+     * 獲取所有啟用通知的用戶
+     *
+     * @return 用戶列表
+     */
+    @Override
+    public List<User> getNotificationEnabledUsers() {
+        try (Stream<User> users = streamNotificationEnabledUsers()) {
+            List<User> result = users.collect(Collectors.toList());
+            log.debug("📊 找到 {} 位啟用通知的用戶", result.size());
+            return result;
+        }
+    }
+
+    /**
+     * 以分頁串流讀取所有啟用通知的用戶（一次只保留一到兩頁在記憶體中）
+     * 只讀取發送通知需要的欄位，回傳的 User 只有 userId 與偏好，不含註冊 / 活躍時間等資料
+     * replica 同步中時直接讀取 replica（回傳的 User 為唯讀）
+     *
+     * @return 用戶串流
+     */
+    @Override
+    public Stream<User> streamNotificationEnabledUsers() {
+        if (userReplica.isReady()) {
+            return userReplica.streamActiveUsers().filter(FirestoreUserStorageService::isNotificationEnabled);
+        }
+
+        Query query = firestore.collection(COLLECTION_NAME)
+                .whereEqualTo("active", true)
+                .whereEqualTo("preferences.notificationEnabled", true)
+                .select(NOTIFICATION_FIELDS);
+        return stream(query, FirestoreUserStorageService::toNotificationUser);
+    }
+
+    private Stream<User> stream(Query query, Function<DocumentSnapshot, User> mapper) {
+        FirestorePageIterator<User> iterator = new FirestorePageIterator<>(query, pageSize, mapper);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * 更新用戶偏好設定
+     *
+     * @param userId      LINE 用戶 ID
+     * @param preferences 新的偏好設定
+     * @return true 如果成功，false 如果失敗
+     */
+    @Override
+    public boolean updateUserPreferences(String userId, UserPreferences preferences) {
+        User known = peek(userId);
+        try {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
+
+            // update() 本身帶有「文件必須存在」的前置條件，不存在時回傳 NOT_FOUND，不必先讀取
+            WriteResult result = docRef.update(
+                    "preferences", preferences,
+                    "lastActiveAt", Timestamp.now()
+            ).get();
+            invalidate(userId, result.getUpdateTime());
+
+            log.info("✅ 已更新用戶偏好: {}", userId);
+            User written = known != null ? known : User.builder().userId(userId).build();
+            written.setPreferences(preferences.copy());
+            eventPublisher.publishEvent(new UserPreferencesChangedEvent(userId, written));
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            invalidate(userId, Timestamp.now());
+            if (isUserMissing(e)) {
+                log.warn("⚠️ 用戶不存在: {}", userId);
+                return false;
+            }
+            log.error("❌ 更新用戶偏好時發生錯誤: {}", userId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 移除用戶（設為非活躍）
+     *
+     * @param userId LINE 用戶 ID
+     * @return true 如果成功移除，false 如果用戶不存在
+     */
+    @Override
+    public boolean removeUser(String userId) {
+        try {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
+
+            // 設為非活躍而不是直接刪除（保留歷史記錄）；只有原本活躍的用戶才扣減計數器
+            boolean removed = firestore.runTransaction(transaction -> {
+                DocumentSnapshot document = transaction.get(docRef).get();
+                if (!document.exists()) {
+                    return false;
+                }
+                if (Boolean.TRUE.equals(document.getBoolean("active"))) {
+                    transaction.update(docRef, "active", false);
+                    activeUserCounter.increment(transaction, -1);
+                }
+                return true;
+            }).get();
+            invalidate(userId, Timestamp.now());
+
+            if (!removed) {
+                log.debug("ℹ️ 用戶不存在: {}", userId);
+                return false;
+            }
+
+            log.info("🗑️ 用戶已設為非活躍: {}", userId);
+            eventPublisher.publishEvent(new UserPreferencesChangedEvent(userId,
+                    User.builder().userId(userId).active(false).build()));
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            invalidate(userId, Timestamp.now());
+            log.error("❌ 移除用戶時發生錯誤: {}", userId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 檢查用戶是否存在
+     *
+     * @param userId LINE 用戶 ID
+     * @return true 如果存在，false 如果不存在
+     */
+    @Override
+    public boolean hasUser(String userId) {
+        return getUser(userId).isPresent();
+    }
+
+    /**
+     * 用戶快取統計
+     */
+    @Override
+    public UserCacheStats getCacheStats() {
+        return userCache.stats();
+    }
+
+    /**
+     * 獲取活躍用戶總數
+     *
+     * @return 用戶數量
+     */
+    @Override
+    public int getUserCount() {
+        if (userReplica.isReady()) {
+            return userReplica.size();
+        }
+        try {
+            return (int) activeUserCounter.get();
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("❌ 獲取用戶數量時發生錯誤", e);
+            return 0;
+        }
+    }
+
+    /**
+     * 啟用用戶通知
+     *
+     * @param userId LINE 用戶 ID
+     * @return true 如果成功
+     */
+    @Override
+    public boolean enableNotification(String userId) {
+        User known = peek(userId);
+        try {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
+
+            WriteResult result = docRef.update("preferences.notificationEnabled", true).get();
+            invalidate(userId, result.getUpdateTime());
+            log.info("🔔 已啟用用戶通知: {}", userId);
+            eventPublisher.publishEvent(new UserPreferencesChangedEvent(userId,
+                    applied(known, preferences -> preferences.setNotificationEnabled(true))));
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            invalidate(userId, Timestamp.now());
+            if (isUserMissing(e)) {
+                log.warn("⚠️ 用戶不存在: {}", userId);
+                return false;
+            }
+            log.error("❌ 啟用通知時發生錯誤: {}", userId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 關閉用戶通知
+     *
+     * @param userId LINE 用戶 ID
+     * @return true 如果成功
+     */
+    @Override
+    public boolean disableNotification(String userId) {
+        User known = peek(userId);
+        try {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
+
+            WriteResult result = docRef.update("preferences.notificationEnabled", false).get();
+            invalidate(userId, result.getUpdateTime());
+            log.info("🔕 已關閉用戶通知: {}", userId);
+            // 關閉後不論其他偏好為何都不會排入通知，寫入前未知也可以直接帶出
+            User written = known != null ? known : User.builder().userId(userId).build();
+            eventPublisher.publishEvent(new UserPreferencesChangedEvent(userId,
+                    applied(written, preferences -> preferences.setNotificationEnabled(false))));
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            invalidate(userId, Timestamp.now());
+            if (isUserMissing(e)) {
+                log.warn("⚠️ 用戶不存在: {}", userId);
+                return false;
+            }
+            log.error("❌ 關閉通知時發生錯誤: {}", userId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 設定用戶偏好的餐廳列表
+     *
+     * @param userId      LINE 用戶 ID
+     * @param restaurants 餐廳列表
+     * @return true 如果成功
+     */
+    @Override
+    public boolean setUserRestaurants(String userId, List<String> restaurants) {
+        User known = peek(userId);
+        try {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
+
+            WriteResult result = docRef.update(
+                    "preferences.restaurants", restaurants,
+                    "lastActiveAt", Timestamp.now()
+            ).get();
+            invalidate(userId, result.getUpdateTime());
+
+            log.info("🍽️ 已更新用戶餐廳偏好: {} (數量: {})", userId, restaurants.size());
+            eventPublisher.publishEvent(new UserPreferencesChangedEvent(userId,
+                    applied(known, preferences -> preferences.setRestaurants(new ArrayList<>(restaurants)))));
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            invalidate(userId, Timestamp.now());
+            if (isUserMissing(e)) {
+                log.warn("⚠️ 用戶不存在: {}", userId);
+                return false;
+            }
+            log.error("❌ 設定餐廳偏好時發生錯誤: {}", userId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 寫入前由 replica / 快取取得目前的用戶（不做 I/O），用來組出變更事件的內容
+     *
+     * @return 用戶的複本；兩者都沒有時為 null
+     */
+    private User peek(String userId) {
+        return userReplica.get(userId).or(() -> userCache.get(userId)).orElse(null);
+    }
+
+    /**
+     * 在寫入前已知的用戶上套用這次寫入的偏好變更
+     *
+     * @param known  寫入前已知的用戶（null = 未知）
+     * @param change 這次寫入對偏好的變更
+     * @return 寫入後的用戶；寫入前未知時為 null
+     */
+    private static User applied(User known, Consumer<UserPreferences> change) {
+        if (known == null) {
+            return null;
+        }
+        if (known.getPreferences() == null) {
+            known.setPreferences(UserPreferences.builder().build());
+        }
+        change.accept(known.getPreferences());
+        return known;
+    }
+
+    /**
+     * 寫入後（或寫入結果不確定時）讓快取與 replica 都不再回傳舊資料
+     */
+    private void invalidate(String userId, Timestamp writeTime) {
+        userCache.invalidate(userId);
+        userReplica.markWritten(userId, writeTime);
+    }
+
+    /**
+     * 條件寫入失敗的原因是否為用戶文件不存在
+     */
+    private static boolean isUserMissing(Exception e) {
+        return FirestoreErrors.hasCode(e, StatusCode.Code.NOT_FOUND);
+    }
+
+    /**
+     * 將投影查詢的結果直接轉為精簡的 User（不經過 toObject 反射）
+     * 查詢條件已保證 active 與 notificationEnabled 為 true；未設定的列表共用同一個空列表
+     */
+    private static User toNotificationUser(DocumentSnapshot document) {
+        UserPreferences preferences = UserPreferences.builder()
+                .restaurants(stringList(document.get("preferences.restaurants")))
+                .excludeRestaurants(stringList(document.get("preferences.excludeRestaurants")))
+                .notificationEnabled(true)
+                .notificationTime(document.getString("preferences.notificationTime"))
+                .customMessage(document.getString("preferences.customMessage"))
+                .build();
+
+        return User.builder()
+                .userId(document.getId())
+                .preferences(preferences)
+                .active(true)
+                .build();
+    }
+
+    /**
+     * 與 streamNotificationEnabledUsers 的查詢條件一致：notificationEnabled 必須明確為 true
+     */
+    private static boolean isNotificationEnabled(User user) {
+        return user.getPreferences() != null && Boolean.TRUE.equals(user.getPreferences().getNotificationEnabled());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> stringList(Object value) {
+        if (value instanceof List<?> list && !list.isEmpty()) {
+            return (List<String>) list;
+        }
+        return Collections.emptyList();
+    }
+}
@@ -1,82 +1,107 @@
 package com.lunch.service;
 
 import com.linecorp.bot.client.LineMessagingClient;
-import com.linecorp.bot.model.PushMessage;
+import com.linecorp.bot.client.exception.BadRequestException;
+import com.linecorp.bot.model.ReplyMessage;
 import com.linecorp.bot.model.message.TextMessage;
-import com.linecorp.bot.model.response.BotApiResponse;
 import com.lunch.model.User;
+import com.lunch.notification.DispatchResult;
+import com.lunch.notification.LinePushClient;
+import com.lunch.notification.NotificationDispatcher;
+import com.lunch.notification.NotificationOutbox;
+import com.lunch.notification.NotificationTask;
+import com.lunch.scheduler.RecommendationPrecomputer;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class LineMessagingService {
 
+    /**
+     * 個性化午餐通知在 outbox 中的批次類型
+     */
+    private static final String PERSONALIZED_RUN = "personalized";
+
     private final LineMessagingClient lineMessagingClient;
+    private final LinePushClient linePushClient;
     private final UserStorageService userStorageService;
-    private final LunchService lunchService;
+    private final RecommendationPrecomputer recommendationPrecomputer;
+    private final NotificationDispatcher notificationDispatcher;
+    private final NotificationOutbox notificationOutbox;
     
     /**
      * 發送午餐通知（個性化推薦）
      * 根據每個用戶的偏好設定發送不同的推薦
      */
     public void sendPersonalizedLunchNotifications() {
-        // 獲取所有啟用通知的用戶
-        List<User> users = userStorageService.getNotificationEnabledUsers();
-
-        if (users == null || users.isEmpty()) {
-            log.warn("⚠️ 沒有啟用通知的用戶！");
-            System.out.println("");
-            System.out.println("════════════════════════════════════════");
-            System.out.println("⚠️ 目前沒有啟用通知的用戶");
-            System.out.println("════════════════════════════════════════");
-            System.out.println("請按照以下步驟註冊用戶：");
-            System.out.println("1. 加入你的 LINE Bot 好友");
-            System.out.println("2. 傳送任何訊息給 Bot");
-            System.out.println("3. 系統會自動註冊你的 User ID");
-            System.out.println("");
-            System.out.println("💡 用戶資料存儲在 Firestore 中");
-            System.out.println("════════════════════════════════════════");
-            System.out.println("");
-            return;
+        // 分頁串流讀取啟用通知的用戶，邊讀取邊發送
+        try (Stream<User> stream = userStorageService.streamNotificationEnabledUsers()) {
+            Iterator<User> users = stream.iterator();
+
+            if (!users.hasNext()) {
+                log.warn("⚠️ 沒有啟用通知的用戶！");
+                System.out.println("");
+                System.out.println("════════════════════════════════════════");
+                System.out.println("⚠️ 目前沒有啟用通知的用戶");
+                System.out.println("════════════════════════════════════════");
+                System.out.println("請按照以下步驟註冊用戶：");
+                System.out.println("1. 加入你的 LINE Bot 好友");
+                System.out.println("2. 傳送任何訊息給 Bot");
+                System.out.println("3. 系統會自動註冊你的 User ID");
+                System.out.println("");
+                System.out.println("💡 用戶資料存儲在 Firestore 中");
+                System.out.println("════════════════════════════════════════");
+                System.out.println("");
+                return;
+            }
+
+            log.info("準備以分頁串流發送個性化通知");
+            dispatchPersonalized(() -> users);
         }
+    }
 
+    /**
+     * 發送個性化午餐通知給指定用戶（例如通知時間輪中到期的用戶）
+     *
+     * @param users 接收通知的用戶
+     */
+    public void sendPersonalizedLunchNotifications(List<User> users) {
         log.info("準備發送個性化通知給 {} 位用戶", users.size());
+        dispatchPersonalized(users);
+    }
 
-        int successCount = 0;
-        int failCount = 0;
-
-        for (User user : users) {
-            try {
-                // 根據用戶偏好選擇餐廳
-                String restaurant = lunchService.selectRestaurantForUser(user);
-
-                // 生成個性化訊息
-                String message = lunchService.formatLunchMessageForUser(restaurant, user);
-
-                // 發送訊息
-                TextMessage textMessage = new TextMessage(message);
-                CompletableFuture<BotApiResponse> future = lineMessagingClient.pushMessage(
-                    new PushMessage(user.getUserId(), textMessage)
-                );
-                future.get();
-
-                log.info("✅ 已發送個性化推薦給使用者: {} (餐廳: {})", user.getUserId(), restaurant);
-                successCount++;
-            } catch (Exception e) {
-                log.error("❌ 發送訊息失敗 (userId: {}): {}", user.getUserId(), e.getMessage(), e);
-                failCount++;
-            }
-        }
+    private void dispatchPersonalized(Iterable<User> users) {
+        String runKey = notificationOutbox.todayRunKey(PERSONALIZED_RUN);
+        // 優先使用預先計算好的推薦，發送時只剩網路 I/O
+        DispatchResult result = notificationDispatcher.dispatch(runKey, users, recommendationPrecomputer::resolve);
 
-        log.info("📊 通知發送完成 - 成功: {}, 失敗: {}, 總計: {}",
-            successCount, failCount, users.size());
+        logDispatchResult(result);
+    }
+
+    /**
+     * 啟動時重送 outbox 中今天尚未完成的通知（例如上一個執行個體在扇出途中被回收）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedNotifications() {
+        Map<String, List<NotificationTask>> unfinished = notificationOutbox.unfinishedRuns();
+
+        unfinished.forEach((runKey, tasks) -> {
+            log.info("🔁 重送未完成的通知: {} ({} 位用戶)", runKey, tasks.size());
+            logDispatchResult(notificationDispatcher.resume(runKey, tasks));
+        });
     }
 
     /**
@@ -86,35 +111,21 @@ public class LineMessagingService {
      */
     @Deprecated
     public void sendLunchNotification(String message) {
-        List<User> users = userStorageService.getAllActiveUsers();
-
-        if (users == null || users.isEmpty()) {
-            log.warn("⚠️ 沒有註冊的用戶！");
-            return;
-        }
+        try (Stream<User> stream = userStorageService.streamAllActiveUsers()) {
+            Iterator<User> users = stream.iterator();
 
-        log.info("準備發送統一訊息給 {} 位用戶", users.size());
-        TextMessage textMessage = new TextMessage(message);
-
-        int successCount = 0;
-        int failCount = 0;
-
-        for (User user : users) {
-            try {
-                CompletableFuture<BotApiResponse> future = lineMessagingClient.pushMessage(
-                    new PushMessage(user.getUserId(), textMessage)
-                );
-                future.get();
-                log.info("✅ 已成功發送訊息給使用者: {}", user.getUserId());
-                successCount++;
-            } catch (Exception e) {
-                log.error("❌ 發送訊息失敗 (userId: {}): {}", user.getUserId(), e.getMessage(), e);
-                failCount++;
+            if (!users.hasNext()) {
+                log.warn("⚠️ 沒有註冊的用戶！");
+                return;
             }
-        }
 
-        log.info("📊 通知發送完成 - 成功: {}, 失敗: {}, 總計: {}",
-            successCount, failCount, users.size());
+            log.info("準備以分頁串流發送統一訊息");
+
+            DispatchResult result = notificationDispatcher.dispatch(null, () -> users,
+                    user -> new NotificationTask(user.getUserId(), message, null));
+
+            logDispatchResult(result);
+        }
     }
 
     /**
@@ -126,16 +137,78 @@ public class LineMessagingService {
      */
     public boolean sendMessageToUser(String userId, String message) {
         try {
-            TextMessage textMessage = new TextMessage(message);
-            CompletableFuture<BotApiResponse> future = lineMessagingClient.pushMessage(
-                new PushMessage(userId, textMessage)
-            );
-            future.get();
+            linePushClient.push(userId, message).get();
             log.info("✅ 已發送訊息給使用者: {}", userId);
             return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("❌ 發送訊息被中斷 (userId: {})", userId);
+            return false;
         } catch (Exception e) {
             log.error("❌ 發送訊息失敗 (userId: {}): {}", userId, e.getMessage(), e);
             return false;
         }
     }
+
+    /**
+     * 以 reply token 回覆用戶；沒有 token 或 LINE 回應 token 無效（已過期或已使用）時改用 push。
+     * 逾時、5xx 或網路錯誤時回覆可能已經送達，不改用 push，以免用戶收到兩次。
+     *
+     * @param replyToken webhook 事件的 reply token（可為 null）
+     * @param userId     用戶 ID
+     * @param message    訊息內容
+     * @return true 如果成功，false 如果失敗
+     */
+    public boolean replyMessage(String replyToken, String userId, String message) {
+        if (replyToken == null || replyToken.isBlank()) {
+            return sendMessageToUser(userId, message);
+        }
+
+        try {
+            lineMessagingClient.replyMessage(new ReplyMessage(replyToken, new TextMessage(message))).get();
+            log.info("✅ 已回覆訊息給使用者: {}", userId);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("❌ 回覆訊息被中斷 (userId: {})", userId);
+            return false;
+        } catch (ExecutionException e) {
+            if (isInvalidReplyToken(e.getCause())) {
+                log.warn("⚠️ reply token 無效，改用 push (userId: {})", userId);
+                return sendMessageToUser(userId, message);
+            }
+            log.error("❌ 回覆訊息失敗 (userId: {}): {}", userId, e.getMessage(), e);
+            return false;
+        } catch (RuntimeException e) {
+            log.error("❌ 回覆訊息失敗 (userId: {}): {}", userId, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * LINE 以 400 "Invalid reply token" 拒絕回覆：代表回覆一定沒有送出
+     */
+    private static boolean isInvalidReplyToken(Throwable cause) {
+        if (!(cause instanceof BadRequestException badRequest)) {
+            return false;
+        }
+        String reason = badRequest.getErrorResponse() != null
+                ? badRequest.getErrorResponse().getMessage()
+                : badRequest.getMessage();
+        return reason != null && reason.toLowerCase(Locale.ROOT).contains("invalid reply token");
+    }
+
+    /**
+     * 記錄發送統計
+     */
+    private void logDispatchResult(DispatchResult result) {
+        if (!result.isComplete()) {
+            log.error("❌ 通知扇出未完成（讀取接收者失敗），之後的用戶沒有收到通知 - 成功: {}, 失敗: {}, 略過: {}",
+                result.getSuccessCount(), result.getFailCount(), result.getSkippedCount());
+            return;
+        }
+        log.info("📊 通知發送完成 - 成功: {}, 失敗: {}, 略過: {}, 總計: {}, 耗時: {} ms",
+            result.getSuccessCount(), result.getFailCount(), result.getSkippedCount(),
+            result.getTotal(), result.getElapsedMillis());
+    }
 }
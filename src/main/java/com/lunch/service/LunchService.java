@@ -3,6 +3,7 @@ package com.lunch.service;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lunch.model.User;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
@@ -18,8 +19,12 @@ import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class LunchService {
 
+    private final UserRestaurantService userRestaurantService;
+    private final RecommendationScorer recommendationScorer;
+
     private List<String> restaurants;
     private final Random random = new Random();
     private final ObjectMapper objectMapper = new ObjectMapper();
@@ -54,15 +59,66 @@ public class LunchService {
     
     /**
      * 根據用戶偏好選擇餐廳
+     * 候選為偏好餐廳（或全部餐廳）扣除排除的餐廳；有啟用推薦權重時，依用戶餐廳清單中同名餐廳的
+     * 評分與造訪紀錄加權（不在清單中的餐廳使用中性權重），以 alias table 抽樣。
+     * 用戶的餐廳索引未快取時會載入一次（互動式請求使用；批次推薦請改用指定索引的版本）。
      *
      * @param user 用戶物件（包含偏好設定）
      * @return 推薦的餐廳
      */
     public String selectRestaurantForUser(User user) {
-        if (user == null || user.getPreferences() == null) {
+        if (user == null) {
+            return selectRandomRestaurant();
+        }
+        return selectRestaurantForUser(user, isWeighted() ? indexOf(user.getUserId()) : null);
+    }
+
+    /**
+     * 以指定的餐廳索引根據用戶偏好選擇餐廳（不做任何 I/O）
+     *
+     * @param user  用戶物件（包含偏好設定）
+     * @param index 用戶的餐廳索引（null = 均勻推薦）
+     * @return 推薦的餐廳
+     */
+    public String selectRestaurantForUser(User user, RestaurantIndex index) {
+        if (user == null) {
             return selectRandomRestaurant();
         }
 
+        List<String> candidates = candidatesFor(user);
+        if (candidates.isEmpty()) {
+            return selectRandomRestaurant();
+        }
+        if (index == null || !recommendationScorer.isEnabled()) {
+            return candidates.get(random.nextInt(candidates.size()));
+        }
+        return index.pickByName(candidates, RecommendationScorer.NEUTRAL_WEIGHT, random);
+    }
+
+    /**
+     * 推薦是否依用戶的餐廳索引加權（停用時不需要載入索引）
+     */
+    public boolean isWeighted() {
+        return recommendationScorer.isEnabled();
+    }
+
+    private RestaurantIndex indexOf(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        try {
+            return userRestaurantService.getRestaurantIndex(userId);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ 無法取得用戶 {} 的餐廳清單，改為均勻推薦: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    private List<String> candidatesFor(User user) {
+        if (user.getPreferences() == null) {
+            return restaurants;
+        }
+
         List<String> userRestaurants = user.getPreferences().getRestaurants();
         List<String> excludeRestaurants = user.getPreferences().getExcludeRestaurants();
 
@@ -75,11 +131,9 @@ public class LunchService {
 
             if (filteredRestaurants.isEmpty()) {
                 log.warn("⚠️ 用戶 {} 的偏好餐廳被全部排除，使用預設列表", user.getUserId());
-                return selectRandomRestaurant();
+                return restaurants;
             }
-
-            int index = random.nextInt(filteredRestaurants.size());
-            return filteredRestaurants.get(index);
+            return filteredRestaurants;
         }
 
         // 如果沒有設定偏好，使用全部餐廳但排除不要的
@@ -90,15 +144,13 @@ public class LunchService {
 
             if (filteredRestaurants.isEmpty()) {
                 log.warn("⚠️ 用戶 {} 排除了所有餐廳，使用預設列表", user.getUserId());
-                return selectRandomRestaurant();
+                return restaurants;
             }
-
-            int index = random.nextInt(filteredRestaurants.size());
-            return filteredRestaurants.get(index);
+            return filteredRestaurants;
         }
 
         // 使用全部餐廳
-        return selectRandomRestaurant();
+        return restaurants;
     }
 
     public String formatLunchMessage(String restaurant) {
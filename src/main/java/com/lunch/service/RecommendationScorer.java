@@ -0,0 +1,118 @@
+package com.lunch.service;
+
+import com.lunch.dto.RestaurantResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 推薦權重計算
+ * 每間餐廳的權重 = 評分加成 × 近期造訪衰減 × 造訪疲勞，並以 min-weight 為下限（永遠有機會被選到）：
+ * <ul>
+ *   <li>評分加成：1 + rating-boost × (rating - 3)，未評分視為 1</li>
+ *   <li>近期造訪衰減：1 - 0.5^(距上次造訪天數 / recency-half-life-days)，剛去過接近 0，從未造訪為 1</li>
+ *   <li>造訪疲勞：1 / (1 + visit-fatigue × visitCount)</li>
+ * </ul>
+ * 索引使用的權重函式以日期為基準（近期造訪衰減算到當天 00:00），同一天內權重固定，
+ * 索引在日期改變時重新計算權重，隨時間恢復的衰減因此不受索引存活多久影響。
+ * 停用時回傳 null 權重函式，呼叫端改為均勻抽樣。
+ */
+@Component
+public class RecommendationScorer {
+
+    /**
+     * 未出現在用戶餐廳清單中的餐廳權重（等同未評分、從未造訪）
+     */
+    public static final double NEUTRAL_WEIGHT = 1.0;
+
+    /**
+     * lastVisit（LocalDateTime）所在的時區
+     */
+    private static final ZoneId ZONE = ZoneId.of("Asia/Taipei");
+
+    private final boolean enabled;
+    private final double ratingBoost;
+    private final double recencyHalfLifeDays;
+    private final double visitFatigue;
+    private final double minWeight;
+
+    public RecommendationScorer(
+            @Value("${lunch.recommendation.enabled:true}") boolean enabled,
+            @Value("${lunch.recommendation.rating-boost:0.25}") double ratingBoost,
+            @Value("${lunch.recommendation.recency-half-life-days:3}") double recencyHalfLifeDays,
+            @Value("${lunch.recommendation.visit-fatigue:0.05}") double visitFatigue,
+            @Value("${lunch.recommendation.min-weight:0.05}") double minWeight) {
+        this.enabled = enabled;
+        this.ratingBoost = Math.max(0, ratingBoost);
+        this.recencyHalfLifeDays = Math.max(0, recencyHalfLifeDays);
+        this.visitFatigue = Math.max(0, visitFatigue);
+        this.minWeight = Math.max(0, minWeight);
+    }
+
+    /**
+     * 是否依權重推薦
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 計算單一餐廳的權重
+     *
+     * @param restaurant 餐廳
+     * @param now        目前時間（計算近期造訪衰減）
+     */
+    public double weight(RestaurantResponse restaurant, LocalDateTime now) {
+        double weight = NEUTRAL_WEIGHT;
+
+        if (restaurant.getRating() != null) {
+            weight *= Math.max(0, 1 + ratingBoost * (restaurant.getRating() - 3));
+        }
+
+        if (restaurant.getLastVisit() != null && recencyHalfLifeDays > 0) {
+            double days = Math.max(0, Duration.between(restaurant.getLastVisit(), now).toMinutes() / 1440.0);
+            weight *= 1 - Math.pow(0.5, days / recencyHalfLifeDays);
+        }
+
+        int visitCount = restaurant.getVisitCount() != null ? restaurant.getVisitCount() : 0;
+        weight /= 1 + visitFatigue * visitCount;
+
+        return Math.max(minWeight, weight);
+    }
+
+    /**
+     * 以日期計算權重的函式（近期造訪衰減算到該日 00:00，當天的造訪視為剛造訪）
+     *
+     * @return 權重函式（停用時回傳 null）
+     */
+    public Weigher weigher() {
+        if (!enabled) {
+            return null;
+        }
+        return (restaurant, day) -> weight(restaurant, day.atStartOfDay());
+    }
+
+    /**
+     * 今天的日期（台北時間），索引以此判斷權重是否需要重新計算
+     */
+    static LocalDate today() {
+        return LocalDate.now(ZONE);
+    }
+
+    /**
+     * 依日期計算的推薦權重函式
+     */
+    @FunctionalInterface
+    public interface Weigher {
+
+        /**
+         * @param restaurant 餐廳
+         * @param day        計算權重的日期
+         */
+        double weight(RestaurantResponse restaurant, LocalDate day);
+    }
+}
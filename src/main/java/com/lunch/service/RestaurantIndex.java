@@ -0,0 +1,612 @@
+package com.lunch.service;
+
+import com.lunch.dto.RestaurantPage;
+import com.lunch.dto.RestaurantResponse;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 單一用戶的餐廳索引（建立後不再變更，編輯與造訪以 withRestaurant / without 產生新的索引，未異動的結構與原索引共用）
+ * 有效餐廳依名稱（同名再依 ID）排序後以位置編號；分類與標籤各自對應一個 BitSet，篩選只需 BitSet 的 AND / OR，
+ * 結果依位置順序輸出即為名稱順序，分頁只需二分搜尋出 pageToken 之後的位置。
+ * 隨機推薦使用每組篩選條件的候選陣列（依 lastVisit 由舊到新排列，第一次使用時建立並保留），
+ * 「排除最近造訪」只是二分搜尋出一段前綴，之後在前綴中抽樣：有推薦權重時使用 alias table，否則均勻抽樣。
+ * 依名稱抽樣（每日推薦的偏好清單）的 alias table 同樣在第一次使用時建立並保留。
+ * 推薦權重以日期為基準計算（見 RecommendationScorer.Weigher）：抽樣時發現日期改變，就以建立索引時的權重函式
+ * 重新計算整組權重，依舊權重建立的 alias table 一併捨棄，近期造訪的衰減因此每天恢復而不是停在建立索引的那一刻。
+ */
+public final class RestaurantIndex {
+
+    /**
+     * 每個索引最多保留的篩選條件組數與候選名稱組數（超過時照常計算但不保留）
+     */
+    private static final int MAX_CACHED_FILTERS = 64;
+
+    /**
+     * Firestore 的字串排序（UTF-8 位元組順序，等同 Unicode code point 順序）；
+     * String.compareTo 比的是 UTF-16 code unit，emoji 等補充平面字元會排在全形標點（U+E000–U+FFFF）之前
+     */
+    private static final Comparator<String> UTF8_ORDER = RestaurantIndex::compareCodePoints;
+
+    /**
+     * 列表順序，與 Firestore 查詢的 orderBy("name").orderBy(documentId) 一致
+     */
+    private static final Comparator<RestaurantResponse> BY_NAME =
+            Comparator.comparing(RestaurantResponse::getName, Comparator.nullsLast(UTF8_ORDER))
+                    .thenComparing(RestaurantResponse::getId, Comparator.nullsLast(UTF8_ORDER));
+
+    private static final Comparator<RestaurantResponse> BY_LAST_VISIT =
+            Comparator.comparing(RestaurantResponse::getLastVisit, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    /**
+     * 依名稱排序的有效餐廳
+     */
+    private final List<RestaurantResponse> restaurants;
+
+    /**
+     * 推薦權重函式（null = 均勻抽樣）
+     */
+    private final RecommendationScorer.Weigher weigher;
+
+    /**
+     * 最近一次使用的日期的推薦權重（null = 均勻抽樣；日期改變時整組重新計算）
+     */
+    private volatile DailyWeights weights;
+
+    private final Map<String, Integer> positionById;
+    private final Map<String, Integer> positionByName;
+    private final BitSet all;
+    private final Map<String, BitSet> byCategory;
+    private final Map<String, BitSet> byTag;
+
+    /**
+     * 依 lastVisit 由舊到新排列的位置（從未造訪的在最前面）
+     */
+    private final int[] byLastVisit;
+
+    /**
+     * 篩選條件 → 隨機推薦候選（建立後只增不改）
+     */
+    private final Map<String, Candidates> candidatesByFilter = new ConcurrentHashMap<>();
+
+    private RestaurantIndex(List<RestaurantResponse> restaurants,
+                            RecommendationScorer.Weigher weigher, DailyWeights weights,
+                            Map<String, Integer> positionById, Map<String, Integer> positionByName, BitSet all,
+                            Map<String, BitSet> byCategory, Map<String, BitSet> byTag, int[] byLastVisit) {
+        this.restaurants = restaurants;
+        this.weigher = weigher;
+        this.weights = weights;
+        this.positionById = positionById;
+        this.positionByName = positionByName;
+        this.all = all;
+        this.byCategory = byCategory;
+        this.byTag = byTag;
+        this.byLastVisit = byLastVisit;
+    }
+
+    /**
+     * 以已依名稱排序的餐廳建立所有查詢結構
+     */
+    private static RestaurantIndex of(List<RestaurantResponse> restaurants,
+                                      RecommendationScorer.Weigher weigher, DailyWeights weights) {
+        Map<String, Integer> positionById = new HashMap<>();
+        Map<String, Integer> positionByName = new HashMap<>();
+        Map<String, BitSet> byCategory = new HashMap<>();
+        Map<String, BitSet> byTag = new HashMap<>();
+        BitSet all = new BitSet(restaurants.size());
+        all.set(0, restaurants.size());
+
+        List<Integer> positions = new ArrayList<>(restaurants.size());
+        for (int i = 0; i < restaurants.size(); i++) {
+            RestaurantResponse restaurant = restaurants.get(i);
+            positionById.put(restaurant.getId(), i);
+            positionByName.putIfAbsent(restaurant.getName(), i);
+            for (String category : categoriesOf(restaurant)) {
+                byCategory.computeIfAbsent(category, k -> new BitSet()).set(i);
+            }
+            for (String tag : tagsOf(restaurant)) {
+                byTag.computeIfAbsent(tag, k -> new BitSet()).set(i);
+            }
+            positions.add(i);
+        }
+
+        positions.sort((a, b) -> BY_LAST_VISIT.compare(restaurants.get(a), restaurants.get(b)));
+        int[] byLastVisit = positions.stream().mapToInt(Integer::intValue).toArray();
+
+        return new RestaurantIndex(restaurants, weigher, weights, positionById, positionByName, all,
+                byCategory, byTag, byLastVisit);
+    }
+
+    /**
+     * 以用戶的有效餐廳建立索引（均勻抽樣）
+     */
+    public static RestaurantIndex build(List<RestaurantResponse> activeRestaurants) {
+        return build(activeRestaurants, null);
+    }
+
+    /**
+     * 以用戶的有效餐廳建立索引
+     *
+     * @param activeRestaurants 有效餐廳
+     * @param weigher           推薦權重函式（null = 均勻抽樣）
+     */
+    public static RestaurantIndex build(List<RestaurantResponse> activeRestaurants,
+                                        RecommendationScorer.Weigher weigher) {
+        List<RestaurantResponse> sorted = new ArrayList<>(activeRestaurants);
+        sorted.sort(BY_NAME);
+        return of(sorted, weigher,
+                weigher == null ? null : DailyWeights.of(sorted, weigher, RecommendationScorer.today()));
+    }
+
+    /**
+     * 新增或取代一間餐廳後的索引；只重新計算這間餐廳的權重，其他餐廳沿用今天已算好的權重
+     * 名稱沒變時（造訪、評分、分類與標籤的編輯）位置不動，直接在原本的結構上修補：
+     * 只複製異動的權重、分類 / 標籤 BitSet 與 lastVisit 順序，其餘結構與原索引共用。
+     * 新增或改名時位置會移動，在已排序的清單中插入後重建查詢結構（不重新排序、不重新計算其他權重）。
+     *
+     * @param changed 新增或更新後的餐廳
+     * @param weigher 推薦權重函式（null = 均勻抽樣）
+     */
+    public RestaurantIndex withRestaurant(RestaurantResponse changed, RecommendationScorer.Weigher weigher) {
+        LocalDate today = RecommendationScorer.today();
+        Integer position = positionById.get(changed.getId());
+        if (position != null && BY_NAME.compare(restaurants.get(position), changed) == 0) {
+            return replacedAt(position, changed, weigher, today);
+        }
+
+        DailyWeights current = weightsOn(today);
+        List<RestaurantResponse> updated = new ArrayList<>(restaurants.size() + 1);
+        List<Double> updatedWeights = new ArrayList<>(restaurants.size() + 1);
+        boolean inserted = false;
+        for (RestaurantResponse restaurant : restaurants) {
+            if (restaurant.getId().equals(changed.getId())) {
+                continue;
+            }
+            if (!inserted && BY_NAME.compare(changed, restaurant) < 0) {
+                updated.add(changed);
+                updatedWeights.add(weigher != null ? weigher.weight(changed, today) : 0);
+                inserted = true;
+            }
+            updated.add(restaurant);
+            updatedWeights.add(weigher != null ? weightOf(restaurant, current, weigher, today) : 0);
+        }
+        if (!inserted) {
+            updated.add(changed);
+            updatedWeights.add(weigher != null ? weigher.weight(changed, today) : 0);
+        }
+
+        return of(updated, weigher, weigher == null ? null
+                : new DailyWeights(today, updatedWeights.stream().mapToDouble(Double::doubleValue).toArray()));
+    }
+
+    /**
+     * 取代同一位置的餐廳（名稱不變，排序位置不變）
+     */
+    private RestaurantIndex replacedAt(int position, RestaurantResponse changed,
+                                       RecommendationScorer.Weigher weigher, LocalDate today) {
+        RestaurantResponse previous = restaurants.get(position);
+        List<RestaurantResponse> updated = new ArrayList<>(restaurants);
+        updated.set(position, changed);
+
+        DailyWeights updatedWeights = null;
+        if (weigher != null) {
+            DailyWeights current = weightsOn(today);
+            double[] values = current != null
+                    ? current.values().clone()
+                    : DailyWeights.weigh(updated, weigher, today);
+            values[position] = weigher.weight(changed, today);
+            updatedWeights = new DailyWeights(today, values);
+        }
+
+        int[] updatedByLastVisit = Objects.equals(previous.getLastVisit(), changed.getLastVisit())
+                ? byLastVisit
+                : reordered(updated, position);
+
+        return new RestaurantIndex(updated, weigher, updatedWeights, positionById, positionByName, all,
+                moved(byCategory, position, categoriesOf(previous), categoriesOf(changed)),
+                moved(byTag, position, tagsOf(previous), tagsOf(changed)),
+                updatedByLastVisit);
+    }
+
+    /**
+     * 把 position 從 lastVisit 順序中移到新的位置（同一 lastVisit 依位置排列，與建立索引時的穩定排序一致）
+     */
+    private int[] reordered(List<RestaurantResponse> updated, int position) {
+        RestaurantResponse changed = updated.get(position);
+        int[] order = new int[byLastVisit.length];
+        int count = 0;
+        boolean inserted = false;
+        for (int other : byLastVisit) {
+            if (other == position) {
+                continue;
+            }
+            if (!inserted) {
+                int compared = BY_LAST_VISIT.compare(changed, updated.get(other));
+                if (compared < 0 || (compared == 0 && position < other)) {
+                    order[count++] = position;
+                    inserted = true;
+                }
+            }
+            order[count++] = other;
+        }
+        if (!inserted) {
+            order[count] = position;
+        }
+        return order;
+    }
+
+    /**
+     * 修補分類或標籤的 BitSet：只複製有異動的鍵，其他 BitSet 與原索引共用
+     */
+    private static Map<String, BitSet> moved(Map<String, BitSet> index, int position,
+                                             Set<String> removed, Set<String> added) {
+        if (removed.equals(added)) {
+            return index;
+        }
+        Map<String, BitSet> updated = new HashMap<>(index);
+        for (String key : removed) {
+            if (!added.contains(key)) {
+                BitSet positions = (BitSet) updated.get(key).clone();
+                positions.clear(position);
+                updated.put(key, positions);
+            }
+        }
+        for (String key : added) {
+            if (!removed.contains(key)) {
+                BitSet existing = updated.get(key);
+                BitSet positions = existing != null ? (BitSet) existing.clone() : new BitSet();
+                positions.set(position);
+                updated.put(key, positions);
+            }
+        }
+        return updated;
+    }
+
+    private static Set<String> categoriesOf(RestaurantResponse restaurant) {
+        return restaurant.getCategory() != null ? Set.of(restaurant.getCategory()) : Set.of();
+    }
+
+    private static Set<String> tagsOf(RestaurantResponse restaurant) {
+        return restaurant.getTags() != null ? new HashSet<>(restaurant.getTags()) : Set.of();
+    }
+
+    private static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * 移除一間餐廳後的索引（其他餐廳沿用今天已算好的權重）
+     */
+    public RestaurantIndex without(String restaurantId) {
+        if (!positionById.containsKey(restaurantId)) {
+            return this;
+        }
+        List<RestaurantResponse> updated = new ArrayList<>(restaurants.size());
+        for (RestaurantResponse restaurant : restaurants) {
+            if (!restaurant.getId().equals(restaurantId)) {
+                updated.add(restaurant);
+            }
+        }
+        DailyWeights current = weightsOn(RecommendationScorer.today());
+        return of(updated, weigher, current == null ? null : new DailyWeights(current.day(), updated.stream()
+                .mapToDouble(restaurant -> current.values()[positionById.get(restaurant.getId())])
+                .toArray()));
+    }
+
+    /**
+     * 原有餐廳沿用今天已算好的權重（原本沒有權重時才重新計算）
+     */
+    private double weightOf(RestaurantResponse restaurant, DailyWeights current,
+                            RecommendationScorer.Weigher weigher, LocalDate today) {
+        Integer position = positionById.get(restaurant.getId());
+        return current != null && position != null ? current.values()[position] : weigher.weight(restaurant, today);
+    }
+
+    /**
+     * 指定日期的推薦權重；與上次使用的日期不同時以建立索引時的權重函式重新計算（連同依名稱的 alias table）
+     *
+     * @return 權重（均勻抽樣的索引回傳 null）
+     */
+    private DailyWeights weightsOn(LocalDate day) {
+        DailyWeights current = weights;
+        if (current == null || current.day().equals(day)) {
+            return current;
+        }
+        // 並行時可能重複計算，結果相同，任一份留下即可
+        DailyWeights updated = DailyWeights.of(restaurants, weigher, day);
+        weights = updated;
+        return updated;
+    }
+
+    /**
+     * 符合分類（完全相同）且包含任一標籤的餐廳位置
+     *
+     * @param category 分類（null 或空白 = 不篩選）
+     * @param tags     標籤（null 或空 = 不篩選）
+     */
+    public BitSet matching(String category, List<String> tags) {
+        BitSet result = (BitSet) all.clone();
+
+        if (category != null && !category.trim().isEmpty()) {
+            result.and(byCategory.getOrDefault(category, new BitSet()));
+        }
+
+        if (tags != null && !tags.isEmpty()) {
+            BitSet anyTag = new BitSet();
+            for (String tag : tags) {
+                BitSet tagged = byTag.get(tag);
+                if (tagged != null) {
+                    anyTag.or(tagged);
+                }
+            }
+            result.and(anyTag);
+        }
+        return result;
+    }
+
+    /**
+     * 符合篩選條件的隨機推薦候選（同一組條件只在第一次使用時建立）
+     *
+     * @param category 分類（null 或空白 = 不篩選）
+     * @param tags     標籤（null 或空 = 不篩選）
+     */
+    public Candidates candidates(String category, List<String> tags) {
+        String key = candidatesKey(category, tags);
+        Candidates cached = candidatesByFilter.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        BitSet matching = matching(category, tags);
+        int[] positions = new int[matching.cardinality()];
+        int count = 0;
+        for (int position : byLastVisit) {
+            if (matching.get(position)) {
+                positions[count++] = position;
+            }
+        }
+
+        Candidates candidates = new Candidates(positions);
+        if (candidatesByFilter.size() < MAX_CACHED_FILTERS) {
+            candidatesByFilter.putIfAbsent(key, candidates);
+        }
+        return candidates;
+    }
+
+    private static String candidatesKey(String category, List<String> tags) {
+        String categoryKey = category != null && !category.trim().isEmpty() ? category : "";
+        String tagsKey = tags == null ? "" : String.join("\0", new TreeSet<>(tags));
+        return categoryKey + '\1' + tagsKey;
+    }
+
+    /**
+     * 依名稱順序列出位置對應的餐廳
+     */
+    public List<RestaurantResponse> list(BitSet positions) {
+        List<RestaurantResponse> result = new ArrayList<>(positions.cardinality());
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            result.add(restaurants.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 依名稱順序列出 cursor 之後的餐廳
+     *
+     * @param positions 候選位置
+     * @param after     上一頁最後一筆（null = 從頭開始）
+     * @param max       最多筆數
+     */
+    public List<RestaurantResponse> page(BitSet positions, RestaurantPage.Cursor after, int max) {
+        int start = 0;
+        if (after != null) {
+            RestaurantResponse key = RestaurantResponse.builder().name(after.name()).id(after.id()).build();
+            int low = 0;
+            int high = restaurants.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (BY_NAME.compare(restaurants.get(mid), key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            start = low;
+        }
+
+        List<RestaurantResponse> result = new ArrayList<>(Math.min(max, restaurants.size()));
+        for (int i = positions.nextSetBit(start); i >= 0 && result.size() < max; i = positions.nextSetBit(i + 1)) {
+            result.add(restaurants.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 是否為此用戶的有效餐廳
+     */
+    public boolean contains(String restaurantId) {
+        return positionById.containsKey(restaurantId);
+    }
+
+    /**
+     * 取得有效餐廳
+     */
+    public Optional<RestaurantResponse> find(String restaurantId) {
+        Integer position = positionById.get(restaurantId);
+        return position != null ? Optional.of(restaurants.get(position)) : Optional.empty();
+    }
+
+    /**
+     * 依名稱取得餐廳的推薦權重
+     *
+     * @param name          餐廳名稱
+     * @param defaultWeight 不在清單中或沒有權重時使用的權重
+     */
+    public double weightOfName(String name, double defaultWeight) {
+        return weightOfName(name, defaultWeight, RecommendationScorer.today());
+    }
+
+    /**
+     * 依名稱取得餐廳在指定日期的推薦權重
+     */
+    double weightOfName(String name, double defaultWeight, LocalDate day) {
+        return weightOfName(name, defaultWeight, weightsOn(day));
+    }
+
+    private double weightOfName(String name, double defaultWeight, DailyWeights current) {
+        Integer position = positionByName.get(name);
+        return current != null && position != null ? current.values()[position] : defaultWeight;
+    }
+
+    /**
+     * 從指定名稱中選一個：有推薦權重時依同名餐廳的權重（不在清單中的名稱使用 defaultWeight），否則均勻
+     * 同一組名稱的 alias table 只在當天第一次使用時建立，之後保留到日期改變為止。
+     *
+     * @param names         候選名稱（不可為空）
+     * @param defaultWeight 不在清單中的名稱使用的權重
+     */
+    public String pickByName(List<String> names, double defaultWeight, Random random) {
+        DailyWeights current = weightsOn(RecommendationScorer.today());
+        if (current == null) {
+            return names.get(random.nextInt(names.size()));
+        }
+
+        Map<List<String>, AliasTable> aliasByNames = current.aliasByNames();
+        AliasTable table = aliasByNames.get(names);
+        if (table == null) {
+            table = AliasTable.of(names.stream()
+                    .mapToDouble(name -> weightOfName(name, defaultWeight, current))
+                    .toArray());
+            if (aliasByNames.size() < MAX_CACHED_FILTERS) {
+                aliasByNames.putIfAbsent(Collections.unmodifiableList(new ArrayList<>(names)), table);
+            }
+        }
+        return names.get(table.sample(random));
+    }
+
+    /**
+     * 有效餐廳數
+     */
+    public int size() {
+        return restaurants.size();
+    }
+
+    /**
+     * 一組篩選條件的候選餐廳，依 lastVisit 由舊到新排列（從未造訪的在最前面）
+     */
+    public final class Candidates {
+
+        private final int[] positions;
+
+        /**
+         * 最近一次使用的 alias table 與其涵蓋的前綴長度（只在「排除最近造訪」的分界移動或日期改變時重建）
+         */
+        private volatile WeightedPrefix weightedPrefix;
+
+        private Candidates(int[] positions) {
+            this.positions = positions;
+        }
+
+        /**
+         * 候選數
+         */
+        public int size() {
+            return positions.length;
+        }
+
+        /**
+         * 從未造訪或在 cutoff 之前造訪的候選數（這些候選排在最前面）
+         */
+        public int countVisitedBefore(LocalDateTime cutoff) {
+            int low = 0;
+            int high = positions.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                LocalDateTime lastVisit = restaurants.get(positions[mid]).getLastVisit();
+                if (lastVisit == null || lastVisit.isBefore(cutoff)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * 從前 bound 個候選中隨機選一間（有推薦權重時依權重，否則均勻）
+         *
+         * @throws IllegalArgumentException 如果 bound 不是正數
+         */
+        public RestaurantResponse pick(int bound, Random random) {
+            DailyWeights current = weightsOn(RecommendationScorer.today());
+            if (current == null) {
+                return restaurants.get(positions[random.nextInt(bound)]);
+            }
+            return restaurants.get(positions[aliasTable(current, bound).sample(random)]);
+        }
+
+        private AliasTable aliasTable(DailyWeights current, int bound) {
+            WeightedPrefix prefix = weightedPrefix;
+            if (prefix != null && prefix.weights == current && prefix.bound == bound) {
+                return prefix.table;
+            }
+
+            double[] prefixWeights = new double[bound];
+            for (int i = 0; i < bound; i++) {
+                prefixWeights[i] = current.values()[positions[i]];
+            }
+            AliasTable table = AliasTable.of(prefixWeights);
+            weightedPrefix = new WeightedPrefix(current, bound, table);
+            return table;
+        }
+    }
+
+    private record WeightedPrefix(DailyWeights weights, int bound, AliasTable table) {
+    }
+
+    /**
+     * 某一天的推薦權重（依位置）與依候選名稱建立的 alias table（建立後只增不改，日期改變時整組捨棄）
+     */
+    private record DailyWeights(LocalDate day, double[] values, Map<List<String>, AliasTable> aliasByNames) {
+
+        private DailyWeights(LocalDate day, double[] values) {
+            this(day, values, new ConcurrentHashMap<>());
+        }
+
+        private static DailyWeights of(List<RestaurantResponse> restaurants, RecommendationScorer.Weigher weigher,
+                                       LocalDate day) {
+            return new DailyWeights(day, weigh(restaurants, weigher, day));
+        }
+
+        private static double[] weigh(List<RestaurantResponse> restaurants, RecommendationScorer.Weigher weigher,
+                                      LocalDate day) {
+            return restaurants.stream().mapToDouble(restaurant -> weigher.weight(restaurant, day)).toArray();
+        }
+    }
+}
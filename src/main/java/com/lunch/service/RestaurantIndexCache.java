@@ -0,0 +1,116 @@
+package com.lunch.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 各用戶餐廳索引的快取（LRU + TTL）
+ * 第一次查詢時才載入（Firestore 模式為一次查詢），之後的列表、篩選與隨機推薦都由記憶體回答。
+ * 新增 / 更新 / 刪除 / 造訪成功後以 update 修補索引，結果不明的寫入失敗則呼叫 invalidate；ttl 用來同步其他執行個體的寫入。
+ * 載入期間若有任何 invalidate，載入結果只回傳給呼叫端而不放入快取，避免把舊資料存回去。
+ */
+@Component
+public class RestaurantIndexCache {
+
+    private final int maxUsers;
+    private final long ttlNanos;
+
+    private final Map<String, CachedIndex> entries;
+
+    /**
+     * 每次 invalidate 遞增
+     */
+    private long generation;
+
+    public RestaurantIndexCache(
+            @Value("${lunch.restaurants.index.max-users:1000}") int maxUsers,
+            @Value("${lunch.restaurants.index.ttl-ms:60000}") long ttlMillis) {
+        this.maxUsers = Math.max(1, maxUsers);
+        this.ttlNanos = Math.max(0, ttlMillis) * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedIndex> eldest) {
+                return size() > RestaurantIndexCache.this.maxUsers;
+            }
+        };
+    }
+
+    /**
+     * 取得用戶的索引，未快取或已過期時以 loader 載入
+     */
+    public RestaurantIndex get(String userId, Supplier<RestaurantIndex> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            CachedIndex cached = entries.get(userId);
+            if (cached != null && System.nanoTime() - cached.loadedAt < ttlNanos) {
+                return cached.index;
+            }
+            loadGeneration = generation;
+        }
+
+        // 載入時不持有鎖（會有網路往返）
+        RestaurantIndex index = loader.get();
+
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(userId, new CachedIndex(index, System.nanoTime()));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 取得已快取且未過期的索引，不觸發載入
+     *
+     * @return 索引（未快取時回傳 null）
+     */
+    public synchronized RestaurantIndex getIfPresent(String userId) {
+        CachedIndex cached = entries.get(userId);
+        return cached != null && System.nanoTime() - cached.loadedAt < ttlNanos ? cached.index : null;
+    }
+
+    /**
+     * 以寫入結果直接修補已快取的索引（不重新載入）；未快取時只讓進行中的載入失效
+     *
+     * @param userId 用戶 ID
+     * @param patch  由舊索引產生新索引
+     */
+    public synchronized void update(String userId, UnaryOperator<RestaurantIndex> patch) {
+        generation++;
+        CachedIndex cached = entries.get(userId);
+        if (cached != null) {
+            entries.put(userId, new CachedIndex(patch.apply(cached.index), cached.loadedAt));
+        }
+    }
+
+    /**
+     * 移除用戶的索引（寫入後呼叫）
+     */
+    public synchronized void invalidate(String userId) {
+        generation++;
+        entries.remove(userId);
+    }
+
+    /**
+     * 清空所有用戶的索引（整批匯入後呼叫）
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    private static class CachedIndex {
+        private final RestaurantIndex index;
+        private final long loadedAt;
+
+        private CachedIndex(RestaurantIndex index, long loadedAt) {
+            this.index = index;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.lunch.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 餐廳名稱唯一鍵（user_restaurant_names）
+ * 每個「用戶 + 正規化名稱」對應一份文件，文件 ID 為兩者的 SHA-256（名稱可能含有 / 或超過 Document ID 長度限制）。
+ * 新增餐廳時以 create() 和餐廳文件寫在同一個 batch，名稱已被占用時整批以 ALREADY_EXISTS 失敗；
+ * 刪除或改名時在同一次提交中釋放。
+ * 唯一鍵上線前建立的餐廳由 BulkTransferService.backfillRestaurantNameKeys 補建；整批匯入餐廳時一併寫入。
+ */
+public final class RestaurantNameKey {
+
+    public static final String COLLECTION_NAME = "user_restaurant_names";
+
+    private RestaurantNameKey() {
+    }
+
+    /**
+     * 正規化名稱：NFKC（全形轉半形）、去除前後空白、連續空白合併為一個、英文不分大小寫
+     */
+    public static String normalize(String name) {
+        return Normalizer.normalize(name, Normalizer.Form.NFKC)
+                .trim()
+                .replaceAll("\\s+", " ")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 唯一鍵文件 ID
+     */
+    public static String documentId(String userId, String name) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((userId + '\0' + normalize(name)).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 唯一鍵文件內容
+     */
+    public static Map<String, Object> document(String userId, String name, String restaurantId) {
+        return Map.of(
+                "userId", userId,
+                "name", name,
+                "restaurantId", restaurantId);
+    }
+}
@@ -0,0 +1,175 @@
+package com.lunch.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 用戶活躍時間的延遲寫入緩衝
+ * 每則訊息只記下該用戶最新的 lastActiveAt，定期（或累積到 max-pending 筆時）以 WriteBatch 一次寫回，
+ * 同一用戶在一個區間內的多次活動只會寫一次。關閉時會把剩下的全部寫回。
+ * 某位用戶的文件已被刪除時 update 的前置條件會讓整批以 NOT_FOUND 失敗，此時改為逐筆寫入，只略過不存在的用戶。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "lunch.storage.type", havingValue = "firestore", matchIfMissing = true)
+public class UserActivityBuffer {
+
+    private static final String COLLECTION_NAME = "users";
+
+    /**
+     * Firestore 單一 WriteBatch 最多 500 筆寫入
+     */
+    private static final int MAX_BATCH_WRITES = 500;
+
+    private final Firestore firestore;
+    private final int maxPending;
+
+    /**
+     * userId → 尚未寫回的最新活躍時間
+     */
+    private final Map<String, Timestamp> pending = new ConcurrentHashMap<>();
+
+    public UserActivityBuffer(
+            Firestore firestore,
+            @Value("${lunch.users.activity.max-pending:500}") int maxPending) {
+        this.firestore = firestore;
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    /**
+     * 記錄用戶活躍（只保留最新的時間）
+     *
+     * @param userId LINE 用戶 ID
+     */
+    public void touch(String userId) {
+        pending.put(userId, Timestamp.now());
+        if (pending.size() >= maxPending) {
+            flush();
+        }
+    }
+
+    /**
+     * 待寫回的用戶數
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * 定期寫回
+     */
+    @Scheduled(fixedDelayString = "${lunch.users.activity.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * 關閉前寫回所有活躍時間
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 以 WriteBatch 寫回目前累積的活躍時間
+     *
+     * @return 寫回的用戶數
+     */
+    public synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        // 逐一取出（remove 保證同一筆不會被寫兩次，取出後的新活動留到下一輪）
+        List<String> userIds = new ArrayList<>(pending.keySet());
+        int written = 0;
+
+        for (int from = 0; from < userIds.size(); from += MAX_BATCH_WRITES) {
+            List<String> chunk = userIds.subList(from, Math.min(userIds.size(), from + MAX_BATCH_WRITES));
+            Map<String, Timestamp> updates = new LinkedHashMap<>();
+            WriteBatch batch = firestore.batch();
+
+            for (String userId : chunk) {
+                Timestamp lastActiveAt = pending.remove(userId);
+                if (lastActiveAt != null) {
+                    batch.update(userRef(userId), "lastActiveAt", lastActiveAt);
+                    updates.put(userId, lastActiveAt);
+                }
+            }
+            if (updates.isEmpty()) {
+                continue;
+            }
+
+            try {
+                try {
+                    batch.commit().get();
+                    written += updates.size();
+                } catch (ExecutionException e) {
+                    if (!FirestoreErrors.hasCode(e, StatusCode.Code.NOT_FOUND)) {
+                        // 活躍時間只是統計用途，其他錯誤不重試
+                        log.error("❌ 寫回用戶活躍時間失敗 ({} 位用戶)", updates.size(), e);
+                        continue;
+                    }
+                    log.warn("⚠️ 批次中有已刪除的用戶，改為逐筆寫回 ({} 位用戶)", updates.size());
+                    written += writeIndividually(updates);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("❌ 寫回用戶活躍時間被中斷");
+                return written;
+            }
+        }
+
+        log.debug("🕒 已寫回 {} 位用戶的活躍時間", written);
+        return written;
+    }
+
+    /**
+     * 同時送出每位用戶各自的 update，個別失敗（例如文件不存在）不影響其他用戶
+     *
+     * @return 寫回成功的用戶數
+     */
+    private int writeIndividually(Map<String, Timestamp> updates) throws InterruptedException {
+        Map<String, ApiFuture<WriteResult>> results = new LinkedHashMap<>();
+        updates.forEach((userId, lastActiveAt) ->
+                results.put(userId, userRef(userId).update("lastActiveAt", lastActiveAt)));
+
+        int written = 0;
+        for (Map.Entry<String, ApiFuture<WriteResult>> result : results.entrySet()) {
+            try {
+                result.getValue().get();
+                written++;
+            } catch (ExecutionException e) {
+                if (FirestoreErrors.hasCode(e, StatusCode.Code.NOT_FOUND)) {
+                    log.debug("ℹ️ 用戶不存在，略過活躍時間: {}", result.getKey());
+                } else {
+                    log.error("❌ 寫回用戶活躍時間失敗: {}", result.getKey(), e);
+                }
+            }
+        }
+        return written;
+    }
+
+    private DocumentReference userRef(String userId) {
+        return firestore.collection(COLLECTION_NAME).document(userId);
+    }
+}
@@ -0,0 +1,106 @@
+package com.lunch.service;
+
+import com.lunch.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 用戶讀取快取（LRU + TTL）
+ * 同一則 webhook 常會重複讀取同一位用戶，快取命中時不必再向 Firestore 讀取文件。
+ * 超過 max-size 時淘汰最久未使用的用戶；超過 ttl 的項目視為過期，以同步其他執行個體的寫入。
+ * 寫入路徑必須呼叫 invalidate，避免讀到舊資料。
+ * 放入與讀取都是複本，呼叫端修改取得的用戶不會改到快取內的資料。
+ */
+@Component
+public class UserCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final Map<String, CachedUser> entries;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public UserCache(
+            @Value("${lunch.users.cache.max-size:10000}") int maxSize,
+            @Value("${lunch.users.cache.ttl-ms:60000}") long ttlMillis) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = Math.max(0, ttlMillis) * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                if (size() > UserCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 取得快取中的用戶複本（過期或不存在時回傳 empty）
+     */
+    public synchronized Optional<User> get(String userId) {
+        CachedUser cached = entries.get(userId);
+        if (cached == null) {
+            missCount++;
+            return Optional.empty();
+        }
+        if (System.nanoTime() - cached.loadedAt >= ttlNanos) {
+            entries.remove(userId);
+            evictionCount++;
+            missCount++;
+            return Optional.empty();
+        }
+        hitCount++;
+        return Optional.of(cached.user.copy());
+    }
+
+    /**
+     * 放入（或更新）用戶
+     */
+    public synchronized void put(User user) {
+        if (user == null || user.getUserId() == null) {
+            return;
+        }
+        entries.put(user.getUserId(), new CachedUser(user.copy(), System.nanoTime()));
+    }
+
+    /**
+     * 移除用戶（寫入後呼叫）
+     */
+    public synchronized void invalidate(String userId) {
+        entries.remove(userId);
+    }
+
+    /**
+     * 清空快取（整批匯入後呼叫）
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * 目前的快取統計
+     */
+    public synchronized UserCacheStats stats() {
+        return new UserCacheStats(entries.size(), hitCount, missCount, evictionCount);
+    }
+
+    private static class CachedUser {
+        private final User user;
+        private final long loadedAt;
+
+        private CachedUser(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.lunch.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 用戶快取統計
+ */
+@Getter
+@AllArgsConstructor
+public class UserCacheStats {
+
+    private final int size;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    /**
+     * 命中率（尚無查詢時為 0）
+     */
+    public double getHitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
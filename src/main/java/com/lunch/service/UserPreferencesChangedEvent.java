@@ -0,0 +1,30 @@
+package com.lunch.service;
+
+import com.lunch.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 用戶偏好（或通知狀態）變更事件
+ * 由 UserStorageService 在寫入成功後發布，讓排程等元件即時更新；
+ * 事件帶有寫入後的用戶，監聽者不需要再讀取一次（寫入後快取已失效，讀取一定會打到 Firestore）
+ */
+@Getter
+@AllArgsConstructor
+public class UserPreferencesChangedEvent {
+
+    /**
+     * 變更的用戶 ID
+     */
+    private final String userId;
+
+    /**
+     * 寫入後的用戶（userId、active 與 preferences 為寫入後的值）；
+     * 寫入端無法在不讀取的情況下得知完整偏好時為 null，由監聽者的定期同步補上
+     */
+    private final User user;
+
+    public UserPreferencesChangedEvent(String userId) {
+        this(userId, null);
+    }
+}
@@ -0,0 +1,224 @@
+package com.lunch.service;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.lunch.model.User;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 活躍用戶的記憶體 replica
+ * 以 Firestore snapshot listener 監聽 active == true 的用戶，只套用每次推送的增量（新增 / 修改 / 移除），
+ * 排程扇出與用戶查詢直接讀記憶體，不必每次重新查詢 users 集合。
+ * 收到第一份 snapshot 後才視為 ready；listener 發生錯誤時標記為未同步並在稍後重新訂閱，重新訂閱的第一份 snapshot 會整批重建。
+ * 本機寫入後到 listener 推送回來之前，該用戶不從 replica 讀取（以寫入時間比對 snapshot 的 readTime），確保讀得到自己的寫入。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "lunch.storage.type", havingValue = "firestore", matchIfMissing = true)
+public class UserReplica {
+
+    private static final String COLLECTION_NAME = "users";
+
+    private final Firestore firestore;
+    private final boolean enabled;
+    private final long resubscribeDelayMillis;
+    private final ScheduledExecutorService resubscribeScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "user-replica-resubscribe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+
+    /**
+     * userId → 本機寫入的時間；收到 readTime 不早於此時間的 snapshot 後移除
+     */
+    private final Map<String, Timestamp> pendingWrites = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    private volatile long outOfSyncSinceMillis = System.currentTimeMillis();
+    private volatile long lastSnapshotMillis;
+
+    private ListenerRegistration registration;
+    private long generation;
+
+    public UserReplica(
+            Firestore firestore,
+            @Value("${lunch.users.replica.enabled:true}") boolean enabled,
+            @Value("${lunch.users.replica.resubscribe-delay-ms:5000}") long resubscribeDelayMillis) {
+        this.firestore = firestore;
+        this.enabled = enabled;
+        this.resubscribeDelayMillis = Math.max(0, resubscribeDelayMillis);
+    }
+
+    /**
+     * 啟動後開始監聽
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            subscribe();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        generation++;
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        resubscribeScheduler.shutdownNow();
+        markOutOfSync();
+    }
+
+    /**
+     * replica 是否與 Firestore 同步（false 時呼叫端應改為直接查詢）
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 取得活躍用戶的複本
+     *
+     * @return empty 如果 replica 未同步、用戶不在 replica 中（非活躍或不存在），或本機剛寫入而 replica 尚未更新
+     */
+    public Optional<User> get(String userId) {
+        if (!ready || pendingWrites.containsKey(userId)) {
+            return Optional.empty();
+        }
+        User user = users.get(userId);
+        return user != null ? Optional.of(user.copy()) : Optional.empty();
+    }
+
+    /**
+     * 串流讀取所有活躍用戶（唯讀：回傳的是 replica 內的物件，不可修改）
+     */
+    public Stream<User> streamActiveUsers() {
+        return users.values().stream();
+    }
+
+    /**
+     * replica 內的活躍用戶數
+     */
+    public int size() {
+        return users.size();
+    }
+
+    /**
+     * 記錄本機寫入；在 listener 推送這次寫入之前，該用戶改由 Firestore 讀取
+     *
+     * @param userId    寫入的用戶
+     * @param writeTime 寫入時間（WriteResult.getUpdateTime()；不確定時用目前時間）
+     */
+    public void markWritten(String userId, Timestamp writeTime) {
+        if (enabled) {
+            pendingWrites.merge(userId, writeTime, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+        }
+    }
+
+    public UserReplicaStats stats() {
+        long now = System.currentTimeMillis();
+        long staleness = ready ? 0 : now - outOfSyncSinceMillis;
+        long lastSnapshotAge = lastSnapshotMillis == 0 ? -1 : now - lastSnapshotMillis;
+        return new UserReplicaStats(ready, users.size(), staleness, lastSnapshotAge, pendingWrites.size());
+    }
+
+    private synchronized void subscribe() {
+        long current = ++generation;
+        registration = firestore.collection(COLLECTION_NAME)
+                .whereEqualTo("active", true)
+                .addSnapshotListener((snapshot, error) -> onEvent(current, snapshot, error));
+        log.info("👂 開始監聽活躍用戶 replica");
+    }
+
+    synchronized void onEvent(long eventGeneration, QuerySnapshot snapshot, FirestoreException error) {
+        if (eventGeneration != generation) {
+            // 已取消的訂閱
+            return;
+        }
+
+        if (error != null) {
+            log.error("❌ 活躍用戶 replica 監聽失敗，{} ms 後重新訂閱", resubscribeDelayMillis, error);
+            markOutOfSync();
+            if (registration != null) {
+                registration.remove();
+                registration = null;
+            }
+            generation++;
+            try {
+                resubscribeScheduler.schedule(this::subscribe, resubscribeDelayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                log.debug("ℹ️ replica 已停止，不再重新訂閱");
+            }
+            return;
+        }
+
+        if (!ready) {
+            // 第一份 snapshot 含有完整結果：整批重建，清掉未同步期間已變成非活躍的用戶
+            users.clear();
+            snapshot.getDocuments().forEach(this::put);
+        } else {
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                if (change.getType() == DocumentChange.Type.REMOVED) {
+                    users.remove(change.getDocument().getId());
+                } else {
+                    put(change.getDocument());
+                }
+            }
+        }
+
+        Timestamp readTime = snapshot.getReadTime();
+        if (readTime != null) {
+            pendingWrites.values().removeIf(writeTime -> writeTime.compareTo(readTime) <= 0);
+        }
+        lastSnapshotMillis = System.currentTimeMillis();
+
+        if (!ready) {
+            ready = true;
+            log.info("✅ 活躍用戶 replica 已同步，共 {} 位用戶", users.size());
+        }
+    }
+
+    private void put(DocumentSnapshot document) {
+        try {
+            User user = document.toObject(User.class);
+            if (user != null) {
+                if (user.getUserId() == null) {
+                    user.setUserId(document.getId());
+                }
+                users.put(document.getId(), user);
+            }
+        } catch (RuntimeException e) {
+            log.warn("⚠️ 無法解析用戶文件 {}: {}", document.getId(), e.getMessage());
+        }
+    }
+
+    private void markOutOfSync() {
+        if (ready) {
+            outOfSyncSinceMillis = System.currentTimeMillis();
+        }
+        ready = false;
+    }
+}
@@ -0,0 +1,37 @@
+package com.lunch.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 活躍用戶 replica 狀態
+ */
+@Getter
+@AllArgsConstructor
+public class UserReplicaStats {
+
+    /**
+     * 是否與 Firestore 同步中（false 時讀取改為直接查詢）
+     */
+    private final boolean ready;
+
+    /**
+     * replica 內的活躍用戶數
+     */
+    private final int size;
+
+    /**
+     * 已失去同步多久（同步中為 0；從未同步過則從啟動起算）
+     */
+    private final long stalenessMillis;
+
+    /**
+     * 距離上次收到 snapshot 多久（沒有變更時 Firestore 不會推送，僅供參考）
+     */
+    private final long lastSnapshotAgeMillis;
+
+    /**
+     * 本機已寫入但 replica 尚未收到的用戶數
+     */
+    private final int pendingWrites;
+}
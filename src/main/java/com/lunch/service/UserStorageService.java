@@ -1,30 +1,19 @@
 package com.lunch.service;
 
-import com.google.api.core.ApiFuture;
-import com.google.cloud.Timestamp;
-import com.google.cloud.firestore.*;
 import com.lunch.model.User;
 import com.lunch.model.UserPreferences;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 /**
- * 用戶存儲服務（使用 Firestore）
+ * 用戶存儲 SPI
+ * 依 lunch.storage.type 選擇實作：firestore（預設，FirestoreUserStorageService）
+ * 或 local（內嵌引擎，LocalUserStorageService）。
+ * 寫入成功後實作必須發布 UserPreferencesChangedEvent。
  */
-@Slf4j
-@Service
-@RequiredArgsConstructor
-public class UserStorageService {
-
-    private static final String COLLECTION_NAME = "users";
-
-    private final Firestore firestore;
+public interface UserStorageService {
 
     /**
      * 添加新用戶（如果不存在）
@@ -32,40 +21,7 @@ public class UserStorageService {
      * @param userId LINE 用戶 ID
      * @return true 如果是新用戶，false 如果已存在
      */
-    public boolean addUser(String userId) {
-        if (userId == null || userId.trim().isEmpty()) {
-            log.warn("⚠️ 嘗試添加空的用戶 ID");
-            return false;
-        }
-
-        try {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
-            DocumentSnapshot document = docRef.get().get();
-
-            if (document.exists()) {
-                // 用戶已存在，更新最後活躍時間
-                docRef.update("lastActiveAt", Timestamp.now()).get();
-                log.debug("ℹ️ 用戶已存在，已更新活躍時間: {}", userId);
-                return false;
-            } else {
-                // 創建新用戶
-                User newUser = User.builder()
-                        .userId(userId)
-                        .registeredAt(Timestamp.now())
-                        .lastActiveAt(Timestamp.now())
-                        .preferences(UserPreferences.builder().build())
-                        .active(true)
-                        .build();
-
-                docRef.set(newUser).get();
-                log.info("✅ 新用戶已註冊: {} (總用戶數: {})", userId, getUserCount());
-                return true;
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("❌ 添加用戶時發生錯誤: {}", userId, e);
-            return false;
-        }
-    }
+    boolean addUser(String userId);
 
     /**
      * 獲取用戶資訊
@@ -73,76 +29,36 @@ public class UserStorageService {
      * @param userId LINE 用戶 ID
      * @return Optional<User>
      */
-    public Optional<User> getUser(String userId) {
-        try {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
-            DocumentSnapshot document = docRef.get().get();
-
-            if (document.exists()) {
-                User user = document.toObject(User.class);
-                return Optional.ofNullable(user);
-            }
-            return Optional.empty();
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("❌ 獲取用戶時發生錯誤: {}", userId, e);
-            return Optional.empty();
-        }
-    }
+    Optional<User> getUser(String userId);
 
     /**
      * 獲取所有活躍用戶
      *
      * @return 用戶列表
      */
-    public List<User> getAllActiveUsers() {
-        try {
-            CollectionReference usersRef = firestore.collection(COLLECTION_NAME);
-            Query query = usersRef.whereEqualTo("active", true);
-            ApiFuture<QuerySnapshot> querySnapshot = query.get();
+    List<User> getAllActiveUsers();
 
-            List<User> users = new ArrayList<>();
-            for (DocumentSnapshot document : querySnapshot.get().getDocuments()) {
-                User user = document.toObject(User.class);
-                if (user != null) {
-                    users.add(user);
-                }
-            }
-
-            return users;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("❌ 獲取用戶列表時發生錯誤", e);
-            return new ArrayList<>();
-        }
-    }
+    /**
+     * 串流讀取所有活躍用戶
+     *
+     * @return 用戶串流（使用完畢需關閉）
+     */
+    Stream<User> streamAllActiveUsers();
 
     /**
      * 獲取所有啟用通知的用戶
      *
      * @return 用戶列表
      */
-    public List<User> getNotificationEnabledUsers() {
-        try {
-            CollectionReference usersRef = firestore.collection(COLLECTION_NAME);
-            Query query = usersRef
-                    .whereEqualTo("active", true)
-                    .whereEqualTo("preferences.notificationEnabled", true);
-            ApiFuture<QuerySnapshot> querySnapshot = query.get();
+    List<User> getNotificationEnabledUsers();
 
-            List<User> users = new ArrayList<>();
-            for (DocumentSnapshot document : querySnapshot.get().getDocuments()) {
-                User user = document.toObject(User.class);
-                if (user != null) {
-                    users.add(user);
-                }
-            }
-
-            log.debug("📊 找到 {} 位啟用通知的用戶", users.size());
-            return users;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("❌ 獲取啟用通知的用戶時發生錯誤", e);
-            return new ArrayList<>();
-        }
-    }
+    /**
+     * 串流讀取所有啟用通知的用戶
+     * 回傳的 User 至少帶有 userId 與偏好設定
+     *
+     * @return 用戶串流（使用完畢需關閉）
+     */
+    Stream<User> streamNotificationEnabledUsers();
 
     /**
      * 更新用戶偏好設定
@@ -151,28 +67,7 @@ public class UserStorageService {
      * @param preferences 新的偏好設定
      * @return true 如果成功，false 如果失敗
      */
-    public boolean updateUserPreferences(String userId, UserPreferences preferences) {
-        try {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
-
-            // 檢查用戶是否存在
-            if (!docRef.get().get().exists()) {
-                log.warn("⚠️ 用戶不存在: {}", userId);
-                return false;
-            }
-
-            docRef.update(
-                    "preferences", preferences,
-                    "lastActiveAt", Timestamp.now()
-            ).get();
-
-            log.info("✅ 已更新用戶偏好: {}", userId);
-            return true;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("❌ 更新用戶偏好時發生錯誤: {}", userId, e);
-            return false;
-        }
-    }
+    boolean updateUserPreferences(String userId, UserPreferences preferences);
 
     /**
      * 移除用戶（設為非活躍）
@@ -180,25 +75,7 @@ public class UserStorageService {
      * @param userId LINE 用戶 ID
      * @return true 如果成功移除，false 如果用戶不存在
      */
-    public boolean removeUser(String userId) {
-        try {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
-
-            if (!docRef.get().get().exists()) {
-                log.debug("ℹ️ 用戶不存在: {}", userId);
-                return false;
-            }
-
-            // 設為非活躍而不是直接刪除（保留歷史記錄）
-            docRef.update("active", false).get();
-
-            log.info("🗑️ 用戶已設為非活躍: {}", userId);
-            return true;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("❌ 移除用戶時發生錯誤: {}", userId, e);
-            return false;
-        }
-    }
+    boolean removeUser(String userId);
 
     /**
      * 檢查用戶是否存在
@@ -206,31 +83,19 @@ public class UserStorageService {
      * @param userId LINE 用戶 ID
      * @return true 如果存在，false 如果不存在
      */
-    public boolean hasUser(String userId) {
-        try {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
-            return docRef.get().get().exists();
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("❌ 檢查用戶是否存在時發生錯誤: {}", userId, e);
-            return false;
-        }
-    }
+    boolean hasUser(String userId);
+
+    /**
+     * 用戶快取統計
+     */
+    UserCacheStats getCacheStats();
 
     /**
      * 獲取活躍用戶總數
      *
      * @return 用戶數量
      */
-    public int getUserCount() {
-        try {
-            CollectionReference usersRef = firestore.collection(COLLECTION_NAME);
-            Query query = usersRef.whereEqualTo("active", true);
-            return query.get().get().size();
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("❌ 獲取用戶數量時發生錯誤", e);
-            return 0;
-        }
-    }
+    int getUserCount();
 
     /**
      * 啟用用戶通知
@@ -238,23 +103,7 @@ public class UserStorageService {
      * @param userId LINE 用戶 ID
      * @return true 如果成功
      */
-    public boolean enableNotification(String userId) {
-        try {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
-
-            if (!docRef.get().get().exists()) {
-                log.warn("⚠️ 用戶不存在: {}", userId);
-                return false;
-            }
-
-            docRef.update("preferences.notificationEnabled", true).get();
-            log.info("🔔 已啟用用戶通知: {}", userId);
-            return true;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("❌ 啟用通知時發生錯誤: {}", userId, e);
-            return false;
-        }
-    }
+    boolean enableNotification(String userId);
 
     /**
      * 關閉用戶通知
@@ -262,23 +111,7 @@ public class UserStorageService {
      * @param userId LINE 用戶 ID
      * @return true 如果成功
      */
-    public boolean disableNotification(String userId) {
-        try {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
-
-            if (!docRef.get().get().exists()) {
-                log.warn("⚠️ 用戶不存在: {}", userId);
-                return false;
-            }
-
-            docRef.update("preferences.notificationEnabled", false).get();
-            log.info("🔕 已關閉用戶通知: {}", userId);
-            return true;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("❌ 關閉通知時發生錯誤: {}", userId, e);
-            return false;
-        }
-    }
+    boolean disableNotification(String userId);
 
     /**
      * 設定用戶偏好的餐廳列表
@@ -287,25 +120,5 @@ public class UserStorageService {
      * @param restaurants 餐廳列表
      * @return true 如果成功
      */
-    public boolean setUserRestaurants(String userId, List<String> restaurants) {
-        try {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(userId);
-
-            if (!docRef.get().get().exists()) {
-                log.warn("⚠️ 用戶不存在: {}", userId);
-                return false;
-            }
-
-            docRef.update(
-                    "preferences.restaurants", restaurants,
-                    "lastActiveAt", Timestamp.now()
-            ).get();
-
-            log.info("🍽️ 已更新用戶餐廳偏好: {} (數量: {})", userId, restaurants.size());
-            return true;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("❌ 設定餐廳偏好時發生錯誤: {}", userId, e);
-            return false;
-        }
-    }
+    boolean setUserRestaurants(String userId, List<String> restaurants);
 }
@@ -0,0 +1,62 @@
+package com.lunch.service;
+
+import com.google.cloud.Timestamp;
+import com.lunch.dto.RecordVisitsRequest;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 同一間餐廳在一批造訪中的彙總：次數與最晚的造訪時間
+ * 每間餐廳只需要一筆寫入（visitCount 以 increment(count) 累加）。
+ */
+public record VisitTally(String restaurantId, int count, Timestamp latest) {
+
+    /**
+     * 造訪時間（LocalDateTime）所在的時區，與 RestaurantResponse 讀回 lastVisit 時一致
+     */
+    private static final ZoneId ZONE = ZoneId.of("Asia/Taipei");
+
+    /**
+     * 依餐廳彙總造訪（保持第一次出現的順序）
+     *
+     * @param visits 造訪記錄
+     * @param now    現在時間（未指定或晚於現在的造訪時間以此取代）
+     */
+    public static Collection<VisitTally> of(List<RecordVisitsRequest.Visit> visits, Timestamp now) {
+        Map<String, VisitTally> tallies = new LinkedHashMap<>();
+        for (RecordVisitsRequest.Visit visit : visits) {
+            Timestamp visitedAt = toTimestamp(visit.getVisitedAt(), now);
+            tallies.merge(visit.getRestaurantId(), new VisitTally(visit.getRestaurantId(), 1, visitedAt),
+                    (a, b) -> new VisitTally(a.restaurantId, a.count + b.count, later(a.latest, b.latest)));
+        }
+        return tallies.values();
+    }
+
+    /**
+     * 兩個時間中較晚的一個（null 視為最早）
+     */
+    public static Timestamp later(Timestamp a, Timestamp b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime visitedAt, Timestamp now) {
+        if (visitedAt == null) {
+            return now;
+        }
+        Instant instant = visitedAt.atZone(ZONE).toInstant();
+        Timestamp timestamp = Timestamp.ofTimeSecondsAndNanos(instant.getEpochSecond(), instant.getNano());
+        return timestamp.compareTo(now) > 0 ? now : timestamp;
+    }
+}
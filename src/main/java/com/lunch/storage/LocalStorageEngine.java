@@ -0,0 +1,524 @@
+package com.lunch.storage;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.cloud.Timestamp;
+import com.lunch.exception.DuplicateRestaurantException;
+import com.lunch.model.User;
+import com.lunch.model.UserPreferences;
+import com.lunch.model.UserRestaurant;
+import com.lunch.service.RestaurantNameKey;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 內嵌的本機存儲引擎（lunch.storage.type=local）
+ * 所有資料常駐記憶體，讀取不經過網路；每次寫入先以一行 JSON 追加到 journal 再套用到記憶體。
+ * 定期（以及啟動、關閉時）把整份資料寫成 snapshot 並清空 journal；啟動時載入 snapshot 再重播 journal，
+ * 結尾不完整的一行（寫到一半當機）會被捨棄。
+ * 除了主資料外另外維護索引：用戶 → 餐廳、名稱唯一鍵、啟用通知的用戶、活躍用戶數。
+ * 讀取回傳的都是複本，呼叫端修改不會影響引擎內的資料。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "lunch.storage.type", havingValue = "local")
+public class LocalStorageEngine {
+
+    static final String USERS = "users";
+    static final String RESTAURANTS = "user_restaurants";
+
+    private static final String SNAPSHOT_FILE = "snapshot.json";
+    private static final String JOURNAL_FILE = "journal.ndjson";
+
+    private final ObjectMapper objectMapper = createObjectMapper();
+    private final Path directory;
+    private final boolean fsync;
+
+    /**
+     * 主資料：用戶依 userId 排序，串流時順序固定
+     */
+    private final NavigableMap<String, User> users = new TreeMap<>();
+    private final Map<String, UserRestaurant> restaurants = new HashMap<>();
+
+    /**
+     * 索引：userId → (餐廳 ID → 餐廳)
+     */
+    private final Map<String, NavigableMap<String, UserRestaurant>> restaurantsByUser = new HashMap<>();
+
+    /**
+     * 索引：userId + 正規化名稱 → 有效餐廳 ID（名稱唯一鍵）
+     */
+    private final Map<String, String> restaurantIdByName = new HashMap<>();
+
+    /**
+     * 索引：活躍且啟用通知的 userId
+     */
+    private final NavigableSet<String> notificationUsers = new TreeSet<>();
+
+    private int activeUserCount;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel journalChannel;
+    private OutputStream journal;
+    private long journalEntries;
+
+    public LocalStorageEngine(
+            @Value("${lunch.storage.local.path:data/local-store}") String path,
+            @Value("${lunch.storage.local.fsync:false}") boolean fsync) {
+        this.directory = Path.of(path);
+        this.fsync = fsync;
+    }
+
+    /**
+     * 載入 snapshot 並重播 journal
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        lock.writeLock().lock();
+        try {
+            Files.createDirectories(directory);
+            loadSnapshot();
+            journalEntries = replayJournal();
+            openJournal(false);
+            // 有 journal 就壓實：一併截掉可能不完整的結尾，之後的追加才不會接在殘缺的行後面
+            Path journalPath = directory.resolve(JOURNAL_FILE);
+            if (Files.size(journalPath) > 0) {
+                writeSnapshot();
+            }
+            log.info("💾 本機存儲已載入: {} 位用戶、{} 間餐廳 ({})", users.size(), restaurants.size(), directory);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (journalEntries > 0) {
+                writeSnapshot();
+            }
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        } catch (IOException e) {
+            log.error("❌ 關閉本機存儲失敗", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 定期把 journal 壓實為 snapshot
+     */
+    @Scheduled(fixedDelayString = "${lunch.storage.local.snapshot-interval-ms:60000}",
+            initialDelayString = "${lunch.storage.local.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        lock.writeLock().lock();
+        try {
+            if (journalEntries > 0) {
+                writeSnapshot();
+            }
+        } catch (IOException e) {
+            log.error("❌ 寫入本機存儲 snapshot 失敗", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== 用戶 ====================
+
+    public Optional<User> getUser(String userId) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(users.get(userId)).map(User::copy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 依 userId 順序取出符合條件的用戶
+     */
+    public List<User> findUsers(Predicate<User> filter) {
+        lock.readLock().lock();
+        try {
+            List<User> result = new ArrayList<>();
+            for (User user : users.values()) {
+                if (filter.test(user)) {
+                    result.add(user.copy());
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 活躍且啟用通知的用戶（由索引取出，依 userId 順序）
+     */
+    public List<User> findNotificationUsers() {
+        lock.readLock().lock();
+        try {
+            List<User> result = new ArrayList<>(notificationUsers.size());
+            for (String userId : notificationUsers) {
+                result.add(users.get(userId).copy());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getActiveUserCount() {
+        lock.readLock().lock();
+        try {
+            return activeUserCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 只在用戶不存在時建立
+     *
+     * @return false 如果用戶已存在
+     */
+    public boolean createUser(User user) {
+        lock.writeLock().lock();
+        try {
+            if (users.containsKey(user.getUserId())) {
+                return false;
+            }
+            User stored = user.copy();
+            append(USERS, stored);
+            applyUser(stored);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 原子地修改既有用戶
+     *
+     * @param mutation 套用在複本上的修改
+     * @return 修改後的用戶；用戶不存在時為 empty
+     */
+    public Optional<User> updateUser(String userId, Consumer<User> mutation) {
+        lock.writeLock().lock();
+        try {
+            User current = users.get(userId);
+            if (current == null) {
+                return Optional.empty();
+            }
+            User updated = current.copy();
+            mutation.accept(updated);
+            append(USERS, updated);
+            applyUser(updated);
+            return Optional.of(updated.copy());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== 餐廳 ====================
+
+    public Optional<UserRestaurant> getRestaurant(String restaurantId) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(restaurants.get(restaurantId)).map(UserRestaurant::copy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 用戶的所有餐廳（含已刪除），由索引取出
+     */
+    public List<UserRestaurant> findRestaurants(String userId) {
+        lock.readLock().lock();
+        try {
+            NavigableMap<String, UserRestaurant> owned = restaurantsByUser.get(userId);
+            if (owned == null) {
+                return Collections.emptyList();
+            }
+            List<UserRestaurant> result = new ArrayList<>(owned.size());
+            owned.values().forEach(restaurant -> result.add(restaurant.copy()));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 新增餐廳；同一用戶已有同名（正規化後）的有效餐廳時不寫入
+     *
+     * @return false 如果名稱重複
+     */
+    public boolean createRestaurant(UserRestaurant restaurant) {
+        lock.writeLock().lock();
+        try {
+            if (restaurantIdByName.containsKey(nameKey(restaurant))) {
+                return false;
+            }
+            UserRestaurant stored = restaurant.copy();
+            append(RESTAURANTS, stored);
+            applyRestaurant(stored);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 原子地修改既有餐廳
+     *
+     * @param mutation 套用在複本上的修改
+     * @return 修改後的餐廳；餐廳不存在時為 empty
+     * @throws DuplicateRestaurantException 如果改名後與同一用戶的其他有效餐廳同名（不寫入）
+     */
+    public Optional<UserRestaurant> updateRestaurant(String restaurantId, Consumer<UserRestaurant> mutation) {
+        lock.writeLock().lock();
+        try {
+            UserRestaurant current = restaurants.get(restaurantId);
+            if (current == null) {
+                return Optional.empty();
+            }
+            UserRestaurant updated = current.copy();
+            mutation.accept(updated);
+            if (Boolean.TRUE.equals(updated.getActive())) {
+                String owner = restaurantIdByName.get(nameKey(updated));
+                if (owner != null && !owner.equals(restaurantId)) {
+                    throw new DuplicateRestaurantException("餐廳已存在: " + updated.getName());
+                }
+            }
+            append(RESTAURANTS, updated);
+            applyRestaurant(updated);
+            return Optional.of(updated.copy());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== 索引維護 ====================
+
+    private void applyUser(User user) {
+        User previous = users.put(user.getUserId(), user);
+        if (previous != null && isActive(previous)) {
+            activeUserCount--;
+        }
+        if (isActive(user)) {
+            activeUserCount++;
+        }
+
+        UserPreferences preferences = user.getPreferences();
+        boolean notify = isActive(user) && (preferences == null || preferences.getNotificationEnabled() == null
+                || preferences.getNotificationEnabled());
+        if (notify) {
+            notificationUsers.add(user.getUserId());
+        } else {
+            notificationUsers.remove(user.getUserId());
+        }
+    }
+
+    private void applyRestaurant(UserRestaurant restaurant) {
+        UserRestaurant previous = restaurants.put(restaurant.getId(), restaurant);
+        if (previous != null && Boolean.TRUE.equals(previous.getActive())) {
+            restaurantIdByName.remove(nameKey(previous), previous.getId());
+        }
+        if (Boolean.TRUE.equals(restaurant.getActive())) {
+            restaurantIdByName.put(nameKey(restaurant), restaurant.getId());
+        }
+        restaurantsByUser.computeIfAbsent(restaurant.getUserId(), k -> new TreeMap<>())
+                .put(restaurant.getId(), restaurant);
+    }
+
+    private static String nameKey(UserRestaurant restaurant) {
+        return restaurant.getUserId() + '\0' + RestaurantNameKey.normalize(restaurant.getName());
+    }
+
+    private static boolean isActive(User user) {
+        return user.getActive() == null || user.getActive();
+    }
+
+    // ==================== 持久化 ====================
+
+    /**
+     * 追加一筆 journal；寫入失敗時拋出 UncheckedIOException，記憶體內的資料不會變更
+     */
+    private void append(String table, Object document) {
+        try {
+            byte[] line = objectMapper.writeValueAsBytes(new JournalEntry(table, document));
+            journal.write(line);
+            journal.write('\n');
+            journal.flush();
+            if (fsync) {
+                journalChannel.force(false);
+            }
+            journalEntries++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("寫入本機存儲 journal 失敗", e);
+        }
+    }
+
+    private void loadSnapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.isRegularFile(snapshot)) {
+            return;
+        }
+
+        JsonNode root = objectMapper.readTree(snapshot.toFile());
+        for (JsonNode node : root.path(USERS)) {
+            applyUser(objectMapper.treeToValue(node, User.class));
+        }
+        for (JsonNode node : root.path(RESTAURANTS)) {
+            applyRestaurant(objectMapper.treeToValue(node, UserRestaurant.class));
+        }
+    }
+
+    /**
+     * @return 重播的 journal 筆數
+     */
+    private long replayJournal() throws IOException {
+        Path journalPath = directory.resolve(JOURNAL_FILE);
+        if (!Files.isRegularFile(journalPath)) {
+            return 0;
+        }
+
+        long replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JsonNode entry = objectMapper.readTree(line);
+                    String table = entry.path("table").asText();
+                    if (USERS.equals(table)) {
+                        applyUser(objectMapper.treeToValue(entry.get("document"), User.class));
+                    } else if (RESTAURANTS.equals(table)) {
+                        applyRestaurant(objectMapper.treeToValue(entry.get("document"), UserRestaurant.class));
+                    }
+                    replayed++;
+                } catch (IOException e) {
+                    log.warn("⚠️ journal 第 {} 筆之後的內容不完整，已捨棄", replayed);
+                    break;
+                }
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * 寫出完整 snapshot（先寫暫存檔再原子替換），完成後清空 journal
+     */
+    private void writeSnapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(Channels.newOutputStream(channel))) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart(USERS);
+            for (User user : users.values()) {
+                objectMapper.writeValue(generator, user);
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart(RESTAURANTS);
+            for (UserRestaurant restaurant : restaurants.values()) {
+                objectMapper.writeValue(generator, restaurant);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.flush();
+            channel.force(true);
+        }
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        openJournal(true);
+        log.debug("💾 已寫入本機存儲 snapshot（壓實 {} 筆 journal）", journalEntries);
+        journalEntries = 0;
+    }
+
+    private void openJournal(boolean truncate) throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        journalChannel = FileChannel.open(directory.resolve(JOURNAL_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, truncate ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND);
+        journal = Channels.newOutputStream(journalChannel);
+    }
+
+    /**
+     * Timestamp 以 ISO-8601 字串存放
+     */
+    private static ObjectMapper createObjectMapper() {
+        SimpleModule timestamps = new SimpleModule();
+        timestamps.addSerializer(Timestamp.class, new JsonSerializer<>() {
+            @Override
+            public void serialize(Timestamp value, JsonGenerator generator, SerializerProvider provider)
+                    throws IOException {
+                generator.writeString(value.toString());
+            }
+        });
+        timestamps.addDeserializer(Timestamp.class, new JsonDeserializer<>() {
+            @Override
+            public Timestamp deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                return Timestamp.parseTimestamp(parser.getValueAsString());
+            }
+        });
+
+        return new ObjectMapper()
+                .registerModule(timestamps)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private record JournalEntry(String table, Object document) {
+    }
+}
@@ -0,0 +1,300 @@
+package com.lunch.storage;
+
+import com.google.cloud.Timestamp;
+import com.lunch.dto.AddRestaurantRequest;
+import com.lunch.dto.RecordVisitsRequest;
+import com.lunch.dto.RestaurantPage;
+import com.lunch.dto.RestaurantResponse;
+import com.lunch.dto.UpdateRestaurantRequest;
+import com.lunch.dto.VisitBatchResult;
+import com.lunch.exception.DuplicateRestaurantException;
+import com.lunch.exception.RestaurantNotFoundException;
+import com.lunch.model.UserRestaurant;
+import com.lunch.service.RecommendationScorer;
+import com.lunch.service.RestaurantIndex;
+import com.lunch.service.RestaurantIndexCache;
+import com.lunch.service.UserRestaurantService;
+import com.lunch.service.VisitTally;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 用戶餐廳服務（使用內嵌的本機存儲引擎）
+ * 篩選直接在引擎的「用戶 → 餐廳」索引上進行，分頁與隨機推薦共用 RestaurantIndexCache；
+ * 錯誤處理與 FirestoreUserRestaurantService 一致。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "lunch.storage.type", havingValue = "local")
+public class LocalUserRestaurantService implements UserRestaurantService {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Taipei");
+
+    private final LocalStorageEngine engine;
+    private final RestaurantIndexCache restaurantIndexCache;
+    private final RecommendationScorer recommendationScorer;
+
+    @Override
+    public List<RestaurantResponse> getUserRestaurants(String userId, String category, List<String> tags) {
+        boolean filterCategory = category != null && !category.trim().isEmpty();
+        boolean filterTags = tags != null && !tags.isEmpty();
+
+        List<RestaurantResponse> restaurants = engine.findRestaurants(userId).stream()
+                .filter(restaurant -> Boolean.TRUE.equals(restaurant.getActive()))
+                .filter(restaurant -> !filterCategory || category.equals(restaurant.getCategory()))
+                .filter(restaurant -> !filterTags || (restaurant.getTags() != null
+                        && restaurant.getTags().stream().anyMatch(tags::contains)))
+                .map(RestaurantResponse::from)
+                .sorted(Comparator.comparing(RestaurantResponse::getName))
+                .collect(Collectors.toList());
+
+        log.info("✅ 取得用戶 {} 的餐廳清單，共 {} 筆", userId, restaurants.size());
+        return restaurants;
+    }
+
+    @Override
+    public RestaurantPage getUserRestaurantPage(String userId, String category, List<String> tags,
+                                                int limit, String pageToken, Set<String> fields) {
+        RestaurantPage.Cursor after = RestaurantPage.decodeToken(pageToken);
+
+        RestaurantIndex index = restaurantIndexCache.get(userId, () -> buildIndex(userId));
+        RestaurantPage page = RestaurantPage.of(index.page(index.matching(category, tags), after, limit + 1),
+                limit, fields);
+
+        log.info("✅ 取得用戶 {} 的餐廳清單（分頁），本頁 {} 筆", userId, page.getRestaurants().size());
+        return page;
+    }
+
+    @Override
+    public RestaurantIndex getRestaurantIndex(String userId) {
+        return restaurantIndexCache.get(userId, () -> buildIndex(userId));
+    }
+
+    @Override
+    public RestaurantIndex getCachedRestaurantIndex(String userId) {
+        return restaurantIndexCache.getIfPresent(userId);
+    }
+
+    @Override
+    public RestaurantIndex loadRestaurantIndex(String userId) {
+        RestaurantIndex cached = restaurantIndexCache.getIfPresent(userId);
+        return cached != null ? cached : buildIndex(userId);
+    }
+
+    @Override
+    public RestaurantResponse getRestaurant(String userId, String restaurantId) {
+        UserRestaurant restaurant = findOwned(userId, restaurantId, "無權訪問此餐廳");
+        if (!Boolean.TRUE.equals(restaurant.getActive())) {
+            throw new RestaurantNotFoundException("餐廳不存在: " + restaurantId);
+        }
+
+        log.info("✅ 取得餐廳: {}", restaurant.getName());
+        return RestaurantResponse.from(restaurant);
+    }
+
+    @Override
+    public RestaurantResponse addRestaurant(String userId, AddRestaurantRequest request) {
+        UserRestaurant restaurant = UserRestaurant.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(userId)
+                .name(request.getName().trim())
+                .category(request.getCategory() != null ? request.getCategory().trim() : null)
+                .tags(request.getTags() != null ? request.getTags() : new ArrayList<>())
+                .rating(request.getRating())
+                .notes(request.getNotes())
+                .visitCount(0)
+                .createdAt(Timestamp.now())
+                .updatedAt(Timestamp.now())
+                .active(true)
+                .build();
+
+        boolean created;
+        try {
+            created = engine.createRestaurant(restaurant);
+        } catch (UncheckedIOException e) {
+            restaurantIndexCache.invalidate(userId);
+            log.error("❌ 新增餐廳失敗: userId={}, name={}", userId, request.getName(), e);
+            throw new RuntimeException("新增餐廳失敗", e);
+        }
+
+        if (!created) {
+            log.warn("⚠️ 餐廳已存在: {}", request.getName());
+            throw new DuplicateRestaurantException("餐廳已存在: " + restaurant.getName());
+        }
+
+        RestaurantResponse added = RestaurantResponse.from(restaurant);
+        restaurantIndexCache.update(userId, index -> index.withRestaurant(added, recommendationScorer.weigher()));
+
+        log.info("✅ 新增餐廳成功: userId={}, name={}", userId, restaurant.getName());
+        return added;
+    }
+
+    @Override
+    public RestaurantResponse updateRestaurant(String userId, String restaurantId, UpdateRestaurantRequest request) {
+        findOwned(userId, restaurantId, "無權修改此餐廳");
+
+        update(userId, restaurantId, restaurant -> {
+            if (request.getName() != null && !request.getName().trim().isEmpty()) {
+                restaurant.setName(request.getName().trim());
+            }
+            if (request.getCategory() != null) {
+                restaurant.setCategory(request.getCategory().trim());
+            }
+            if (request.getTags() != null) {
+                restaurant.setTags(request.getTags());
+            }
+            if (request.getRating() != null) {
+                restaurant.setRating(request.getRating());
+            }
+            if (request.getNotes() != null) {
+                restaurant.setNotes(request.getNotes());
+            }
+            restaurant.setUpdatedAt(Timestamp.now());
+        }, "更新餐廳");
+        log.info("✅ 更新餐廳成功: restaurantId={}", restaurantId);
+
+        return getRestaurant(userId, restaurantId);
+    }
+
+    @Override
+    public void deleteRestaurant(String userId, String restaurantId) {
+        findOwned(userId, restaurantId, "無權刪除此餐廳");
+
+        // 軟刪除
+        update(userId, restaurantId, restaurant -> {
+            restaurant.setActive(false);
+            restaurant.setUpdatedAt(Timestamp.now());
+        }, "刪除餐廳");
+        log.info("✅ 刪除餐廳成功: restaurantId={}", restaurantId);
+    }
+
+    @Override
+    public RestaurantResponse getRandomRestaurant(String userId, String category,
+                                                  List<String> tags, boolean excludeRecent) {
+        RestaurantIndex index = restaurantIndexCache.get(userId, () -> buildIndex(userId));
+        RestaurantIndex.Candidates candidates = index.candidates(category, tags);
+
+        if (candidates.size() == 0) {
+            throw new RestaurantNotFoundException("沒有符合條件的餐廳");
+        }
+
+        // 排除最近 7 天造訪過的
+        int eligible = candidates.size();
+        if (excludeRecent) {
+            eligible = candidates.countVisitedBefore(LocalDateTime.now(ZONE).minusDays(7));
+
+            if (eligible == 0) {
+                throw new RestaurantNotFoundException("沒有符合條件的餐廳（已排除最近造訪）");
+            }
+        }
+
+        RestaurantResponse selected = candidates.pick(eligible, ThreadLocalRandom.current());
+
+        log.info("🎲 隨機推薦餐廳: userId={}, restaurant={}", userId, selected.getName());
+
+        return selected;
+    }
+
+    @Override
+    public void recordVisit(String userId, String restaurantId) {
+        findOwned(userId, restaurantId, "無權操作此餐廳");
+
+        UserRestaurant updated = update(userId, restaurantId, restaurant -> {
+            int currentCount = restaurant.getVisitCount() != null ? restaurant.getVisitCount() : 0;
+            restaurant.setVisitCount(currentCount + 1);
+            restaurant.setLastVisit(Timestamp.now());
+            restaurant.setUpdatedAt(Timestamp.now());
+        }, "記錄造訪");
+
+        log.info("✅ 記錄造訪: restaurantId={}, visitCount={}", restaurantId, updated.getVisitCount());
+    }
+
+    @Override
+    public VisitBatchResult recordVisits(String userId, List<RecordVisitsRequest.Visit> visits) {
+        Timestamp now = Timestamp.now();
+        List<String> notFound = new ArrayList<>();
+        int recorded = 0;
+
+        for (VisitTally tally : VisitTally.of(visits, now)) {
+            boolean owned = engine.getRestaurant(tally.restaurantId())
+                    .map(restaurant -> userId.equals(restaurant.getUserId()))
+                    .orElse(false);
+            if (!owned) {
+                notFound.add(tally.restaurantId());
+                continue;
+            }
+
+            update(userId, tally.restaurantId(), restaurant -> {
+                int currentCount = restaurant.getVisitCount() != null ? restaurant.getVisitCount() : 0;
+                restaurant.setVisitCount(currentCount + tally.count());
+                restaurant.setLastVisit(VisitTally.later(restaurant.getLastVisit(), tally.latest()));
+                restaurant.setUpdatedAt(now);
+            }, "批次記錄造訪");
+            recorded += tally.count();
+        }
+
+        log.info("✅ 批次記錄造訪: userId={}, 記錄: {}, 略過: {}", userId, recorded, notFound.size());
+        return VisitBatchResult.builder()
+                .recorded(recorded)
+                .notFound(notFound)
+                .build();
+    }
+
+    private RestaurantIndex buildIndex(String userId) {
+        return RestaurantIndex.build(engine.findRestaurants(userId).stream()
+                .filter(restaurant -> Boolean.TRUE.equals(restaurant.getActive()))
+                .map(RestaurantResponse::from)
+                .collect(Collectors.toList()), recommendationScorer.weigher());
+    }
+
+    /**
+     * 取得屬於該用戶的餐廳（含已軟刪除的）
+     */
+    private UserRestaurant findOwned(String userId, String restaurantId, String forbiddenMessage) {
+        UserRestaurant restaurant = engine.getRestaurant(restaurantId)
+                .orElseThrow(() -> new RestaurantNotFoundException("餐廳不存在: " + restaurantId));
+
+        // 驗證是否屬於該用戶
+        if (!restaurant.getUserId().equals(userId)) {
+            throw new RestaurantNotFoundException(forbiddenMessage);
+        }
+        return restaurant;
+    }
+
+    private UserRestaurant update(String userId, String restaurantId, Consumer<UserRestaurant> mutation,
+                                  String action) {
+        UserRestaurant updated;
+        try {
+            updated = engine.updateRestaurant(restaurantId, mutation)
+                    .orElseThrow(() -> new RestaurantNotFoundException("餐廳不存在: " + restaurantId));
+        } catch (UncheckedIOException e) {
+            restaurantIndexCache.invalidate(userId);
+            log.error("❌ {}失敗: restaurantId={}", action, restaurantId, e);
+            throw new RuntimeException(action + "失敗", e);
+        }
+
+        // 只修補這間餐廳，其他餐廳沿用索引中的權重
+        if (Boolean.TRUE.equals(updated.getActive())) {
+            RestaurantResponse response = RestaurantResponse.from(updated);
+            restaurantIndexCache.update(userId, index -> index.withRestaurant(response, recommendationScorer.weigher()));
+        } else {
+            restaurantIndexCache.update(userId, index -> index.without(restaurantId));
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,170 @@
+package com.lunch.storage;
+
+import com.google.cloud.Timestamp;
+import com.lunch.model.User;
+import com.lunch.model.UserPreferences;
+import com.lunch.service.UserCacheStats;
+import com.lunch.service.UserPreferencesChangedEvent;
+import com.lunch.service.UserStorageService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 用戶存儲服務（使用內嵌的本機存儲引擎）
+ * 資料都在記憶體中，不需要 UserCache 或延遲寫入的活躍時間緩衝。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "lunch.storage.type", havingValue = "local")
+public class LocalUserStorageService implements UserStorageService {
+
+    private final LocalStorageEngine engine;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public boolean addUser(String userId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            log.warn("⚠️ 嘗試添加空的用戶 ID");
+            return false;
+        }
+
+        User newUser = User.builder()
+                .userId(userId)
+                .registeredAt(Timestamp.now())
+                .lastActiveAt(Timestamp.now())
+                .preferences(UserPreferences.builder().build())
+                .active(true)
+                .build();
+
+        try {
+            if (engine.createUser(newUser)) {
+                log.info("✅ 新用戶已註冊: {}", userId);
+                eventPublisher.publishEvent(new UserPreferencesChangedEvent(userId, newUser.copy()));
+                return true;
+            }
+            engine.updateUser(userId, user -> user.setLastActiveAt(Timestamp.now()));
+            log.debug("ℹ️ 用戶已存在，已記錄活躍時間: {}", userId);
+            return false;
+        } catch (UncheckedIOException e) {
+            log.error("❌ 添加用戶時發生錯誤: {}", userId, e);
+            return false;
+        }
+    }
+
+    @Override
+    public Optional<User> getUser(String userId) {
+        return engine.getUser(userId);
+    }
+
+    @Override
+    public List<User> getAllActiveUsers() {
+        return engine.findUsers(user -> user.getActive() == null || user.getActive());
+    }
+
+    @Override
+    public Stream<User> streamAllActiveUsers() {
+        return getAllActiveUsers().stream();
+    }
+
+    @Override
+    public List<User> getNotificationEnabledUsers() {
+        List<User> result = engine.findNotificationUsers();
+        log.debug("📊 找到 {} 位啟用通知的用戶", result.size());
+        return result;
+    }
+
+    @Override
+    public Stream<User> streamNotificationEnabledUsers() {
+        return engine.findNotificationUsers().stream();
+    }
+
+    @Override
+    public boolean updateUserPreferences(String userId, UserPreferences preferences) {
+        return update(userId, user -> {
+            user.setPreferences(preferences);
+            user.setLastActiveAt(Timestamp.now());
+        }, "✅ 已更新用戶偏好: {}", "更新用戶偏好");
+    }
+
+    @Override
+    public boolean removeUser(String userId) {
+        // 設為非活躍而不是直接刪除（保留歷史記錄）
+        return update(userId, user -> user.setActive(false), "🗑️ 用戶已設為非活躍: {}", "移除用戶");
+    }
+
+    @Override
+    public boolean hasUser(String userId) {
+        return getUser(userId).isPresent();
+    }
+
+    /**
+     * 本機存儲不使用快取，統計一律為 0
+     */
+    @Override
+    public UserCacheStats getCacheStats() {
+        return new UserCacheStats(0, 0, 0, 0);
+    }
+
+    @Override
+    public int getUserCount() {
+        return engine.getActiveUserCount();
+    }
+
+    @Override
+    public boolean enableNotification(String userId) {
+        return update(userId, user -> preferencesOf(user).setNotificationEnabled(true),
+                "🔔 已啟用用戶通知: {}", "啟用通知");
+    }
+
+    @Override
+    public boolean disableNotification(String userId) {
+        return update(userId, user -> preferencesOf(user).setNotificationEnabled(false),
+                "🔕 已關閉用戶通知: {}", "關閉通知");
+    }
+
+    @Override
+    public boolean setUserRestaurants(String userId, List<String> restaurants) {
+        return update(userId, user -> {
+            preferencesOf(user).setRestaurants(restaurants);
+            user.setLastActiveAt(Timestamp.now());
+        }, "🍽️ 已更新用戶餐廳偏好: {}", "設定餐廳偏好");
+    }
+
+    /**
+     * 修改既有用戶並發布變更事件
+     *
+     * @return false 如果用戶不存在或寫入失敗
+     */
+    private boolean update(String userId, Consumer<User> mutation, String successMessage, String action) {
+        try {
+            Optional<User> updated = engine.updateUser(userId, mutation);
+            if (updated.isEmpty()) {
+                log.warn("⚠️ 用戶不存在: {}", userId);
+                return false;
+            }
+            log.info(successMessage, userId);
+            eventPublisher.publishEvent(new UserPreferencesChangedEvent(userId, updated.get()));
+            return true;
+        } catch (UncheckedIOException e) {
+            log.error("❌ {}時發生錯誤: {}", action, userId, e);
+            return false;
+        }
+    }
+
+    private static UserPreferences preferencesOf(User user) {
+        if (user.getPreferences() == null) {
+            user.setPreferences(new UserPreferences());
+        }
+        return user.getPreferences();
+    }
+}
@@ -0,0 +1,117 @@
+package com.lunch.webhook;
+
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.Firestore;
+import com.lunch.service.FirestoreErrors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Webhook 事件去重
+ * LINE 在逾時時會重送同一個事件（webhookEventId 相同），重複處理會多寫一次 Firestore 並重複回覆用戶。
+ * 本機以插入順序的 LinkedHashMap 記錄最近看過的事件 ID：超過 ttl 的從最舊的一端移除，超過上限時淘汰最舊的，
+ * 每個事件只需 O(1) 的查詢與一個 entry。
+ * 啟用 shared 時另外在 Firestore webhook_events 集合以 create()（文件已存在即失敗）登記，讓多個執行個體一起去重；
+ * 文件帶有 expireAt 欄位，可搭配 Firestore TTL 政策自動清除。使用本機存儲（沒有 Firestore）時 shared 不生效。
+ */
+@Slf4j
+@Component
+public class WebhookEventDeduplicator {
+
+    private static final String COLLECTION_NAME = "webhook_events";
+
+    private final Firestore firestore;
+    private final long ttlMillis;
+    private final boolean shared;
+
+    /**
+     * webhookEventId → 第一次收到的時間（毫秒）
+     */
+    private final Map<String, Long> seen;
+
+    public WebhookEventDeduplicator(
+            @Nullable Firestore firestore,
+            @Value("${lunch.webhook.dedup.max-entries:100000}") int maxEntries,
+            @Value("${lunch.webhook.dedup.ttl-ms:600000}") long ttlMillis,
+            @Value("${lunch.webhook.dedup.shared:false}") boolean shared) {
+        this.firestore = firestore;
+        this.ttlMillis = Math.max(1, ttlMillis);
+        this.shared = shared && firestore != null;
+        if (shared && firestore == null) {
+            log.warn("⚠️ 未使用 Firestore 存儲，webhook 事件只在本機去重");
+        }
+
+        int capacity = Math.max(1, maxEntries);
+        this.seen = new LinkedHashMap<>(Math.min(capacity, 1 << 16), 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 登記事件並判斷是否為重送
+     *
+     * @param webhookEventId 事件 ID（null 或空字串時不去重）
+     * @return true 如果已經處理過
+     */
+    public boolean isDuplicate(String webhookEventId) {
+        if (webhookEventId == null || webhookEventId.isEmpty()) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (seen) {
+            evictExpired(now);
+            if (seen.putIfAbsent(webhookEventId, now) != null) {
+                return true;
+            }
+        }
+
+        return shared && !claimShared(webhookEventId, now);
+    }
+
+    /**
+     * 插入順序即時間順序，只需從最舊的一端移除過期的 entry
+     */
+    private void evictExpired(long now) {
+        Iterator<Long> iterator = seen.values().iterator();
+        while (iterator.hasNext() && now - iterator.next() >= ttlMillis) {
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 在 Firestore 登記事件 ID
+     *
+     * @return false 如果其他執行個體已經登記過；Firestore 錯誤時視為可以處理（寧可重複也不漏處理）
+     */
+    private boolean claimShared(String webhookEventId, long now) {
+        try {
+            firestore.collection(COLLECTION_NAME).document(webhookEventId).create(Map.of(
+                    "receivedAt", Timestamp.now(),
+                    "expireAt", Timestamp.of(new Date(now + ttlMillis))
+            )).get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        } catch (ExecutionException e) {
+            if (FirestoreErrors.hasCode(e, StatusCode.Code.ALREADY_EXISTS)) {
+                return false;
+            }
+            log.warn("⚠️ 登記 webhook 事件失敗，仍繼續處理 ({}): {}", webhookEventId, e.getMessage());
+            return true;
+        }
+    }
+}
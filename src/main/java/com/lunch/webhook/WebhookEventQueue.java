@@ -0,0 +1,159 @@
+package com.lunch.webhook;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Webhook 事件佇列
+ * callback 驗證簽章後只把事件放入佇列就立即回應 200，由背景 worker 處理 Firestore 與 LINE 呼叫。
+ * 每個 worker 是一條單執行緒 lane，同一個 userId 的事件一律進入同一條 lane，因此會依收到的順序處理
+ * （例如「設定」之後的「推薦」一定看得到新的偏好），不同用戶之間則平行處理。
+ */
+@Slf4j
+@Component
+public class WebhookEventQueue {
+
+    private final WebhookEventProcessor processor;
+    private final List<ThreadPoolExecutor> lanes;
+    private final long shutdownTimeoutMillis;
+
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong lastLagNanos = new AtomicLong();
+
+    public WebhookEventQueue(
+            WebhookEventProcessor processor,
+            @Value("${lunch.webhook.workers:4}") int workers,
+            @Value("${lunch.webhook.queue-capacity:10000}") int queueCapacity,
+            @Value("${lunch.webhook.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis) {
+        this.processor = processor;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+
+        int laneCount = Math.max(1, workers);
+        int laneCapacity = Math.max(1, queueCapacity / laneCount);
+        this.lanes = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            String name = "webhook-worker-" + i;
+            lanes.add(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(laneCapacity), r -> new Thread(r, name)));
+        }
+    }
+
+    /**
+     * 將事件放入該用戶的 lane
+     *
+     * @param event LINE webhook 事件
+     * @return false 如果佇列已滿而丟棄
+     */
+    public boolean submit(JsonNode event) {
+        String key = orderingKey(event);
+        ThreadPoolExecutor lane = lanes.get(Math.floorMod(key.hashCode(), lanes.size()));
+
+        try {
+            lane.execute(new QueuedEvent(event));
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            log.error("❌ Webhook 佇列已滿，丟棄事件 (key: {}, type: {})", key, event.path("type").asText());
+            return false;
+        }
+    }
+
+    /**
+     * 目前佇列狀態
+     */
+    public WebhookQueueStats stats() {
+        long now = System.nanoTime();
+        int depth = 0;
+        long oldestLagNanos = 0;
+
+        for (ThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueue().size();
+            Runnable head = lane.getQueue().peek();
+            if (head instanceof QueuedEvent queued) {
+                oldestLagNanos = Math.max(oldestLagNanos, now - queued.enqueuedAt);
+            }
+        }
+
+        return new WebhookQueueStats(depth,
+                TimeUnit.NANOSECONDS.toMillis(oldestLagNanos),
+                TimeUnit.NANOSECONDS.toMillis(lastLagNanos.get()),
+                processedCount.get(),
+                rejectedCount.get());
+    }
+
+    /**
+     * 關閉時處理完已收到的事件（最多等待 shutdown-timeout-ms）
+     */
+    @PreDestroy
+    public void shutdown() {
+        lanes.forEach(ThreadPoolExecutor::shutdown);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                long remaining = deadline - System.nanoTime();
+                if (!lane.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+                    log.warn("⚠️ Webhook 佇列未在時限內清空，剩餘 {} 個事件", lane.getQueue().size());
+                    lane.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lanes.forEach(ThreadPoolExecutor::shutdownNow);
+        }
+    }
+
+    /**
+     * 同一個來源（用戶 / 群組 / 聊天室）的事件使用同一條 lane
+     */
+    private static String orderingKey(JsonNode event) {
+        JsonNode source = event.path("source");
+        for (String field : new String[]{"userId", "groupId", "roomId"}) {
+            if (source.hasNonNull(field)) {
+                return source.get(field).asText();
+            }
+        }
+        return "";
+    }
+
+    /**
+     * 佇列中的事件（記錄收到的時間以計算處理延遲）
+     */
+    private class QueuedEvent implements Runnable {
+        private final JsonNode event;
+        private final long enqueuedAt = System.nanoTime();
+
+        private QueuedEvent(JsonNode event) {
+            this.event = event;
+        }
+
+        @Override
+        public void run() {
+            long lag = System.nanoTime() - enqueuedAt;
+            lastLagNanos.set(lag);
+            if (lag > TimeUnit.SECONDS.toNanos(5)) {
+                log.warn("⚠️ Webhook 事件處理延遲 {} ms", TimeUnit.NANOSECONDS.toMillis(lag));
+            }
+
+            try {
+                processor.process(event);
+            } catch (Exception e) {
+                log.error("Webhook處理失敗", e);
+            } finally {
+                processedCount.incrementAndGet();
+            }
+        }
+    }
+}
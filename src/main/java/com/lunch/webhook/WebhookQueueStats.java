@@ -0,0 +1,37 @@
+package com.lunch.webhook;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Webhook 事件佇列狀態
+ */
+@Getter
+@AllArgsConstructor
+public class WebhookQueueStats {
+
+    /**
+     * 等待處理的事件數
+     */
+    private final int queueDepth;
+
+    /**
+     * 佇列中最舊事件已等待的時間（毫秒，佇列為空時為 0）
+     */
+    private final long oldestLagMillis;
+
+    /**
+     * 最近一個事件從收到到開始處理的延遲（毫秒）
+     */
+    private final long lastLagMillis;
+
+    /**
+     * 已處理的事件數
+     */
+    private final long processedCount;
+
+    /**
+     * 因佇列已滿而丟棄的事件數
+     */
+    private final long rejectedCount;
+}
@@ -0,0 +1,121 @@
+package com.lunch.notification;
+
+import com.linecorp.bot.client.RetryableLineMessagingClient;
+import com.linecorp.bot.client.exception.BadRequestException;
+import com.linecorp.bot.client.exception.ConflictException;
+import com.linecorp.bot.client.exception.LineServerException;
+import com.linecorp.bot.client.exception.TooManyRequestsException;
+import com.linecorp.bot.model.PushMessage;
+import com.linecorp.bot.model.response.BotApiResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * LinePushClient 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LinePushClient 單元測試")
+class LinePushClientTest {
+
+    @Mock
+    private RetryableLineMessagingClient lineMessagingClient;
+
+    @Mock
+    private BotApiResponse okResponse;
+
+    private LinePushClient linePushClient;
+
+    @BeforeEach
+    void setUp() {
+        linePushClient = new LinePushClient(
+                lineMessagingClient, 1_000, 1_000, 3, 1, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        linePushClient.shutdown();
+    }
+
+    @Test
+    @DisplayName("429 與 5xx 會重試，最終成功")
+    void testPush_RetriesThrottlingAndServerErrors() throws Exception {
+        when(lineMessagingClient.pushMessage(any(UUID.class), any(PushMessage.class)))
+                .thenReturn(CompletableFuture.failedFuture(new TooManyRequestsException("429", null)))
+                .thenReturn(CompletableFuture.failedFuture(new LineServerException("500", null)))
+                .thenReturn(CompletableFuture.completedFuture(okResponse));
+
+        BotApiResponse response = linePushClient.push("U1", "午餐").get(5, TimeUnit.SECONDS);
+
+        assertSame(okResponse, response);
+        verify(lineMessagingClient, times(3)).pushMessage(any(UUID.class), any(PushMessage.class));
+    }
+
+    @Test
+    @DisplayName("4xx 用戶端錯誤不重試")
+    void testPush_DoesNotRetryClientErrors() {
+        when(lineMessagingClient.pushMessage(any(UUID.class), any(PushMessage.class)))
+                .thenReturn(CompletableFuture.failedFuture(new BadRequestException("400", null)));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> linePushClient.push("U1", "午餐").get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(BadRequestException.class, e.getCause());
+        verify(lineMessagingClient, times(1)).pushMessage(any(UUID.class), any(PushMessage.class));
+    }
+
+    @Test
+    @DisplayName("超過最大嘗試次數後放棄")
+    void testPush_GivesUpAfterMaxAttempts() {
+        when(lineMessagingClient.pushMessage(any(UUID.class), any(PushMessage.class)))
+                .thenReturn(CompletableFuture.failedFuture(new TooManyRequestsException("429", null)));
+
+        assertThrows(ExecutionException.class,
+                () -> linePushClient.push("U1", "午餐").get(5, TimeUnit.SECONDS));
+
+        verify(lineMessagingClient, times(3)).pushMessage(any(UUID.class), any(PushMessage.class));
+    }
+
+    @Test
+    @DisplayName("重試時收到 409 代表先前的請求已送達，視為成功")
+    void testPush_ConflictOnRetryMeansDelivered() throws Exception {
+        when(lineMessagingClient.pushMessage(any(UUID.class), any(PushMessage.class)))
+                .thenReturn(CompletableFuture.failedFuture(new LineServerException("500", null)))
+                .thenReturn(CompletableFuture.failedFuture(new ConflictException("409", null)));
+
+        assertDoesNotThrow(() -> linePushClient.push("U1", "午餐").get(5, TimeUnit.SECONDS));
+        verify(lineMessagingClient, times(2)).pushMessage(any(UUID.class), any(PushMessage.class));
+    }
+
+    @Test
+    @DisplayName("同一次發送的重試共用 retry key，內容相同的另一次發送使用新的 key")
+    void testPush_RetryKeyPerLogicalSend() throws Exception {
+        when(lineMessagingClient.pushMessage(any(UUID.class), any(PushMessage.class)))
+                .thenReturn(CompletableFuture.failedFuture(new LineServerException("500", null)))
+                .thenReturn(CompletableFuture.completedFuture(okResponse));
+
+        linePushClient.push("U1", "午餐").get(5, TimeUnit.SECONDS);
+        linePushClient.push("U1", "午餐").get(5, TimeUnit.SECONDS);
+
+        ArgumentCaptor<UUID> retryKeys = ArgumentCaptor.forClass(UUID.class);
+        verify(lineMessagingClient, times(3)).pushMessage(retryKeys.capture(), any(PushMessage.class));
+        List<UUID> keys = retryKeys.getAllValues();
+        assertEquals(keys.get(0), keys.get(1));
+        assertNotEquals(keys.get(1), keys.get(2));
+    }
+}
@@ -0,0 +1,180 @@
+package com.lunch.notification;
+
+import com.linecorp.bot.client.RetryableLineMessagingClient;
+import com.linecorp.bot.model.Multicast;
+import com.linecorp.bot.model.PushMessage;
+import com.linecorp.bot.model.response.BotApiResponse;
+import com.lunch.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * NotificationDispatcher 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("NotificationDispatcher 單元測試")
+class NotificationDispatcherTest {
+
+    @Mock
+    private RetryableLineMessagingClient lineMessagingClient;
+
+    private NotificationDispatcher dispatcher(int maxInFlight, int multicastBatchSize) {
+        // 不限流、不重試，只驗證扇出行為
+        LinePushClient linePushClient = new LinePushClient(
+                lineMessagingClient, 1_000_000, 1_000_000, 1, 1, 1);
+        NotificationOutbox outbox = new NotificationOutbox(false, "unused", 1, 100);
+        return new NotificationDispatcher(linePushClient, outbox, maxInFlight, multicastBatchSize);
+    }
+
+    private static List<User> users(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(User.builder().userId("U" + i).build());
+        }
+        return users;
+    }
+
+    private static NotificationTask task(User user) {
+        return new NotificationTask(user.getUserId(), "午餐 " + user.getUserId(), null);
+    }
+
+    @Test
+    @DisplayName("全部成功 - 統計成功數")
+    void testDispatch_AllSuccess() {
+        when(lineMessagingClient.pushMessage(any(UUID.class), any(PushMessage.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(BotApiResponse.class)));
+
+        NotificationDispatcher dispatcher = dispatcher(4, 500);
+        DispatchResult result = dispatcher.dispatch(null, users(10), NotificationDispatcherTest::task);
+
+        assertEquals(10, result.getSuccessCount());
+        assertEquals(0, result.getFailCount());
+        assertTrue(result.isComplete());
+        verify(lineMessagingClient, times(10)).pushMessage(any(UUID.class), any(PushMessage.class));
+    }
+
+    @Test
+    @DisplayName("讀取接收者途中失敗 - 已讀到的用戶照常發送，結果記為未完成")
+    void testDispatch_ScanFailureMarksIncomplete() {
+        when(lineMessagingClient.pushMessage(any(UUID.class), any(PushMessage.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(BotApiResponse.class)));
+        Iterator<User> readable = users(3).iterator();
+        Iterable<User> failing = () -> new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                if (!readable.hasNext()) {
+                    throw new RuntimeException("分頁讀取文件失敗");
+                }
+                return true;
+            }
+
+            @Override
+            public User next() {
+                return readable.next();
+            }
+        };
+
+        DispatchResult result = dispatcher(4, 500).dispatch(null, failing, NotificationDispatcherTest::task);
+
+        assertFalse(result.isComplete());
+        assertEquals(3, result.getSuccessCount());
+    }
+
+    @Test
+    @DisplayName("發送失敗與產生訊息失敗 - 都計入失敗數且不影響其他用戶")
+    void testDispatch_PartialFailure() {
+        when(lineMessagingClient.pushMessage(any(UUID.class), any(PushMessage.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("LINE 錯誤")))
+                .thenReturn(CompletableFuture.completedFuture(mock(BotApiResponse.class)));
+
+        NotificationDispatcher dispatcher = dispatcher(2, 500);
+        DispatchResult result = dispatcher.dispatch(null, users(4), user -> {
+            if ("U3".equals(user.getUserId())) {
+                throw new IllegalStateException("選擇餐廳失敗");
+            }
+            return task(user);
+        });
+
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(2, result.getFailCount());
+        assertEquals(4, result.getTotal());
+    }
+
+    @Test
+    @DisplayName("相同訊息合併為 multicast，依批次大小切分，獨特訊息使用 push")
+    void testDispatch_MulticastIdenticalMessages() {
+        when(lineMessagingClient.multicast(any(UUID.class), any(Multicast.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(BotApiResponse.class)));
+        when(lineMessagingClient.pushMessage(any(UUID.class), any(PushMessage.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(BotApiResponse.class)));
+
+        NotificationDispatcher dispatcher = dispatcher(4, 3);
+        DispatchResult result = dispatcher.dispatch(null, users(8), user ->
+                "U7".equals(user.getUserId())
+                        ? task(user)
+                        : new NotificationTask(user.getUserId(), "今日推薦：麵店", "麵店"));
+
+        // 7 位相同訊息 → 3 + 3 + 1（最後一組只有一人，改用 push）；U7 獨特訊息 → push
+        ArgumentCaptor<Multicast> multicasts = ArgumentCaptor.forClass(Multicast.class);
+        verify(lineMessagingClient, times(2)).multicast(any(UUID.class), multicasts.capture());
+        multicasts.getAllValues().forEach(m -> assertEquals(3, m.getTo().size()));
+        verify(lineMessagingClient, times(2)).pushMessage(any(UUID.class), any(PushMessage.class));
+
+        assertEquals(8, result.getSuccessCount());
+        assertEquals(0, result.getFailCount());
+    }
+
+    @Test
+    @DisplayName("在途請求數不超過上限，且所有請求完成後才返回")
+    void testDispatch_BoundedInFlight() throws Exception {
+        int maxInFlight = 3;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        ExecutorService lineServer = Executors.newFixedThreadPool(8);
+
+        when(lineMessagingClient.pushMessage(any(UUID.class), any(PushMessage.class))).thenAnswer(invocation -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                sleep(20);
+                inFlight.decrementAndGet();
+                return mock(BotApiResponse.class);
+            }, lineServer);
+        });
+
+        NotificationDispatcher dispatcher = dispatcher(maxInFlight, 500);
+        Future<DispatchResult> result = Executors.newSingleThreadExecutor()
+                .submit(() -> dispatcher.dispatch(null, users(12), NotificationDispatcherTest::task));
+
+        assertEquals(12, result.get(5, TimeUnit.SECONDS).getSuccessCount());
+        assertTrue(peak.get() <= maxInFlight, "在途請求數超過上限: " + peak.get());
+        assertEquals(0, inFlight.get());
+        lineServer.shutdown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
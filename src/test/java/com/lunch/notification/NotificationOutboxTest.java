@@ -0,0 +1,75 @@
+package com.lunch.notification;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NotificationOutbox 單元測試
+ */
+@DisplayName("NotificationOutbox 單元測試")
+class NotificationOutboxTest {
+
+    @TempDir
+    Path tempDir;
+
+    private NotificationOutbox open(Path journal) throws Exception {
+        NotificationOutbox outbox = new NotificationOutbox(true, journal.toString(), 1, 100);
+        outbox.open();
+        return outbox;
+    }
+
+    @Test
+    @DisplayName("重新開啟後只留下未完成的通知")
+    void testRecover_OnlyUnfinishedEntries() throws Exception {
+        Path journal = tempDir.resolve("outbox.journal");
+        NotificationOutbox outbox = open(journal);
+        String runKey = outbox.todayRunKey("personalized");
+
+        outbox.recordPlanned(runKey, new NotificationTask("U1", "午餐：麵店", "麵店"));
+        outbox.recordPlanned(runKey, new NotificationTask("U2", "午餐：麵店", "麵店"));
+        outbox.recordPlanned(runKey, new NotificationTask("U3", "午餐：便當店", "便當店"));
+        outbox.recordDone(runKey, List.of("U1", "U2"));
+        // 模擬行程被回收：不呼叫 close()，只有映射記憶體中的內容
+        outbox.flush();
+
+        NotificationOutbox restarted = open(journal);
+        Map<String, List<NotificationTask>> unfinished = restarted.unfinishedRuns();
+
+        assertEquals(1, unfinished.size());
+        List<NotificationTask> pending = unfinished.get(runKey);
+        assertEquals(1, pending.size());
+        assertEquals("U3", pending.get(0).getUserId());
+        assertEquals("午餐：便當店", pending.get(0).getMessage());
+        assertTrue(restarted.isDone(runKey, "U1"));
+        assertFalse(restarted.isDone(runKey, "U3"));
+        restarted.close();
+    }
+
+    @Test
+    @DisplayName("journal 寫滿時會壓縮並擴充，不遺失狀態")
+    void testAppend_GrowsWhenFull() throws Exception {
+        Path journal = tempDir.resolve("outbox.journal");
+        NotificationOutbox outbox = open(journal);
+        String runKey = outbox.todayRunKey("personalized");
+        String message = "午".repeat(2000);
+
+        // 1 MB 的 journal 無法容納 400 筆約 6 KB 的紀錄
+        for (int i = 0; i < 400; i++) {
+            outbox.recordPlanned(runKey, new NotificationTask("U" + i, message, null));
+        }
+        outbox.recordDone(runKey, List.of("U0"));
+        outbox.close();
+
+        NotificationOutbox restarted = open(journal);
+        assertEquals(399, restarted.unfinishedRuns().get(runKey).size());
+        assertTrue(restarted.isDone(runKey, "U0"));
+        restarted.close();
+    }
+}
@@ -1,5 +1,6 @@
 package com.lunch.scheduler;
 
+import com.lunch.model.User;
 import com.lunch.service.LineMessagingService;
 import com.lunch.service.LunchService;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,6 +12,10 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -28,6 +33,9 @@ class LunchSchedulerTest {
     @Mock
     private LineMessagingService lineMessagingService;
 
+    @Mock
+    private NotificationTimingWheel notificationTimingWheel;
+
     @InjectMocks
     private LunchScheduler lunchScheduler;
 
@@ -145,4 +153,47 @@ class LunchSchedulerTest {
             lunchScheduler.sendDailyLunchNotification();
         }, "定時任務方法應該是 public void 且無參數");
     }
+
+    @Test
+    @DisplayName("時間輪有到期用戶 - 只發送給這些用戶")
+    void testDispatchDueNotifications_SendsToDueUsers() {
+        // Given: 時間輪在這一分鐘有兩位用戶到期
+        List<User> dueUsers = List.of(
+            User.builder().userId("U1").build(),
+            User.builder().userId("U2").build());
+        when(notificationTimingWheel.advance(any(LocalDateTime.class))).thenReturn(dueUsers);
+
+        // When: 每分鐘的排程觸發
+        lunchScheduler.dispatchDueNotifications();
+
+        // Then: 只發送給到期用戶，不會對所有人發送
+        verify(lineMessagingService, times(1)).sendPersonalizedLunchNotifications(dueUsers);
+        verify(lineMessagingService, never()).sendPersonalizedLunchNotifications();
+    }
+
+    @Test
+    @DisplayName("時間輪沒有到期用戶 - 不發送任何通知")
+    void testDispatchDueNotifications_NoDueUsers() {
+        // Given: 這一分鐘沒有用戶
+        when(notificationTimingWheel.advance(any(LocalDateTime.class))).thenReturn(List.of());
+
+        // When: 每分鐘的排程觸發
+        lunchScheduler.dispatchDueNotifications();
+
+        // Then: 不會呼叫 LINE
+        verifyNoInteractions(lineMessagingService);
+    }
+
+    @Test
+    @DisplayName("時間輪發送時發生異常 - 應該捕獲並記錄錯誤")
+    void testDispatchDueNotifications_Exception() {
+        // Given: 發送時拋出異常
+        List<User> dueUsers = List.of(User.builder().userId("U1").build());
+        when(notificationTimingWheel.advance(any(LocalDateTime.class))).thenReturn(dueUsers);
+        doThrow(new RuntimeException("測試異常"))
+            .when(lineMessagingService).sendPersonalizedLunchNotifications(dueUsers);
+
+        // When / Then: 不應該拋出異常
+        assertDoesNotThrow(() -> lunchScheduler.dispatchDueNotifications());
+    }
 }
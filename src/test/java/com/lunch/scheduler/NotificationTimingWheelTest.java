@@ -0,0 +1,107 @@
+package com.lunch.scheduler;
+
+import com.lunch.model.User;
+import com.lunch.model.UserPreferences;
+import com.lunch.service.UserPreferencesChangedEvent;
+import com.lunch.service.UserStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * NotificationTimingWheel 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("NotificationTimingWheel 單元測試")
+class NotificationTimingWheelTest {
+
+    @Mock
+    private UserStorageService userStorageService;
+
+    private NotificationTimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new NotificationTimingWheel(userStorageService, "11:50");
+    }
+
+    private static User user(String userId, String notificationTime) {
+        return User.builder()
+                .userId(userId)
+                .preferences(UserPreferences.builder().notificationTime(notificationTime).build())
+                .build();
+    }
+
+    private static List<String> ids(List<User> users) {
+        return users.stream().map(User::getUserId).collect(Collectors.toList());
+    }
+
+    private static LocalDateTime at(int day, int hour, int minute) {
+        return LocalDateTime.of(2024, 1, day, hour, minute, 0);
+    }
+
+    @Test
+    @DisplayName("依 notificationTime 分格，未設定者使用預設 11:50")
+    void testAdvance_DispatchesEachUserInTheirMinute() {
+        wheel.rebuild(List.of(user("A", "11:30"), user("B", null), user("C", "12:05"), user("D", "bad")));
+
+        assertEquals(List.of(), ids(wheel.advance(at(1, 11, 0))));
+        assertEquals(List.of("A"), ids(wheel.advance(at(1, 11, 30))));
+        assertEquals(List.of("B", "D"), ids(wheel.advance(at(1, 11, 50))));
+        assertEquals(List.of("C"), ids(wheel.advance(at(1, 12, 5))));
+    }
+
+    @Test
+    @DisplayName("錯過的分鐘會補發，同一天不重複；跨日後重新開始")
+    void testAdvance_CatchesUpAndRollsOver() {
+        wheel.rebuild(List.of(user("A", "11:30"), user("B", "11:31")));
+
+        wheel.advance(at(1, 11, 29));
+        assertEquals(List.of("A", "B"), ids(wheel.advance(at(1, 11, 32))));
+        assertEquals(List.of(), ids(wheel.advance(at(1, 11, 33))));
+        assertEquals(List.of("A", "B"), ids(wheel.advance(at(2, 11, 40))));
+    }
+
+    @Test
+    @DisplayName("偏好變更後搬到新格子，關閉通知則移除")
+    void testSchedule_MovesAndRemovesUsers() {
+        wheel.rebuild(List.of(user("A", "11:30")));
+        wheel.schedule(user("A", "12:00"));
+
+        User disabled = user("B", "12:00");
+        disabled.getPreferences().setNotificationEnabled(false);
+        wheel.schedule(disabled);
+
+        wheel.advance(at(1, 11, 0));
+        assertEquals(List.of(), ids(wheel.advance(at(1, 11, 30))));
+        assertEquals(List.of("A"), ids(wheel.advance(at(1, 12, 0))));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    @DisplayName("偏好變更事件直接以寫入後的用戶搬移格子，不讀取用戶")
+    void testOnUserPreferencesChanged_MovesFromPayloadWithoutRead() {
+        wheel.rebuild(List.of(user("A", "11:30"), user("B", "11:30")));
+
+        wheel.onUserPreferencesChanged(new UserPreferencesChangedEvent("A", user("A", "12:00")));
+        wheel.onUserPreferencesChanged(new UserPreferencesChangedEvent("B",
+                User.builder().userId("B").active(false).build()));
+        wheel.onUserPreferencesChanged(new UserPreferencesChangedEvent("C"));
+
+        assertEquals(List.of(), ids(wheel.usersAt(LocalTime.of(11, 30))));
+        assertEquals(List.of("A"), ids(wheel.usersAt(LocalTime.of(12, 0))));
+        assertEquals(1, wheel.size());
+        verifyNoInteractions(userStorageService);
+    }
+}
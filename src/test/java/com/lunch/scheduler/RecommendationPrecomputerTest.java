@@ -0,0 +1,148 @@
+package com.lunch.scheduler;
+
+import com.lunch.model.User;
+import com.lunch.model.UserPreferences;
+import com.lunch.notification.NotificationTask;
+import com.lunch.dto.RestaurantResponse;
+import com.lunch.service.LunchService;
+import com.lunch.service.RestaurantIndex;
+import com.lunch.service.UserPreferencesChangedEvent;
+import com.lunch.service.UserRestaurantService;
+import com.lunch.service.UserStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * RecommendationPrecomputer 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("RecommendationPrecomputer 單元測試")
+class RecommendationPrecomputerTest {
+
+    @Mock
+    private LunchService lunchService;
+
+    @Mock
+    private UserStorageService userStorageService;
+
+    @Mock
+    private UserRestaurantService userRestaurantService;
+
+    private NotificationTimingWheel wheel;
+    private RecommendationPrecomputer precomputer;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new NotificationTimingWheel(userStorageService, "11:50");
+        precomputer = new RecommendationPrecomputer(lunchService, userRestaurantService, wheel, 10, 2);
+
+        user = User.builder()
+                .userId("U1")
+                .preferences(UserPreferences.builder().notificationTime("11:50").build())
+                .build();
+        wheel.rebuild(List.of(user));
+
+        when(lunchService.selectRestaurantForUser(any(User.class), any())).thenReturn("麥當勞", "肯德基");
+        when(lunchService.formatLunchMessageForUser(anyString(), any(User.class)))
+                .thenAnswer(invocation -> "今天吃 " + invocation.getArgument(0));
+    }
+
+    private static LocalDateTime sendTime() {
+        return LocalDateTime.of(LocalDate.now(), LocalTime.of(11, 50));
+    }
+
+    @Test
+    @DisplayName("發送時直接使用預先計算的推薦")
+    void testResolve_UsesPrecomputedTask() {
+        assertEquals(1, precomputer.precompute(sendTime()));
+
+        NotificationTask task = precomputer.resolve(user);
+
+        assertEquals("麥當勞", task.getRestaurant());
+        assertEquals("今天吃 麥當勞", task.getMessage());
+        verify(lunchService, times(1)).selectRestaurantForUser(any(User.class), any());
+    }
+
+    @Test
+    @DisplayName("預先計算後偏好變更的用戶會重新計算")
+    void testResolve_RecomputesWhenPreferencesChanged() {
+        precomputer.precompute(sendTime());
+        user.getPreferences().setExcludeRestaurants(List.of("麥當勞"));
+
+        NotificationTask task = precomputer.resolve(user);
+
+        assertEquals("肯德基", task.getRestaurant());
+        verify(lunchService, times(2)).selectRestaurantForUser(any(User.class), any());
+    }
+
+    @Test
+    @DisplayName("收到偏好變更事件時丟棄預先計算的結果")
+    void testOnUserPreferencesChanged_DiscardsStagedTask() {
+        precomputer.precompute(sendTime());
+        precomputer.onUserPreferencesChanged(new UserPreferencesChangedEvent("U1"));
+
+        assertEquals("肯德基", precomputer.resolve(user).getRestaurant());
+    }
+
+    @Test
+    @DisplayName("預先計算時載入餐廳索引但不放入快取，發送時重新計算只使用已快取的索引")
+    void testResolve_DoesNotLoadIndexDuringDispatch() {
+        RestaurantIndex loaded = RestaurantIndex.build(List.of(
+                RestaurantResponse.builder().id("R1").name("麥當勞").build()));
+        when(lunchService.isWeighted()).thenReturn(true);
+        when(userRestaurantService.loadRestaurantIndex("U1")).thenReturn(loaded);
+
+        precomputer.precompute(sendTime());
+        verify(lunchService).selectRestaurantForUser(user, loaded);
+
+        user.getPreferences().setExcludeRestaurants(List.of("麥當勞"));
+        precomputer.resolve(user);
+
+        verify(userRestaurantService).getCachedRestaurantIndex("U1");
+        verify(userRestaurantService, times(1)).loadRestaurantIndex("U1");
+        verify(userRestaurantService, never()).getRestaurantIndex(anyString());
+        verify(lunchService).selectRestaurantForUser(user, null);
+    }
+
+    @Test
+    @DisplayName("各用戶的餐廳索引在 precompute-worker 上平行載入，不在排程執行緒上逐一讀取")
+    void testPrecompute_LoadsIndexesInParallel() {
+        User other = User.builder()
+                .userId("U2")
+                .preferences(UserPreferences.builder().notificationTime("11:50").build())
+                .build();
+        wheel.rebuild(List.of(user, other));
+        CountDownLatch bothLoading = new CountDownLatch(2);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        when(lunchService.isWeighted()).thenReturn(true);
+        when(userRestaurantService.loadRestaurantIndex(anyString())).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            bothLoading.countDown();
+            // 兩位用戶的載入同時在途才會放行；逐一載入會在這裡逾時
+            assertTrue(bothLoading.await(5, TimeUnit.SECONDS));
+            return null;
+        });
+
+        assertEquals(2, precomputer.precompute(sendTime()));
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("precompute-worker-")));
+    }
+}
@@ -0,0 +1,86 @@
+package com.lunch.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * ActiveUserCounter 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ActiveUserCounter 單元測試")
+class ActiveUserCounterTest {
+
+    @Mock
+    private Firestore firestore;
+
+    @Mock
+    private CollectionReference stats;
+
+    @Mock
+    private DocumentReference counter;
+
+    @Mock
+    private DocumentSnapshot snapshot;
+
+    @Mock
+    private WriteBatch batch;
+
+    private ActiveUserCounter activeUserCounter;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(firestore.collection("stats")).thenReturn(stats);
+        lenient().when(stats.document("users")).thenReturn(counter);
+        activeUserCounter = new ActiveUserCounter(firestore);
+    }
+
+    @Test
+    @DisplayName("從計數器文件讀取用戶數，之後的新增會一起調整計數")
+    void testGet_ReadsCounterDocument() throws Exception {
+        when(counter.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+        when(snapshot.exists()).thenReturn(true);
+        when(snapshot.getLong("activeCount")).thenReturn(42L);
+
+        assertEquals(42, activeUserCounter.get());
+
+        activeUserCounter.increment(batch, 1);
+        verify(batch).set(eq(counter), anyMap(), any(SetOptions.class));
+        verify(firestore, never()).runTransaction(any());
+    }
+
+    @Test
+    @DisplayName("計數器尚未確認存在前的增減寫入 pendingDelta，讀取時一併計入")
+    void testIncrement_QueuedBeforeInitialization() throws Exception {
+        activeUserCounter.increment(batch, 1);
+
+        verify(batch).set(eq(counter), eq(Map.of("pendingDelta", FieldValue.increment(1))), any(SetOptions.class));
+        verify(batch, never()).set(eq(counter), eq(Map.of("activeCount", FieldValue.increment(1))), any(SetOptions.class));
+
+        when(counter.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+        when(snapshot.exists()).thenReturn(true);
+        when(snapshot.getLong("activeCount")).thenReturn(42L);
+        when(snapshot.getLong("pendingDelta")).thenReturn(1L);
+
+        assertEquals(43, activeUserCounter.get());
+    }
+}
@@ -0,0 +1,45 @@
+package com.lunch.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AliasTable 單元測試
+ */
+@DisplayName("AliasTable 單元測試")
+class AliasTableTest {
+
+    private static int[] sample(AliasTable table, int draws) {
+        Random random = new Random(7);
+        int[] counts = new int[table.size()];
+        for (int i = 0; i < draws; i++) {
+            counts[table.sample(random)]++;
+        }
+        return counts;
+    }
+
+    @Test
+    @DisplayName("抽樣頻率與權重成正比")
+    void testSample_ProportionalToWeights() {
+        int[] counts = sample(AliasTable.of(new double[]{1, 2, 0, 5}), 80_000);
+
+        assertEquals(10_000, counts[0], 600);
+        assertEquals(20_000, counts[1], 800);
+        assertEquals(0, counts[2]);
+        assertEquals(50_000, counts[3], 1_000);
+    }
+
+    @Test
+    @DisplayName("權重全為 0 時均勻抽樣，沒有項目時拒絕建表")
+    void testOf_FallsBackToUniform() {
+        int[] counts = sample(AliasTable.of(new double[]{0, 0}), 10_000);
+
+        assertEquals(5_000, counts[0], 300);
+        assertThrows(IllegalArgumentException.class, () -> AliasTable.of(new double[0]));
+        assertThrows(IllegalArgumentException.class, () -> AliasTable.of(new double[]{1, -1}));
+    }
+}
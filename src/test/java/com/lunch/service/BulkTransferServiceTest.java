@@ -0,0 +1,290 @@
+package com.lunch.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.AlreadyExistsException;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteResult;
+import com.lunch.dto.ImportResult;
+import com.lunch.model.User;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * BulkTransferService 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BulkTransferService 單元測試")
+class BulkTransferServiceTest {
+
+    @Mock
+    private Firestore firestore;
+
+    @Mock
+    private CollectionReference collection;
+
+    @Mock
+    private BulkWriter bulkWriter;
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private RestaurantIndexCache restaurantIndexCache;
+
+    @Mock
+    private ActiveUserCounter activeUserCounter;
+
+    private BulkTransferService service;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(firestore.collection(anyString())).thenReturn(collection);
+        lenient().when(firestore.bulkWriter()).thenReturn(bulkWriter);
+        lenient().when(collection.document(anyString())).thenAnswer(invocation -> mock(DocumentReference.class));
+        lenient().when(bulkWriter.set(any(DocumentReference.class), any(Object.class)))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+        lenient().when(bulkWriter.create(any(DocumentReference.class), any(Object.class)))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+        lenient().when(bulkWriter.set(any(DocumentReference.class), anyMap()))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+        lenient().when(bulkWriter.create(any(DocumentReference.class), anyMap()))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+        service = new BulkTransferService(firestore, new ObjectMapper(), userCache, restaurantIndexCache,
+                activeUserCounter, 500, 2);
+    }
+
+    private static ByteArrayInputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("逐行匯入 NDJSON，時間欄位轉回 Timestamp，缺少 ID 的列略過")
+    @SuppressWarnings("unchecked")
+    void testImport_Ndjson() throws Exception {
+        String ndjson = """
+                {"id":"r1","userId":"U1","name":"拉麵","createdAt":"2024-01-02T03:04:05Z","visitCount":3}
+                {"name":"沒有 ID"}
+                {"id":"r2","userId":"U1","name":"咖哩"}
+                """;
+
+        ImportResult result = service.importNdjson(BulkTransferService.USER_RESTAURANTS, input(ndjson));
+
+        assertEquals(2, result.getWritten());
+        assertEquals(0, result.getFailed());
+        assertEquals(1, result.getSkipped());
+
+        ArgumentCaptor<Object> documents = ArgumentCaptor.forClass(Object.class);
+        verify(bulkWriter, times(2)).set(any(DocumentReference.class), documents.capture());
+        Map<String, Object> first = (Map<String, Object>) documents.getAllValues().get(0);
+        assertEquals(Timestamp.parseTimestamp("2024-01-02T03:04:05Z"), first.get("createdAt"));
+        verify(bulkWriter).close();
+        verifyNoInteractions(activeUserCounter);
+    }
+
+    @Test
+    @DisplayName("接受舊版 users.json 陣列格式，匯入後清空快取並校正計數器")
+    void testImport_LegacyUsersArray() throws Exception {
+        ImportResult result = service.importNdjson(BulkTransferService.USERS,
+                input("[\"U1\", {\"userId\": \"U2\", \"registeredAt\": \"2024-01-02T12:00:00\"}, 42]"));
+
+        assertEquals(2, result.getWritten());
+        assertEquals(1, result.getSkipped());
+
+        ArgumentCaptor<Object> documents = ArgumentCaptor.forClass(Object.class);
+        verify(bulkWriter, times(2)).create(any(DocumentReference.class), documents.capture());
+        verify(bulkWriter, never()).set(any(DocumentReference.class), any(Object.class));
+        assertEquals("U1", ((User) documents.getAllValues().get(0)).getUserId());
+        assertInstanceOf(Timestamp.class, ((Map<?, ?>) documents.getAllValues().get(1)).get("registeredAt"));
+        verify(userCache).invalidateAll();
+        verify(activeUserCounter).reconcile();
+    }
+
+    @Test
+    @DisplayName("舊版 users.json 匯入到既有集合時不覆寫已存在的用戶，計入略過數")
+    void testImport_LegacyUsersKeepExistingUsers() throws Exception {
+        DocumentReference existing = mock(DocumentReference.class);
+        when(collection.document("U1")).thenReturn(existing);
+        when(bulkWriter.create(eq(existing), any(Object.class))).thenReturn(ApiFutures.immediateFailedFuture(
+                new AlreadyExistsException(new RuntimeException("exists"), GrpcStatusCode.of(Status.Code.ALREADY_EXISTS), false)));
+
+        ImportResult result = service.importNdjson(BulkTransferService.USERS, input("[\"U1\", \"U2\"]"));
+
+        assertEquals(1, result.getWritten());
+        assertEquals(0, result.getFailed());
+        assertEquals(1, result.getSkipped());
+        // 既有用戶的偏好與通知設定沒有被預設值覆寫
+        verify(bulkWriter, never()).set(eq(existing), any(Object.class));
+        verify(bulkWriter, never()).set(eq(existing), any(Object.class), any(SetOptions.class));
+        verify(bulkWriter, never()).update(eq(existing), anyMap());
+    }
+
+    @Test
+    @DisplayName("匯入有效餐廳時在同一個 BulkWriter 中以 create 寫入名稱唯一鍵，已刪除的餐廳不寫")
+    @SuppressWarnings("unchecked")
+    void testImport_WritesRestaurantNameKeys() throws Exception {
+        CollectionReference names = mock(CollectionReference.class);
+        DocumentReference nameKey = mock(DocumentReference.class);
+        when(firestore.collection(RestaurantNameKey.COLLECTION_NAME)).thenReturn(names);
+        when(names.document(RestaurantNameKey.documentId("U1", "拉麵"))).thenReturn(nameKey);
+
+        ImportResult result = service.importNdjson(BulkTransferService.USER_RESTAURANTS, input("""
+                {"id":"r1","userId":"U1","name":"拉麵","active":true}
+                {"id":"r2","userId":"U1","name":"咖哩","active":false}
+                """));
+
+        assertEquals(2, result.getWritten());
+        assertEquals(0, result.getFailed());
+        ArgumentCaptor<Map<String, Object>> key = ArgumentCaptor.forClass(Map.class);
+        verify(bulkWriter).create(eq(nameKey), key.capture());
+        assertEquals(Map.of("userId", "U1", "name", "拉麵", "restaurantId", "r1"), key.getValue());
+        verify(bulkWriter, never()).set(eq(nameKey), anyMap());
+        verify(names, times(1)).document(anyString());
+        verify(bulkWriter, times(1)).close();
+        verify(restaurantIndexCache).invalidateAll();
+        verify(userCache, never()).invalidateAll();
+    }
+
+    @Test
+    @DisplayName("匯入餐廳時名稱唯一鍵已被其他餐廳佔用，不覆寫並計入衝突數")
+    void testImport_NameKeyConflictIsCounted() throws Exception {
+        CollectionReference names = mock(CollectionReference.class);
+        DocumentReference taken = mock(DocumentReference.class);
+        when(firestore.collection(RestaurantNameKey.COLLECTION_NAME)).thenReturn(names);
+        when(names.document(anyString())).thenAnswer(invocation -> mock(DocumentReference.class));
+        when(names.document(RestaurantNameKey.documentId("U1", "拉麵"))).thenReturn(taken);
+        when(bulkWriter.create(eq(taken), anyMap())).thenReturn(ApiFutures.immediateFailedFuture(
+                new AlreadyExistsException(new RuntimeException("exists"), GrpcStatusCode.of(Status.Code.ALREADY_EXISTS), false)));
+
+        ImportResult result = service.importNdjson(BulkTransferService.USER_RESTAURANTS, input("""
+                {"id":"r1","userId":"U1","name":"拉麵","active":true}
+                {"id":"r2","userId":"U1","name":"咖哩","active":true}
+                """));
+
+        assertEquals(2, result.getWritten());
+        assertEquals(0, result.getFailed());
+        assertEquals(1, result.getConflicts());
+        verify(bulkWriter, times(2)).create(any(DocumentReference.class), anyMap());
+        verify(bulkWriter, never()).set(any(DocumentReference.class), anyMap());
+    }
+
+    @Test
+    @DisplayName("補建名稱唯一鍵：每間有效餐廳 create 一份，已存在的唯一鍵計入略過數")
+    void testBackfillRestaurantNameKeys() throws Exception {
+        Query active = mock(Query.class);
+        Query ordered = mock(Query.class);
+        Query firstPage = mock(Query.class);
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        QueryDocumentSnapshot ramen = restaurantDocument("r1", "U1", "拉麵");
+        QueryDocumentSnapshot curry = restaurantDocument("r2", "U1", "咖哩");
+        CollectionReference names = mock(CollectionReference.class);
+        DocumentReference existing = mock(DocumentReference.class);
+
+        when(collection.whereEqualTo("active", true)).thenReturn(active);
+        when(active.orderBy(any(FieldPath.class))).thenReturn(ordered);
+        when(ordered.limit(500)).thenReturn(firstPage);
+        when(firstPage.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+        when(snapshot.getDocuments()).thenReturn(List.of(ramen, curry));
+        when(firestore.collection(RestaurantNameKey.COLLECTION_NAME)).thenReturn(names);
+        when(names.document(anyString())).thenAnswer(invocation -> mock(DocumentReference.class));
+        when(names.document(RestaurantNameKey.documentId("U1", "咖哩"))).thenReturn(existing);
+        when(bulkWriter.create(eq(existing), anyMap())).thenReturn(ApiFutures.immediateFailedFuture(
+                new AlreadyExistsException(new RuntimeException("exists"), GrpcStatusCode.of(Status.Code.ALREADY_EXISTS), false)));
+
+        ImportResult result = service.backfillRestaurantNameKeys();
+
+        assertEquals(1, result.getWritten());
+        assertEquals(0, result.getFailed());
+        assertEquals(1, result.getSkipped());
+        verify(bulkWriter, times(2)).create(any(DocumentReference.class), anyMap());
+        verify(bulkWriter, never()).set(any(DocumentReference.class), anyMap());
+        verify(bulkWriter).close();
+        verify(restaurantIndexCache).invalidateAll();
+    }
+
+    private static QueryDocumentSnapshot restaurantDocument(String id, String userId, String name) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        when(document.getId()).thenReturn(id);
+        when(document.getString("userId")).thenReturn(userId);
+        when(document.getString("name")).thenReturn(name);
+        return document;
+    }
+
+    @Test
+    @DisplayName("寫入失敗計入 failed 且釋放在途許可")
+    void testImport_CountsFailures() throws Exception {
+        when(bulkWriter.set(any(DocumentReference.class), any(Object.class)))
+                .thenReturn(ApiFutures.immediateFailedFuture(new IllegalStateException("boom")));
+
+        ImportResult result = service.importNdjson(BulkTransferService.USER_RESTAURANTS,
+                input("{\"id\":\"r1\"}\n{\"id\":\"r2\"}\n{\"id\":\"r3\"}\n"));
+
+        assertEquals(0, result.getWritten());
+        assertEquals(3, result.getFailed());
+    }
+
+    @Test
+    @DisplayName("匯出為一行一份文件，Timestamp 以 ISO-8601 字串輸出")
+    void testExport_WritesNdjson() throws Exception {
+        Query ordered = mock(Query.class);
+        Query firstPage = mock(Query.class);
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("userId", "U1");
+        data.put("registeredAt", Timestamp.parseTimestamp("2024-01-02T03:04:05Z"));
+        data.put("preferences", Map.of("restaurants", List.of("拉麵")));
+
+        when(collection.orderBy(any(FieldPath.class))).thenReturn(ordered);
+        when(ordered.limit(500)).thenReturn(firstPage);
+        when(firstPage.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+        when(snapshot.getDocuments()).thenReturn(List.of(document));
+        when(document.getId()).thenReturn("U1");
+        when(document.getData()).thenReturn(data);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = service.exportNdjson(BulkTransferService.USERS, out);
+
+        assertEquals(1, count);
+        assertEquals("{\"userId\":\"U1\",\"registeredAt\":\"2024-01-02T03:04:05Z\","
+                        + "\"preferences\":{\"restaurants\":[\"拉麵\"]}}\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("不支援的集合拋出 IllegalArgumentException")
+    void testImport_RejectsUnknownCollection() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.importNdjson("secrets", input("{}")));
+    }
+}
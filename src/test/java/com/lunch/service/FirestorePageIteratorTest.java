@@ -0,0 +1,112 @@
+package com.lunch.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.lunch.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * FirestorePageIterator 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FirestorePageIterator 單元測試")
+class FirestorePageIteratorTest {
+
+    @Mock
+    private Query query;
+
+    @Mock
+    private Query ordered;
+
+    private static QueryDocumentSnapshot document(String userId) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        lenient().when(document.toObject(User.class)).thenReturn(User.builder().userId(userId).build());
+        return document;
+    }
+
+    private static Query page(List<QueryDocumentSnapshot> documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(documents);
+        Query page = mock(Query.class);
+        when(page.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+        return page;
+    }
+
+    private static List<String> drain(FirestorePageIterator<User> iterator) {
+        List<String> ids = new ArrayList<>();
+        iterator.forEachRemaining(user -> ids.add(user.getUserId()));
+        return ids;
+    }
+
+    @Test
+    @DisplayName("以上一頁最後一筆作為游標逐頁讀取，未滿一頁即結束")
+    void testIterate_FollowsCursorAcrossPages() {
+        QueryDocumentSnapshot a = document("A");
+        QueryDocumentSnapshot b = document("B");
+        QueryDocumentSnapshot c = document("C");
+        Query first = page(List.of(a, b));
+        Query second = page(List.of(c));
+        Query afterB = mock(Query.class);
+
+        when(query.orderBy(any(FieldPath.class))).thenReturn(ordered);
+        when(ordered.limit(2)).thenReturn(first);
+        when(ordered.startAfter(b)).thenReturn(afterB);
+        when(afterB.limit(2)).thenReturn(second);
+
+        assertEquals(List.of("A", "B", "C"), drain(new FirestorePageIterator<>(query, 2, document -> document.toObject(User.class))));
+        verify(ordered, never()).startAfter(c);
+    }
+
+    @Test
+    @DisplayName("讀取失敗時以同一個游標重試，仍失敗則拋出例外而不是當作已讀完")
+    void testIterate_ThrowsAfterRetryingFailedPage() {
+        QueryDocumentSnapshot a = document("A");
+        QueryDocumentSnapshot b = document("B");
+        Query first = page(List.of(a, b));
+        Query afterB = mock(Query.class);
+
+        when(query.orderBy(any(FieldPath.class))).thenReturn(ordered);
+        when(ordered.limit(2)).thenReturn(first);
+        when(ordered.startAfter(b)).thenReturn(afterB);
+        when(afterB.limit(2)).thenReturn(afterB);
+        when(afterB.get()).thenReturn(ApiFutures.immediateFailedFuture(new ExecutionException("boom", null)));
+
+        FirestorePageIterator<User> iterator = new FirestorePageIterator<>(query, 2, document -> document.toObject(User.class));
+        List<String> ids = new ArrayList<>();
+
+        assertThrows(RuntimeException.class, () -> iterator.forEachRemaining(user -> ids.add(user.getUserId())));
+        assertEquals(List.of("A", "B"), ids);
+        verify(afterB, times(FirestorePageIterator.MAX_PAGE_ATTEMPTS)).get();
+    }
+
+    @Test
+    @DisplayName("重試成功時繼續讀取")
+    void testIterate_RecoversOnRetry() {
+        QueryDocumentSnapshot a = document("A");
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(List.of(a));
+        Query flaky = mock(Query.class);
+        when(query.orderBy(any(FieldPath.class))).thenReturn(ordered);
+        when(ordered.limit(500)).thenReturn(flaky);
+        when(flaky.get())
+                .thenReturn(ApiFutures.immediateFailedFuture(new ExecutionException("boom", null)))
+                .thenReturn(ApiFutures.immediateFuture(snapshot));
+
+        assertEquals(List.of("A"), drain(new FirestorePageIterator<>(query, 500, document -> document.toObject(User.class))));
+    }
+}
@@ -0,0 +1,283 @@
+package com.lunch.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.AlreadyExistsException;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldMask;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Transaction;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import com.lunch.dto.AddRestaurantRequest;
+import com.lunch.dto.RecordVisitsRequest;
+import com.lunch.dto.RestaurantResponse;
+import com.lunch.dto.UpdateRestaurantRequest;
+import com.lunch.dto.VisitBatchResult;
+import com.lunch.exception.DuplicateRestaurantException;
+import com.lunch.exception.RestaurantNotFoundException;
+import com.lunch.model.UserRestaurant;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * FirestoreUserRestaurantService 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FirestoreUserRestaurantService 單元測試")
+class FirestoreUserRestaurantServiceTest {
+
+    @Mock
+    private Firestore firestore;
+
+    @Mock
+    private RestaurantIndexCache restaurantIndexCache;
+
+    @Mock
+    private RecommendationScorer recommendationScorer;
+
+    @Mock
+    private CollectionReference restaurants;
+
+    @Mock
+    private DocumentReference r1;
+
+    @Mock
+    private DocumentReference r2;
+
+    @Mock
+    private CollectionReference names;
+
+    @Mock
+    private DocumentReference oldNameKey;
+
+    @Mock
+    private DocumentReference newNameKey;
+
+    @Mock
+    private WriteBatch batch;
+
+    @Mock
+    private Transaction transaction;
+
+    @InjectMocks
+    private FirestoreUserRestaurantService restaurantService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(firestore.collection("user_restaurants")).thenReturn(restaurants);
+        lenient().when(restaurants.document("R1")).thenReturn(r1);
+        lenient().when(restaurants.document("R2")).thenReturn(r2);
+        lenient().when(r1.getId()).thenReturn("R1");
+        lenient().when(firestore.collection(RestaurantNameKey.COLLECTION_NAME)).thenReturn(names);
+        lenient().when(names.document(RestaurantNameKey.documentId("U1", "一蘭"))).thenReturn(oldNameKey);
+        lenient().when(names.document(RestaurantNameKey.documentId("U1", "一風堂"))).thenReturn(newNameKey);
+    }
+
+    private static DocumentSnapshot restaurantSnapshot(String name) {
+        DocumentSnapshot snapshot = snapshot("U1");
+        lenient().when(snapshot.toObject(UserRestaurant.class)).thenReturn(UserRestaurant.builder()
+                .id("R1").userId("U1").name(name).active(true).build());
+        lenient().when(snapshot.getString("name")).thenReturn(name);
+        lenient().when(snapshot.getBoolean("active")).thenReturn(true);
+        return snapshot;
+    }
+
+    private static AddRestaurantRequest addRequest(String name) {
+        AddRestaurantRequest request = new AddRestaurantRequest();
+        request.setName(name);
+        return request;
+    }
+
+    private static DocumentSnapshot snapshot(String userId) {
+        DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+        lenient().when(snapshot.exists()).thenReturn(userId != null);
+        lenient().when(snapshot.getString("userId")).thenReturn(userId);
+        return snapshot;
+    }
+
+    @Test
+    @DisplayName("新增餐廳與名稱唯一鍵在同一個 batch 寫入，不先查詢同名餐廳")
+    void testAddRestaurant_CreatesNameKeyInSameBatch() {
+        when(restaurants.document(anyString())).thenReturn(r1);
+        when(firestore.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of(mock(WriteResult.class))));
+
+        RestaurantResponse added = restaurantService.addRestaurant("U1", addRequest(" 一蘭 "));
+
+        assertEquals("一蘭", added.getName());
+        verify(batch).create(eq(oldNameKey), eq(Map.of("userId", "U1", "name", "一蘭", "restaurantId", added.getId())));
+        verify(batch).create(eq(r1), any(UserRestaurant.class));
+        verify(batch, times(1)).commit();
+        verify(restaurants, never()).whereEqualTo(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("名稱唯一鍵已存在（ALREADY_EXISTS）時拋出 DuplicateRestaurantException")
+    void testAddRestaurant_DuplicateNameThrows() {
+        AlreadyExistsException alreadyExists = new AlreadyExistsException(
+                new RuntimeException("exists"), GrpcStatusCode.of(Status.Code.ALREADY_EXISTS), false);
+        when(restaurants.document(anyString())).thenReturn(r1);
+        when(firestore.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFailedFuture(alreadyExists));
+
+        assertThrows(DuplicateRestaurantException.class, () -> restaurantService.addRestaurant("U1", addRequest("一蘭")));
+
+        verify(restaurantIndexCache).invalidate("U1");
+    }
+
+    private static DocumentSnapshot nameKeySnapshot(String restaurantId) {
+        DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+        lenient().when(snapshot.exists()).thenReturn(restaurantId != null);
+        lenient().when(snapshot.getString("restaurantId")).thenReturn(restaurantId);
+        return snapshot;
+    }
+
+    private void runTransactionsInline() {
+        when(firestore.runTransaction(any())).thenAnswer(invocation -> ApiFutures.immediateFuture(
+                invocation.<Transaction.Function<?>>getArgument(0).updateCallback(transaction)));
+    }
+
+    @Test
+    @DisplayName("改名時在 transaction 中建立新名稱的唯一鍵並釋放舊的")
+    void testUpdateRestaurant_RenameMovesNameKey() {
+        DocumentSnapshot current = restaurantSnapshot("一蘭");
+        when(r1.get()).thenReturn(ApiFutures.immediateFuture(current));
+        DocumentSnapshot key = nameKeySnapshot("R1");
+        when(transaction.getAll(r1, oldNameKey)).thenReturn(ApiFutures.immediateFuture(List.of(current, key)));
+        runTransactionsInline();
+        UpdateRestaurantRequest request = new UpdateRestaurantRequest();
+        request.setName("一風堂");
+
+        restaurantService.updateRestaurant("U1", "R1", request);
+
+        verify(transaction).create(eq(newNameKey), eq(Map.of("userId", "U1", "name", "一風堂", "restaurantId", "R1")));
+        verify(transaction).delete(oldNameKey);
+        verify(transaction).update(eq(r1), any(Map.class));
+        verify(r1, never()).update(any(Map.class));
+    }
+
+    @Test
+    @DisplayName("刪除餐廳時在同一個 transaction 釋放名稱唯一鍵")
+    void testDeleteRestaurant_ReleasesNameKey() {
+        DocumentSnapshot current = restaurantSnapshot("一蘭");
+        when(r1.get()).thenReturn(ApiFutures.immediateFuture(current));
+        DocumentSnapshot key = nameKeySnapshot("R1");
+        when(transaction.getAll(r1, oldNameKey)).thenReturn(ApiFutures.immediateFuture(List.of(current, key)));
+        runTransactionsInline();
+
+        restaurantService.deleteRestaurant("U1", "R1");
+
+        verify(transaction).update(eq(r1), eq("active"), eq(false), any(Object[].class));
+        verify(transaction).delete(oldNameKey);
+    }
+
+    @Test
+    @DisplayName("唯一鍵屬於另一間同名餐廳（舊資料）時，刪除或改名都不會釋放它")
+    void testDeleteAndRename_KeepNameKeyOwnedByAnotherRestaurant() {
+        DocumentSnapshot current = restaurantSnapshot("一蘭");
+        when(r1.get()).thenReturn(ApiFutures.immediateFuture(current));
+        DocumentSnapshot key = nameKeySnapshot("R2");
+        when(transaction.getAll(r1, oldNameKey)).thenReturn(ApiFutures.immediateFuture(List.of(current, key)));
+        runTransactionsInline();
+        UpdateRestaurantRequest request = new UpdateRestaurantRequest();
+        request.setName("一風堂");
+
+        restaurantService.updateRestaurant("U1", "R1", request);
+        restaurantService.deleteRestaurant("U1", "R1");
+
+        verify(transaction).create(eq(newNameKey), any(Map.class));
+        verify(transaction, never()).delete(oldNameKey);
+        verify(transaction).update(eq(r1), eq("active"), eq(false), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("索引中已有該餐廳時，以一次 increment 更新記錄造訪")
+    void testRecordVisit_SingleIncrementWhenIndexed() {
+        when(restaurantIndexCache.getIfPresent("U1")).thenReturn(RestaurantIndex.build(
+                List.of(RestaurantResponse.builder().id("R1").name("一蘭").build())));
+        when(r1.update(eq("visitCount"), any(), any(Object[].class)))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+
+        restaurantService.recordVisit("U1", "R1");
+
+        verify(r1, never()).get();
+        verify(r1).update(eq("visitCount"), eq(FieldValue.increment(1)), any(Object[].class));
+        verify(restaurantIndexCache).update(eq("U1"), any());
+        verify(restaurantIndexCache, never()).invalidate("U1");
+    }
+
+    @Test
+    @DisplayName("索引未載入時先確認擁有者，其他用戶的餐廳不會被寫入")
+    void testRecordVisit_ChecksOwnerWhenNotIndexed() {
+        DocumentSnapshot document = snapshot("U2");
+        when(r1.get()).thenReturn(ApiFutures.immediateFuture(document));
+
+        assertThrows(RestaurantNotFoundException.class, () -> restaurantService.recordVisit("U1", "R1"));
+
+        verify(r1, never()).update(anyString(), any(), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("批次造訪依餐廳合併為一筆寫入，在同一個 transaction 中讀取與寫入，略過不屬於用戶的餐廳")
+    void testRecordVisits_TalliesPerRestaurant() {
+        DocumentSnapshot owned = snapshot("U1");
+        DocumentSnapshot others = snapshot("U2");
+        when(firestore.runTransaction(any())).thenAnswer(invocation -> ApiFutures.immediateFuture(
+                invocation.<Transaction.Function<?>>getArgument(0).updateCallback(transaction)));
+        when(transaction.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+                .thenReturn(ApiFutures.immediateFuture(List.of(owned, others)));
+
+        LocalDateTime visitedAt = LocalDateTime.of(2024, 1, 15, 12, 0);
+        VisitBatchResult result = restaurantService.recordVisits("U1", List.of(
+                new RecordVisitsRequest.Visit("R1", visitedAt.minusDays(1)),
+                new RecordVisitsRequest.Visit("R2", visitedAt),
+                new RecordVisitsRequest.Visit("R1", visitedAt)));
+
+        assertEquals(2, result.getRecorded());
+        assertEquals(List.of("R2"), result.getNotFound());
+        verify(transaction).update(eq(r1), eq("visitCount"), eq(FieldValue.increment(2)),
+                eq("lastVisit"), any(Timestamp.class), eq("updatedAt"), any(Timestamp.class));
+        verify(transaction, never()).update(eq(r2), anyString(), any(), any(Object[].class));
+        verify(firestore, never()).batch();
+    }
+
+    @Test
+    @DisplayName("批次造訪不會以較舊的造訪時間覆蓋 transaction 中讀到的較新 lastVisit")
+    void testRecordVisits_KeepsNewerLastVisit() {
+        Timestamp newer = Timestamp.ofTimeSecondsAndNanos(
+                LocalDateTime.of(2024, 2, 1, 12, 0).atZone(java.time.ZoneId.systemDefault()).toEpochSecond(), 0);
+        DocumentSnapshot owned = snapshot("U1");
+        when(owned.getTimestamp("lastVisit")).thenReturn(newer);
+        when(firestore.runTransaction(any())).thenAnswer(invocation -> ApiFutures.immediateFuture(
+                invocation.<Transaction.Function<?>>getArgument(0).updateCallback(transaction)));
+        when(transaction.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+                .thenReturn(ApiFutures.immediateFuture(List.of(owned)));
+
+        restaurantService.recordVisits("U1", List.of(
+                new RecordVisitsRequest.Visit("R1", LocalDateTime.of(2024, 1, 15, 12, 0))));
+
+        verify(transaction).update(eq(r1), eq("visitCount"), eq(FieldValue.increment(1)),
+                eq("lastVisit"), eq(newer), eq("updatedAt"), any(Timestamp.class));
+    }
+}
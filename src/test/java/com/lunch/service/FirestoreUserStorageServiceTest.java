@@ -0,0 +1,203 @@
+package com.lunch.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.AlreadyExistsException;
+import com.google.api.gax.rpc.NotFoundException;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import com.lunch.model.User;
+import com.lunch.model.UserPreferences;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * FirestoreUserStorageService 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FirestoreUserStorageService 單元測試")
+class FirestoreUserStorageServiceTest {
+
+    @Mock
+    private Firestore firestore;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private UserActivityBuffer userActivityBuffer;
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private ActiveUserCounter activeUserCounter;
+
+    @Mock
+    private UserReplica userReplica;
+
+    @Mock
+    private CollectionReference users;
+
+    @Mock
+    private DocumentReference document;
+
+    @Mock
+    private WriteBatch batch;
+
+    @InjectMocks
+    private FirestoreUserStorageService userStorageService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(firestore.collection("users")).thenReturn(users);
+        lenient().when(users.document("U1")).thenReturn(document);
+    }
+
+    @Test
+    @DisplayName("新用戶以一次 create 完成註冊")
+    void testAddUser_CreatesInOneCommit() {
+        when(firestore.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of(mock(WriteResult.class))));
+        when(userCache.get("U1")).thenReturn(Optional.empty());
+
+        assertTrue(userStorageService.addUser("U1"));
+
+        verify(batch).create(eq(document), any(User.class));
+        verify(document, never()).get();
+        verify(eventPublisher).publishEvent(any(UserPreferencesChangedEvent.class));
+    }
+
+    @Test
+    @DisplayName("已存在的用戶（ALREADY_EXISTS）只記錄活躍時間")
+    void testAddUser_ExistingUserTouchesActivity() {
+        AlreadyExistsException alreadyExists = new AlreadyExistsException(
+                new RuntimeException("exists"), GrpcStatusCode.of(Status.Code.ALREADY_EXISTS), false);
+        when(firestore.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFailedFuture(alreadyExists));
+        when(userCache.get("U1")).thenReturn(Optional.empty());
+
+        assertFalse(userStorageService.addUser("U1"));
+
+        verify(userActivityBuffer).touch("U1");
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    @DisplayName("偏好變更只需一次條件寫入")
+    void testEnableNotification_SingleWrite() {
+        when(document.update("preferences.notificationEnabled", true))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+
+        assertTrue(userStorageService.enableNotification("U1"));
+
+        verify(document, never()).get();
+        verify(userCache).invalidate("U1");
+        verify(userReplica).markWritten(eq("U1"), any());
+        verify(eventPublisher).publishEvent(any(UserPreferencesChangedEvent.class));
+    }
+
+    @Test
+    @DisplayName("偏好變更事件帶出寫入後的用戶（由寫入前的快取套用變更），監聽者不需再讀取")
+    void testSetUserRestaurants_PublishesWrittenUser() {
+        User cached = User.builder()
+                .userId("U1")
+                .preferences(UserPreferences.builder().notificationTime("12:10").build())
+                .build();
+        when(userReplica.get("U1")).thenReturn(Optional.empty());
+        when(userCache.get("U1")).thenReturn(Optional.of(cached));
+        when(document.update(eq("preferences.restaurants"), any(), eq("lastActiveAt"), any()))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+
+        assertTrue(userStorageService.setUserRestaurants("U1", List.of("拉麵店")));
+
+        ArgumentCaptor<UserPreferencesChangedEvent> event = ArgumentCaptor.forClass(UserPreferencesChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(List.of("拉麵店"), event.getValue().getUser().getPreferences().getRestaurants());
+        assertEquals("12:10", event.getValue().getUser().getPreferences().getNotificationTime());
+        verify(document, never()).get();
+    }
+
+    @Test
+    @DisplayName("文件不存在（NOT_FOUND）時回傳 false")
+    void testDisableNotification_UserMissing() {
+        NotFoundException notFound = new NotFoundException(
+                new RuntimeException("no document"), GrpcStatusCode.of(Status.Code.NOT_FOUND), false);
+        when(document.update("preferences.notificationEnabled", false))
+                .thenReturn(ApiFutures.immediateFailedFuture(notFound));
+
+        assertFalse(userStorageService.disableNotification("U1"));
+
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    @DisplayName("通知查詢只讀取需要的欄位並轉為精簡的 User")
+    void testGetNotificationEnabledUsers_UsesProjection() {
+        Query filtered = mock(Query.class);
+        Query projected = mock(Query.class);
+        Query ordered = mock(Query.class);
+        Query page = mock(Query.class);
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        QueryDocumentSnapshot row = mock(QueryDocumentSnapshot.class);
+
+        when(users.whereEqualTo("active", true)).thenReturn(filtered);
+        when(filtered.whereEqualTo("preferences.notificationEnabled", true)).thenReturn(filtered);
+        when(filtered.select(any(String[].class))).thenReturn(projected);
+        when(projected.orderBy(any(FieldPath.class))).thenReturn(ordered);
+        when(ordered.limit(500)).thenReturn(page);
+        when(page.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+        when(snapshot.getDocuments()).thenReturn(List.of(row));
+        when(row.getId()).thenReturn("U1");
+        when(row.get("preferences.restaurants")).thenReturn(List.of("麥當勞"));
+        when(row.getString("preferences.notificationTime")).thenReturn("12:00");
+
+        List<User> result = userStorageService.getNotificationEnabledUsers();
+
+        assertEquals(1, result.size());
+        User user = result.get(0);
+        assertEquals("U1", user.getUserId());
+        assertEquals(List.of("麥當勞"), user.getPreferences().getRestaurants());
+        assertEquals(List.of(), user.getPreferences().getExcludeRestaurants());
+        assertEquals("12:00", user.getPreferences().getNotificationTime());
+        assertNull(user.getRegisteredAt());
+        verify(row, never()).toObject(User.class);
+    }
+
+    @Test
+    @DisplayName("replica 同步中時查詢與扇出直接讀取 replica")
+    void testReadsFromReadyReplica() {
+        User replicated = User.builder().userId("U1").build();
+        when(userReplica.get("U1")).thenReturn(Optional.of(replicated));
+        when(userReplica.isReady()).thenReturn(true);
+        when(userReplica.streamActiveUsers()).thenReturn(Stream.of(replicated));
+
+        assertSame(replicated, userStorageService.getUser("U1").orElseThrow());
+        assertEquals(List.of(replicated), userStorageService.getAllActiveUsers());
+        verifyNoInteractions(firestore, userCache);
+    }
+}
@@ -0,0 +1,79 @@
+package com.lunch.service;
+
+import com.linecorp.bot.client.LineMessagingClient;
+import com.linecorp.bot.client.exception.BadRequestException;
+import com.linecorp.bot.model.ReplyMessage;
+import com.linecorp.bot.model.error.ErrorResponse;
+import com.linecorp.bot.model.response.BotApiResponse;
+import com.lunch.notification.LinePushClient;
+import com.lunch.notification.NotificationDispatcher;
+import com.lunch.notification.NotificationOutbox;
+import com.lunch.scheduler.RecommendationPrecomputer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * LineMessagingService 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LineMessagingService 單元測試")
+class LineMessagingServiceTest {
+
+    @Mock
+    private LineMessagingClient lineMessagingClient;
+
+    @Mock
+    private LinePushClient linePushClient;
+
+    @Mock
+    private UserStorageService userStorageService;
+
+    @Mock
+    private RecommendationPrecomputer recommendationPrecomputer;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    @Mock
+    private NotificationOutbox notificationOutbox;
+
+    @InjectMocks
+    private LineMessagingService lineMessagingService;
+
+    @Test
+    @DisplayName("reply token 無效時改用 push")
+    void testReplyMessage_InvalidTokenFallsBackToPush() throws Exception {
+        when(lineMessagingClient.replyMessage(any(ReplyMessage.class))).thenReturn(CompletableFuture.failedFuture(
+                new BadRequestException("Invalid reply token",
+                        new ErrorResponse("req-1", "Invalid reply token", List.of()))));
+        when(linePushClient.push("U1", "午餐")).thenReturn(CompletableFuture.completedFuture(mock(BotApiResponse.class)));
+
+        assertTrue(lineMessagingService.replyMessage("token", "U1", "午餐"));
+
+        verify(linePushClient).push("U1", "午餐");
+    }
+
+    @Test
+    @DisplayName("回覆逾時可能已送達，不改用 push")
+    void testReplyMessage_TimeoutDoesNotPush() throws Exception {
+        when(lineMessagingClient.replyMessage(any(ReplyMessage.class)))
+                .thenReturn(CompletableFuture.failedFuture(new SocketTimeoutException("timeout")));
+
+        assertFalse(lineMessagingService.replyMessage("token", "U1", "午餐"));
+
+        verify(linePushClient, never()).push(anyString(), anyString());
+    }
+}
@@ -0,0 +1,83 @@
+package com.lunch.service;
+
+import com.lunch.dto.RestaurantResponse;
+import com.lunch.model.User;
+import com.lunch.model.UserPreferences;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * LunchService 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LunchService 單元測試")
+class LunchServiceTest {
+
+    @Mock
+    private UserRestaurantService userRestaurantService;
+
+    private final RecommendationScorer scorer = new RecommendationScorer(true, 0.25, 3, 0.05, 0.05);
+
+    private LunchService lunchService;
+
+    @BeforeEach
+    void setUp() {
+        lunchService = new LunchService(userRestaurantService, scorer);
+        lunchService.init();
+    }
+
+    private static User user(List<String> restaurants, List<String> excludeRestaurants) {
+        return User.builder()
+                .userId("U1")
+                .preferences(UserPreferences.builder()
+                        .restaurants(restaurants)
+                        .excludeRestaurants(excludeRestaurants)
+                        .build())
+                .build();
+    }
+
+    @Test
+    @DisplayName("偏好餐廳依用戶餐廳清單的評分與造訪紀錄加權")
+    void testSelectRestaurantForUser_WeightsByUserRestaurants() {
+        LocalDateTime now = LocalDateTime.now(ZoneId.of("Asia/Taipei"));
+        when(userRestaurantService.getRestaurantIndex("U1")).thenReturn(RestaurantIndex.build(List.of(
+                RestaurantResponse.builder().id("R1").name("拉麵店").rating(5).build(),
+                RestaurantResponse.builder().id("R2").name("便當店").lastVisit(now).build()),
+                scorer.weigher()));
+        User user = user(List.of("拉麵店", "便當店", "麵店"), List.of());
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            counts.merge(lunchService.selectRestaurantForUser(user), 1, Integer::sum);
+        }
+
+        // 權重 1.5 : 0.05 : 1（麵店不在清單中，使用中性權重）
+        assertEquals(5_000 * 1.5 / 2.55, counts.get("拉麵店"), 250);
+        assertEquals(5_000 * 1.0 / 2.55, counts.get("麵店"), 250);
+        assertTrue(counts.getOrDefault("便當店", 0) < 250);
+    }
+
+    @Test
+    @DisplayName("排除的餐廳不會被選到，無法取得餐廳清單時改為均勻推薦")
+    void testSelectRestaurantForUser_HonorsExcludesAndFallsBack() {
+        when(userRestaurantService.getRestaurantIndex("U1")).thenThrow(new RuntimeException("取得餐廳清單失敗"));
+        User user = user(List.of("拉麵店", "便當店"), List.of("便當店"));
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("拉麵店", lunchService.selectRestaurantForUser(user));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.lunch.service;
+
+import com.lunch.dto.RestaurantResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RecommendationScorer 單元測試
+ */
+@DisplayName("RecommendationScorer 單元測試")
+class RecommendationScorerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 15, 12, 0);
+
+    private final RecommendationScorer scorer = new RecommendationScorer(true, 0.25, 3, 0.05, 0.05);
+
+    @Test
+    @DisplayName("評分加成、近期造訪衰減與造訪疲勞")
+    void testWeight_CombinesFactors() {
+        RestaurantResponse fresh = RestaurantResponse.builder().build();
+        RestaurantResponse loved = RestaurantResponse.builder().rating(5).build();
+        RestaurantResponse visitedThreeDaysAgo = RestaurantResponse.builder().lastVisit(NOW.minusDays(3)).build();
+        RestaurantResponse regular = RestaurantResponse.builder().visitCount(20).build();
+
+        assertEquals(1.0, scorer.weight(fresh, NOW), 1e-9);
+        assertEquals(1.5, scorer.weight(loved, NOW), 1e-9);
+        assertEquals(0.5, scorer.weight(visitedThreeDaysAgo, NOW), 1e-9);
+        assertEquals(0.5, scorer.weight(regular, NOW), 1e-9);
+    }
+
+    @Test
+    @DisplayName("剛造訪的餐廳權重不低於下限，停用時不提供權重函式")
+    void testWeight_FloorsAtMinWeight() {
+        RestaurantResponse justVisited = RestaurantResponse.builder().lastVisit(NOW).rating(1).build();
+
+        assertEquals(0.05, scorer.weight(justVisited, NOW), 1e-9);
+        assertNull(new RecommendationScorer(false, 0.25, 3, 0.05, 0.05).weigher());
+    }
+}
@@ -0,0 +1,275 @@
+package com.lunch.service;
+
+import com.lunch.dto.RestaurantPage;
+import com.lunch.dto.RestaurantResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RestaurantIndex / RestaurantIndexCache 單元測試
+ */
+@DisplayName("RestaurantIndex 單元測試")
+class RestaurantIndexTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 15, 12, 0);
+
+    private static RestaurantResponse restaurant(String name, String category, List<String> tags,
+                                                 LocalDateTime lastVisit) {
+        return RestaurantResponse.builder()
+                .id(name)
+                .name(name)
+                .category(category)
+                .tags(tags)
+                .lastVisit(lastVisit)
+                .build();
+    }
+
+    private static RestaurantIndex sample() {
+        return RestaurantIndex.build(List.of(
+                restaurant("麥當勞", "速食", List.of("便宜", "快速"), NOW.minusDays(1)),
+                restaurant("拉麵店", "日式", List.of("湯麵"), NOW.minusDays(30)),
+                restaurant("壽司郎", "日式", List.of("便宜"), null),
+                restaurant("咖哩屋", "日式", List.of(), NOW.minusDays(3))));
+    }
+
+    private static List<String> names(List<RestaurantResponse> restaurants) {
+        return restaurants.stream().map(RestaurantResponse::getName).toList();
+    }
+
+    @Test
+    @DisplayName("分類與標籤篩選，結果依名稱排序")
+    void testMatching_FiltersByCategoryAndAnyTag() {
+        RestaurantIndex index = sample();
+
+        assertEquals(List.of("咖哩屋", "壽司郎", "拉麵店", "麥當勞"), names(index.list(index.matching(null, null))));
+        assertEquals(List.of("咖哩屋", "壽司郎", "拉麵店"), names(index.list(index.matching("日式", null))));
+        assertEquals(List.of("壽司郎", "拉麵店", "麥當勞"),
+                names(index.list(index.matching(null, List.of("便宜", "湯麵")))));
+        assertEquals(List.of("壽司郎"), names(index.list(index.matching("日式", List.of("便宜")))));
+        assertTrue(index.matching("義式", null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("排除最近造訪時只在從未造訪與 cutoff 之前造訪的候選中選擇")
+    void testCandidates_ExcludesRecentVisits() {
+        RestaurantIndex index = sample();
+        RestaurantIndex.Candidates candidates = index.candidates(null, null);
+        Random random = new Random(42);
+
+        int eligible = candidates.countVisitedBefore(NOW.minusDays(7));
+
+        assertEquals(4, candidates.size());
+        assertEquals(2, eligible);
+        for (int i = 0; i < 50; i++) {
+            String picked = candidates.pick(eligible, random).getName();
+            assertTrue(picked.equals("壽司郎") || picked.equals("拉麵店"), picked);
+        }
+    }
+
+    @Test
+    @DisplayName("隨機選擇在候選中均勻分布，相同條件重用候選陣列")
+    void testCandidates_PicksUniformly() {
+        RestaurantIndex index = sample();
+        RestaurantIndex.Candidates candidates = index.candidates("日式", List.of("便宜", "湯麵"));
+        Random random = new Random(42);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            counts.merge(candidates.pick(candidates.size(), random).getName(), 1, Integer::sum);
+        }
+
+        assertEquals(Set.of("壽司郎", "拉麵店"), counts.keySet());
+        counts.values().forEach(count -> assertEquals(5_000, count, 300));
+        assertSame(candidates, index.candidates("日式", List.of("湯麵", "便宜")));
+    }
+
+    @Test
+    @DisplayName("分頁從 cursor 之後繼續，並套用篩選")
+    void testPage_ResumesAfterCursor() {
+        RestaurantIndex index = sample();
+        BitSet japanese = index.matching("日式", null);
+
+        List<RestaurantResponse> first = index.page(japanese, null, 2);
+        assertEquals(List.of("咖哩屋", "壽司郎"), names(first));
+
+        RestaurantPage.Cursor cursor = RestaurantPage.decodeToken(RestaurantPage.encodeToken(first.get(1)));
+        assertEquals(List.of("拉麵店"), names(index.page(japanese, cursor, 2)));
+    }
+
+    @Test
+    @DisplayName("名稱依 Firestore 的 UTF-8 順序排序：emoji 開頭的名稱排在全形標點之後")
+    void testPage_OrdersNamesByCodePoint() {
+        RestaurantIndex index = RestaurantIndex.build(List.of(
+                restaurant("🍜拉麵", null, List.of(), null),
+                restaurant("（分店）咖哩", null, List.of(), null),
+                restaurant("Aカレー", null, List.of(), null)));
+
+        List<RestaurantResponse> first = index.page(index.matching(null, null), null, 2);
+        assertEquals(List.of("Aカレー", "（分店）咖哩"), names(first));
+
+        RestaurantPage.Cursor cursor = RestaurantPage.decodeToken(RestaurantPage.encodeToken(first.get(1)));
+        assertEquals(List.of("🍜拉麵"), names(index.page(index.matching(null, null), cursor, 2)));
+    }
+
+    @Test
+    @DisplayName("有推薦權重時依權重抽樣，修補索引只重新計算異動的餐廳")
+    void testWithRestaurant_RescoresOnlyChangedRestaurant() {
+        Map<String, Integer> scored = new HashMap<>();
+        RestaurantIndex index = RestaurantIndex.build(List.of(
+                restaurant("拉麵店", "日式", List.of(), null),
+                restaurant("壽司郎", "日式", List.of(), null)), (restaurant, day) -> {
+            scored.merge(restaurant.getName(), 1, Integer::sum);
+            return restaurant.getName().equals("拉麵店") ? 3 : 1;
+        });
+
+        RestaurantIndex.Candidates candidates = index.candidates(null, null);
+        Random random = new Random(42);
+        int ramen = 0;
+        for (int i = 0; i < 8_000; i++) {
+            if (candidates.pick(candidates.size(), random).getName().equals("拉麵店")) {
+                ramen++;
+            }
+        }
+        assertEquals(6_000, ramen, 300);
+
+        RestaurantIndex visited = index.withRestaurant(
+                restaurant("拉麵店", "日式", List.of(), NOW), (restaurant, day) -> 0.5);
+        assertEquals(Map.of("拉麵店", 1, "壽司郎", 1), scored);
+        assertEquals(0.5, visited.weightOfName("拉麵店", 1), 1e-9);
+        assertEquals(1.0, visited.weightOfName("壽司郎", 9), 1e-9);
+        assertEquals(9.0, visited.weightOfName("咖哩屋", 9), 1e-9);
+        assertEquals(1, visited.without("拉麵店").size());
+    }
+
+    @Test
+    @DisplayName("修補索引（造訪、改分類標籤、新增、改名）與重新建立的索引結果一致")
+    void testWithRestaurant_PatchMatchesRebuild() {
+        RestaurantIndex index = sample();
+        RestaurantResponse visited = restaurant("拉麵店", "拉麵", List.of("便宜"), NOW);
+        RestaurantResponse added = restaurant("大戶屋", "日式", List.of("定食"), null);
+        RestaurantResponse renamed = RestaurantResponse.builder()
+                .id("麥當勞").name("丹丹漢堡").category("速食").tags(List.of("便宜")).lastVisit(NOW.minusDays(1))
+                .build();
+
+        RestaurantIndex patched = index.withRestaurant(visited, null)
+                .withRestaurant(added, null)
+                .withRestaurant(renamed, null);
+        RestaurantIndex rebuilt = RestaurantIndex.build(List.of(
+                visited, added, renamed,
+                restaurant("壽司郎", "日式", List.of("便宜"), null),
+                restaurant("咖哩屋", "日式", List.of(), NOW.minusDays(3))));
+
+        for (String category : new String[]{null, "日式", "拉麵", "速食"}) {
+            for (List<String> tags : List.of(List.<String>of(), List.of("便宜"), List.of("湯麵", "定食"))) {
+                assertEquals(names(rebuilt.list(rebuilt.matching(category, tags))),
+                        names(patched.list(patched.matching(category, tags))));
+            }
+        }
+        RestaurantIndex.Candidates expected = rebuilt.candidates(null, null);
+        RestaurantIndex.Candidates actual = patched.candidates(null, null);
+        assertEquals(expected.countVisitedBefore(NOW.minusDays(2)), actual.countVisitedBefore(NOW.minusDays(2)));
+        assertEquals(expected.countVisitedBefore(NOW.plusDays(1)), actual.countVisitedBefore(NOW.plusDays(1)));
+        assertEquals(expected.pick(1, new Random()).getName(), actual.pick(1, new Random()).getName());
+
+        // 原索引不受影響
+        assertEquals(List.of("咖哩屋", "壽司郎", "拉麵店", "麥當勞"), names(index.list(index.matching(null, null))));
+        assertEquals(List.of("拉麵店"), names(index.list(index.matching(null, List.of("湯麵")))));
+    }
+
+    @Test
+    @DisplayName("依名稱抽樣：有權重時依同名餐廳權重加權，沒有權重時均勻")
+    void testPickByName_WeightsByRestaurantName() {
+        RestaurantIndex weighted = RestaurantIndex.build(List.of(
+                restaurant("拉麵店", "日式", List.of(), null),
+                restaurant("壽司郎", "日式", List.of(), null)),
+                (restaurant, day) -> restaurant.getName().equals("拉麵店") ? 3 : 0);
+        List<String> names = List.of("拉麵店", "壽司郎", "麵店");
+
+        Random random = new Random(42);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 8_000; i++) {
+            counts.merge(weighted.pickByName(names, 1, random), 1, Integer::sum);
+        }
+        assertEquals(6_000, counts.get("拉麵店"), 300);
+        assertEquals(2_000, counts.get("麵店"), 300);
+        assertNull(counts.get("壽司郎"));
+
+        Set<String> picked = new java.util.HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            picked.add(sample().pickByName(names, 1, random));
+        }
+        assertEquals(Set.copyOf(names), picked);
+    }
+
+    @Test
+    @DisplayName("日期改變時重新計算權重：近期造訪的衰減隨天數恢復，當天內不重複計算")
+    void testWeights_RecomputedWhenDayChanges() {
+        RecommendationScorer scorer = new RecommendationScorer(true, 0.25, 3, 0, 0.05);
+        Map<LocalDate, Integer> scored = new HashMap<>();
+        RecommendationScorer.Weigher weigher = scorer.weigher();
+        LocalDate today = LocalDate.now(ZoneId.of("Asia/Taipei"));
+        RestaurantIndex index = RestaurantIndex.build(List.of(
+                restaurant("拉麵店", "日式", List.of(), today.minusDays(1).atTime(12, 0))), (restaurant, day) -> {
+            scored.merge(day, 1, Integer::sum);
+            return weigher.weight(restaurant, day);
+        });
+
+        double now = index.weightOfName("拉麵店", 1);
+        double inThreeDays = index.weightOfName("拉麵店", 1, today.plusDays(3));
+        double again = index.weightOfName("拉麵店", 1, today.plusDays(3));
+
+        assertEquals(1 - Math.pow(0.5, 0.5 / 3), now, 1e-9);
+        assertEquals(1 - Math.pow(0.5, 3.5 / 3), inThreeDays, 1e-9);
+        assertEquals(inThreeDays, again, 1e-9);
+        assertEquals(Map.of(today, 1, today.plusDays(3), 1), scored);
+    }
+
+    @Test
+    @DisplayName("快取命中時不重新載入，invalidate / invalidateAll 後重新載入")
+    void testCache_ReloadsAfterInvalidate() {
+        RestaurantIndexCache cache = new RestaurantIndexCache(10, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("U1", () -> { loads.incrementAndGet(); return sample(); });
+        cache.get("U1", () -> { loads.incrementAndGet(); return sample(); });
+        assertEquals(1, loads.get());
+
+        cache.invalidate("U1");
+        cache.get("U1", () -> { loads.incrementAndGet(); return sample(); });
+        assertEquals(2, loads.get());
+
+        cache.invalidateAll();
+        assertNull(cache.getIfPresent("U1"));
+        cache.get("U1", () -> { loads.incrementAndGet(); return sample(); });
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    @DisplayName("載入期間發生 invalidate 時不快取載入結果")
+    void testCache_DropsLoadRacingInvalidate() {
+        RestaurantIndexCache cache = new RestaurantIndexCache(10, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("U1", () -> {
+            loads.incrementAndGet();
+            cache.invalidate("U1");
+            return sample();
+        });
+        cache.get("U1", () -> { loads.incrementAndGet(); return sample(); });
+
+        assertEquals(2, loads.get());
+    }
+}
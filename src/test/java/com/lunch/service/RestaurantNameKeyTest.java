@@ -0,0 +1,23 @@
+package com.lunch.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RestaurantNameKey 單元測試
+ */
+@DisplayName("RestaurantNameKey 單元測試")
+class RestaurantNameKeyTest {
+
+    @Test
+    @DisplayName("名稱正規化後相同的餐廳使用同一個唯一鍵")
+    void testDocumentId_SameForEquivalentNames() {
+        assertEquals("burger king", RestaurantNameKey.normalize("  Ｂｕｒｇｅｒ   KING "));
+        assertEquals(RestaurantNameKey.documentId("U1", "Burger King"),
+                RestaurantNameKey.documentId("U1", " burger  king"));
+        assertNotEquals(RestaurantNameKey.documentId("U1", "一蘭"), RestaurantNameKey.documentId("U2", "一蘭"));
+        assertFalse(RestaurantNameKey.documentId("U1", "A/B").contains("/"));
+    }
+}
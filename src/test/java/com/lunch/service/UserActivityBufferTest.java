@@ -0,0 +1,106 @@
+package com.lunch.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.NotFoundException;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * UserActivityBuffer 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UserActivityBuffer 單元測試")
+class UserActivityBufferTest {
+
+    @Mock
+    private Firestore firestore;
+
+    @Mock
+    private CollectionReference users;
+
+    @Mock
+    private DocumentReference document;
+
+    @Mock
+    private WriteBatch batch;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(firestore.collection("users")).thenReturn(users);
+        lenient().when(users.document(anyString())).thenReturn(document);
+        lenient().when(firestore.batch()).thenReturn(batch);
+        lenient().when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+    }
+
+    @Test
+    @DisplayName("同一用戶的多次活動只寫回一次，並以單一 batch 提交")
+    void testFlush_CoalescesPerUser() {
+        UserActivityBuffer buffer = new UserActivityBuffer(firestore, 100);
+
+        buffer.touch("U1");
+        buffer.touch("U1");
+        buffer.touch("U2");
+
+        assertEquals(2, buffer.flush());
+        verify(batch, times(2)).update(eq(document), eq("lastActiveAt"), any(Timestamp.class));
+        verify(batch, times(1)).commit();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.flush());
+    }
+
+    @Test
+    @DisplayName("累積到上限時立即寫回")
+    void testTouch_FlushesAtThreshold() {
+        UserActivityBuffer buffer = new UserActivityBuffer(firestore, 2);
+
+        buffer.touch("U1");
+        verify(batch, never()).commit();
+
+        buffer.touch("U2");
+        verify(batch, times(1)).commit();
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    @DisplayName("批次中有已刪除的用戶（NOT_FOUND）時逐筆寫回，其他用戶的活躍時間不會遺失")
+    void testFlush_RetriesIndividuallyOnNotFound() {
+        NotFoundException notFound = new NotFoundException(
+                new RuntimeException("no document"), GrpcStatusCode.of(Status.Code.NOT_FOUND), false);
+        DocumentReference deleted = mock(DocumentReference.class);
+        when(users.document("U2")).thenReturn(deleted);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFailedFuture(notFound));
+        when(document.update(eq("lastActiveAt"), any(Timestamp.class), any(Object[].class)))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+        when(deleted.update(eq("lastActiveAt"), any(Timestamp.class), any(Object[].class)))
+                .thenReturn(ApiFutures.immediateFailedFuture(notFound));
+        UserActivityBuffer buffer = new UserActivityBuffer(firestore, 100);
+
+        buffer.touch("U1");
+        buffer.touch("U2");
+        buffer.touch("U3");
+
+        assertEquals(2, buffer.flush());
+        verify(document, times(2)).update(eq("lastActiveAt"), any(Timestamp.class), any(Object[].class));
+        verify(deleted).update(eq("lastActiveAt"), any(Timestamp.class), any(Object[].class));
+    }
+}
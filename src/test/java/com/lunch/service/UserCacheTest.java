@@ -0,0 +1,81 @@
+package com.lunch.service;
+
+import com.lunch.model.User;
+import com.lunch.model.UserPreferences;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserCache 單元測試
+ */
+@DisplayName("UserCache 單元測試")
+class UserCacheTest {
+
+    private static User user(String userId) {
+        return User.builder().userId(userId).build();
+    }
+
+    @Test
+    @DisplayName("命中、未命中與失效")
+    void testGet_TracksHitsAndMisses() {
+        UserCache cache = new UserCache(10, 60_000);
+
+        assertTrue(cache.get("U1").isEmpty());
+        cache.put(user("U1"));
+        assertEquals("U1", cache.get("U1").orElseThrow().getUserId());
+
+        cache.invalidate("U1");
+        assertTrue(cache.get("U1").isEmpty());
+
+        UserCacheStats stats = cache.stats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+    }
+
+    @Test
+    @DisplayName("超過上限時淘汰最久未使用的用戶")
+    void testPut_EvictsLeastRecentlyUsed() {
+        UserCache cache = new UserCache(2, 60_000);
+
+        cache.put(user("U1"));
+        cache.put(user("U2"));
+        cache.get("U1");
+        cache.put(user("U3"));
+
+        assertTrue(cache.get("U1").isPresent());
+        assertTrue(cache.get("U2").isEmpty());
+        assertEquals(1, cache.stats().getEvictionCount());
+    }
+
+    @Test
+    @DisplayName("過期的用戶視為未命中")
+    void testGet_ExpiresAfterTtl() {
+        UserCache cache = new UserCache(10, 0);
+
+        cache.put(user("U1"));
+
+        assertTrue(cache.get("U1").isEmpty());
+        assertEquals(1, cache.stats().getEvictionCount());
+    }
+
+    @Test
+    @DisplayName("放入與取得的都是複本，修改不會影響快取內的用戶")
+    void testGet_ReturnsCopies() {
+        UserCache cache = new UserCache(10, 60_000);
+        User original = User.builder().userId("U1")
+                .preferences(UserPreferences.builder().restaurants(List.of("麥當勞")).build())
+                .build();
+
+        cache.put(original);
+        original.getPreferences().setRestaurants(List.of("拉麵店"));
+        cache.get("U1").orElseThrow().getPreferences().setNotificationEnabled(false);
+
+        UserPreferences cached = cache.get("U1").orElseThrow().getPreferences();
+        assertEquals(List.of("麥當勞"), cached.getRestaurants());
+        assertNotEquals(Boolean.FALSE, cached.getNotificationEnabled());
+    }
+}
@@ -0,0 +1,139 @@
+package com.lunch.service;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.EventListener;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.lunch.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * UserReplica 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UserReplica 單元測試")
+class UserReplicaTest {
+
+    @Mock
+    private Firestore firestore;
+
+    @Mock
+    private CollectionReference users;
+
+    @Mock
+    private Query activeUsers;
+
+    @Mock
+    private ListenerRegistration registration;
+
+    private UserReplica replica;
+    private EventListener<QuerySnapshot> listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(firestore.collection("users")).thenReturn(users);
+        when(users.whereEqualTo("active", true)).thenReturn(activeUsers);
+        ArgumentCaptor<EventListener<QuerySnapshot>> captor = ArgumentCaptor.forClass(EventListener.class);
+        when(activeUsers.addSnapshotListener(captor.capture())).thenReturn(registration);
+
+        replica = new UserReplica(firestore, true, 60_000);
+        replica.start();
+        listener = captor.getValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        replica.stop();
+    }
+
+    private static QueryDocumentSnapshot document(String userId) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        lenient().when(document.getId()).thenReturn(userId);
+        lenient().when(document.toObject(User.class)).thenReturn(User.builder().userId(userId).build());
+        return document;
+    }
+
+    private static DocumentChange change(DocumentChange.Type type, QueryDocumentSnapshot document) {
+        DocumentChange change = mock(DocumentChange.class);
+        when(change.getType()).thenReturn(type);
+        when(change.getDocument()).thenReturn(document);
+        return change;
+    }
+
+    private static QuerySnapshot snapshot(long readSeconds, List<QueryDocumentSnapshot> documents,
+                                          List<DocumentChange> changes) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        lenient().when(snapshot.getDocuments()).thenReturn(documents);
+        lenient().when(snapshot.getDocumentChanges()).thenReturn(changes);
+        when(snapshot.getReadTime()).thenReturn(Timestamp.ofTimeSecondsAndNanos(readSeconds, 0));
+        return snapshot;
+    }
+
+    @Test
+    @DisplayName("第一份 snapshot 後 ready，之後只套用增量變更")
+    void testAppliesInitialSnapshotThenChanges() {
+        assertFalse(replica.isReady());
+        assertTrue(replica.get("U1").isEmpty());
+
+        listener.onEvent(snapshot(100, List.of(document("U1"), document("U2")), List.of()), null);
+        assertTrue(replica.isReady());
+        assertEquals(2, replica.size());
+        assertEquals("U1", replica.get("U1").orElseThrow().getUserId());
+
+        listener.onEvent(snapshot(101, List.of(), List.of(
+                change(DocumentChange.Type.REMOVED, document("U1")),
+                change(DocumentChange.Type.ADDED, document("U3")))), null);
+        assertTrue(replica.get("U1").isEmpty());
+        assertTrue(replica.get("U3").isPresent());
+        assertEquals(0, replica.stats().getStalenessMillis());
+    }
+
+    @Test
+    @DisplayName("本機寫入後，直到收到更新的 snapshot 前不從 replica 讀取該用戶")
+    void testPendingWriteHidesUserUntilSnapshotCatchesUp() {
+        listener.onEvent(snapshot(100, List.of(document("U1")), List.of()), null);
+
+        replica.markWritten("U1", Timestamp.ofTimeSecondsAndNanos(105, 0));
+        assertTrue(replica.get("U1").isEmpty());
+
+        listener.onEvent(snapshot(104, List.of(), List.of()), null);
+        assertTrue(replica.get("U1").isEmpty());
+
+        listener.onEvent(snapshot(105, List.of(), List.of(
+                change(DocumentChange.Type.MODIFIED, document("U1")))), null);
+        assertTrue(replica.get("U1").isPresent());
+        assertEquals(0, replica.stats().getPendingWrites());
+    }
+
+    @Test
+    @DisplayName("監聽錯誤時標記為未同步並取消訂閱")
+    void testErrorMarksOutOfSync() {
+        listener.onEvent(snapshot(100, List.of(document("U1")), List.of()), null);
+
+        listener.onEvent(null, mock(FirestoreException.class));
+
+        assertFalse(replica.isReady());
+        assertTrue(replica.get("U1").isEmpty());
+        assertFalse(replica.stats().isReady());
+        verify(registration).remove();
+    }
+}
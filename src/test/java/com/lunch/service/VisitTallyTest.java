@@ -0,0 +1,49 @@
+package com.lunch.service;
+
+import com.google.cloud.Timestamp;
+import com.lunch.dto.RecordVisitsRequest;
+import com.lunch.dto.RestaurantResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * VisitTally 單元測試
+ */
+@DisplayName("VisitTally 單元測試")
+class VisitTallyTest {
+
+    private static final Timestamp NOW = Timestamp.parseTimestamp("2024-01-15T12:00:00Z");
+
+    private static RecordVisitsRequest.Visit visit(String restaurantId, LocalDateTime visitedAt) {
+        return RecordVisitsRequest.Visit.builder().restaurantId(restaurantId).visitedAt(visitedAt).build();
+    }
+
+    @Test
+    @DisplayName("造訪時間視為台北時間（不受伺服器時區影響），讀回 lastVisit 時一致")
+    void testOf_InterpretsVisitedAtAsTaipeiTime() {
+        LocalDateTime lunch = LocalDateTime.of(2024, 1, 15, 12, 30);
+
+        VisitTally tally = VisitTally.of(List.of(visit("R1", lunch)), NOW).iterator().next();
+
+        assertEquals(Timestamp.parseTimestamp("2024-01-15T04:30:00Z"), tally.latest());
+        assertEquals(lunch, RestaurantResponse.toLocalDateTime(tally.latest()));
+    }
+
+    @Test
+    @DisplayName("同一間餐廳彙總為一筆，未指定或晚於現在的造訪時間以現在取代")
+    void testOf_MergesPerRestaurant() {
+        List<VisitTally> tallies = List.copyOf(VisitTally.of(List.of(
+                visit("R1", LocalDateTime.of(2024, 1, 14, 12, 0)),
+                visit("R2", null),
+                visit("R1", LocalDateTime.of(2024, 1, 20, 12, 0))), NOW));
+
+        assertEquals(2, tallies.size());
+        assertEquals(new VisitTally("R1", 2, NOW), tallies.get(0));
+        assertEquals(new VisitTally("R2", 1, NOW), tallies.get(1));
+    }
+}
@@ -0,0 +1,114 @@
+package com.lunch.storage;
+
+import com.google.cloud.Timestamp;
+import com.lunch.model.User;
+import com.lunch.model.UserPreferences;
+import com.lunch.model.UserRestaurant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LocalStorageEngine 單元測試
+ */
+@DisplayName("LocalStorageEngine 單元測試")
+class LocalStorageEngineTest {
+
+    @TempDir
+    Path directory;
+
+    private LocalStorageEngine engine;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        engine = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    private LocalStorageEngine open() throws IOException {
+        LocalStorageEngine opened = new LocalStorageEngine(directory.toString(), false);
+        opened.open();
+        return opened;
+    }
+
+    private static User user(String userId) {
+        return User.builder()
+                .userId(userId)
+                .registeredAt(Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 0))
+                .preferences(UserPreferences.builder().build())
+                .build();
+    }
+
+    private static UserRestaurant restaurant(String id, String userId, String name) {
+        return UserRestaurant.builder().id(id).userId(userId).name(name).active(true).build();
+    }
+
+    @Test
+    @DisplayName("重新開啟後由 journal 重播出相同的資料與索引")
+    void testReopen_ReplaysJournal() throws IOException {
+        engine.createUser(user("U1"));
+        engine.createUser(user("U2"));
+        engine.updateUser("U2", u -> u.getPreferences().setNotificationEnabled(false));
+        engine.createRestaurant(restaurant("r1", "U1", "拉麵"));
+
+        // 模擬當機：不經過 close()（不寫 snapshot）直接重新開啟
+        LocalStorageEngine reopened = open();
+
+        assertEquals(Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 0),
+                reopened.getUser("U1").orElseThrow().getRegisteredAt());
+        assertEquals(2, reopened.getActiveUserCount());
+        assertEquals(List.of("U1"), reopened.findNotificationUsers().stream().map(User::getUserId).toList());
+        assertEquals("拉麵", reopened.findRestaurants("U1").get(0).getName());
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("snapshot 後清空 journal，結尾不完整的 journal 行會被捨棄")
+    void testSnapshot_TruncatesJournalAndIgnoresTornTail() throws IOException {
+        engine.createUser(user("U1"));
+        engine.snapshot();
+        assertEquals(0, Files.size(directory.resolve("journal.ndjson")));
+
+        engine.createUser(user("U2"));
+        engine.close();
+        Files.writeString(directory.resolve("journal.ndjson"), "{\"table\":\"users\",\"docu",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        engine = open();
+        assertTrue(engine.getUser("U1").isPresent());
+        assertTrue(engine.getUser("U2").isPresent());
+        assertEquals(0, Files.size(directory.resolve("journal.ndjson")));
+    }
+
+    @Test
+    @DisplayName("讀取回傳複本，新增同名的有效餐廳會被拒絕")
+    void testCopiesAndRestaurantNameUniqueness() {
+        engine.createUser(user("U1"));
+        engine.getUser("U1").orElseThrow().setActive(false);
+        assertEquals(1, engine.getActiveUserCount());
+        assertTrue(engine.getUser("U1").orElseThrow().getActive());
+
+        assertFalse(engine.createUser(user("U1")));
+        assertTrue(engine.createRestaurant(restaurant("r1", "U1", "拉麵")));
+        assertFalse(engine.createRestaurant(restaurant("r2", "U1", "拉麵")));
+        assertTrue(engine.createRestaurant(restaurant("r3", "U2", "拉麵")));
+
+        engine.updateRestaurant("r1", r -> r.setActive(false));
+        assertTrue(engine.createRestaurant(restaurant("r4", "U1", "拉麵")));
+    }
+}
@@ -0,0 +1,164 @@
+package com.lunch.storage;
+
+import com.lunch.dto.AddRestaurantRequest;
+import com.lunch.dto.RestaurantFields;
+import com.lunch.dto.RestaurantPage;
+import com.lunch.dto.RecordVisitsRequest;
+import com.lunch.dto.RestaurantResponse;
+import com.lunch.dto.VisitBatchResult;
+import com.lunch.dto.UpdateRestaurantRequest;
+import com.lunch.exception.DuplicateRestaurantException;
+import com.lunch.exception.InvalidQueryException;
+import com.lunch.exception.RestaurantNotFoundException;
+import com.lunch.service.RecommendationScorer;
+import com.lunch.service.RestaurantIndexCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LocalUserRestaurantService 單元測試
+ */
+@DisplayName("LocalUserRestaurantService 單元測試")
+class LocalUserRestaurantServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private LocalStorageEngine engine;
+    private LocalUserRestaurantService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        engine = new LocalStorageEngine(directory.toString(), false);
+        engine.open();
+        service = new LocalUserRestaurantService(engine, new RestaurantIndexCache(100, 60_000),
+                new RecommendationScorer(true, 0.25, 3, 0.05, 0.05));
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    private RestaurantResponse add(String userId, String name, String category, List<String> tags) {
+        AddRestaurantRequest request = new AddRestaurantRequest();
+        request.setName(name);
+        request.setCategory(category);
+        request.setTags(tags);
+        return service.addRestaurant(userId, request);
+    }
+
+    @Test
+    @DisplayName("依分類與標籤篩選，結果依名稱排序並排除已刪除的餐廳")
+    void testGetUserRestaurants_FiltersAndSorts() {
+        add("U1", "鼎泰豐", "中式", List.of("小籠包"));
+        RestaurantResponse deleted = add("U1", "吉野家", "日式", List.of("丼飯"));
+        add("U1", "一蘭", "日式", List.of("拉麵", "宵夜"));
+        add("U2", "一風堂", "日式", List.of("拉麵"));
+        service.deleteRestaurant("U1", deleted.getId());
+
+        assertEquals(List.of("一蘭", "鼎泰豐"),
+                service.getUserRestaurants("U1", null, null).stream().map(RestaurantResponse::getName).toList());
+        assertEquals(List.of("一蘭"),
+                service.getUserRestaurants("U1", "日式", List.of("宵夜", "丼飯")).stream()
+                        .map(RestaurantResponse::getName).toList());
+    }
+
+    @Test
+    @DisplayName("記錄造訪累加次數，其他用戶無法操作")
+    void testRecordVisit_IncrementsAndChecksOwner() {
+        RestaurantResponse added = add("U1", "一蘭", "日式", null);
+
+        service.recordVisit("U1", added.getId());
+        service.recordVisit("U1", added.getId());
+
+        RestaurantResponse visited = service.getRestaurant("U1", added.getId());
+        assertEquals(2, visited.getVisitCount());
+        assertNotNull(visited.getLastVisit());
+        assertThrows(RestaurantNotFoundException.class, () -> service.recordVisit("U2", added.getId()));
+        assertThrows(DuplicateRestaurantException.class, () -> add("U1", "一蘭", null, null));
+    }
+
+    @Test
+    @DisplayName("名稱不分大小寫與全半形不可重複，刪除或改名後釋放原名稱")
+    void testAddRestaurant_NameUniqueness() {
+        RestaurantResponse burger = add("U1", "Burger King", "速食", null);
+        RestaurantResponse ramen = add("U1", "一蘭", "日式", null);
+        add("U2", "Burger King", "速食", null);
+
+        assertThrows(DuplicateRestaurantException.class, () -> add("U1", " ｂｕｒｇｅｒ  king", null, null));
+
+        UpdateRestaurantRequest rename = new UpdateRestaurantRequest();
+        rename.setName("BURGER KING");
+        assertThrows(DuplicateRestaurantException.class, () -> service.updateRestaurant("U1", ramen.getId(), rename));
+        assertEquals("一蘭", service.getRestaurant("U1", ramen.getId()).getName());
+
+        rename.setName("一風堂");
+        service.updateRestaurant("U1", ramen.getId(), rename);
+        service.deleteRestaurant("U1", burger.getId());
+
+        assertEquals("一蘭", add("U1", "一蘭", null, null).getName());
+        assertEquals("Burger King", add("U1", "Burger King", null, null).getName());
+    }
+
+    @Test
+    @DisplayName("以 pageToken 依名稱順序分頁，只回傳選擇的欄位")
+    void testGetUserRestaurantPage_PagesByNameWithSelectedFields() {
+        for (String name : List.of("E", "C", "A", "D", "B")) {
+            add("U1", name, "中式", null);
+        }
+
+        List<String> names = new ArrayList<>();
+        String pageToken = null;
+        int pages = 0;
+        do {
+            RestaurantPage page = service.getUserRestaurantPage("U1", null, null, 2, pageToken,
+                    RestaurantFields.parse(List.of("name")));
+            for (Map<String, Object> restaurant : page.getRestaurants()) {
+                assertEquals(List.of("name"), List.copyOf(restaurant.keySet()));
+                names.add((String) restaurant.get("name"));
+            }
+            pageToken = page.getNextPageToken();
+            pages++;
+        } while (pageToken != null);
+
+        assertEquals(List.of("A", "B", "C", "D", "E"), names);
+        assertEquals(3, pages);
+        assertThrows(InvalidQueryException.class, () -> RestaurantFields.parse(List.of("password")));
+        assertThrows(InvalidQueryException.class, () -> service.getUserRestaurantPage("U1", null, null, 2,
+                "not-a-token", RestaurantFields.parse(null)));
+    }
+
+    @Test
+    @DisplayName("批次造訪累加各餐廳的次數，略過不屬於用戶的餐廳")
+    void testRecordVisits_AccumulatesPerRestaurant() {
+        RestaurantResponse mine = add("U1", "一蘭", "日式", null);
+        RestaurantResponse others = add("U2", "一風堂", "日式", null);
+        LocalDateTime visitedAt = LocalDateTime.now().minusDays(2).withNano(0);
+
+        VisitBatchResult result = service.recordVisits("U1", List.of(
+                new RecordVisitsRequest.Visit(mine.getId(), visitedAt.minusDays(3)),
+                new RecordVisitsRequest.Visit(mine.getId(), visitedAt),
+                new RecordVisitsRequest.Visit(others.getId(), null)));
+
+        assertEquals(2, result.getRecorded());
+        assertEquals(List.of(others.getId()), result.getNotFound());
+
+        RestaurantResponse visited = service.getRestaurant("U1", mine.getId());
+        assertEquals(2, visited.getVisitCount());
+        assertEquals(visitedAt, visited.getLastVisit());
+        assertEquals(0, service.getRestaurant("U2", others.getId()).getVisitCount());
+    }
+}
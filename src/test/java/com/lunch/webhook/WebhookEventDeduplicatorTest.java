@@ -0,0 +1,58 @@
+package com.lunch.webhook;
+
+import com.google.cloud.firestore.Firestore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * WebhookEventDeduplicator 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WebhookEventDeduplicator 單元測試")
+class WebhookEventDeduplicatorTest {
+
+    @Mock
+    private Firestore firestore;
+
+    @Test
+    @DisplayName("同一個 webhookEventId 第二次視為重送")
+    void testIsDuplicate_DetectsRedelivery() {
+        WebhookEventDeduplicator deduplicator = new WebhookEventDeduplicator(firestore, 100, 60_000, false);
+
+        assertFalse(deduplicator.isDuplicate("E1"));
+        assertTrue(deduplicator.isDuplicate("E1"));
+        assertFalse(deduplicator.isDuplicate("E2"));
+        assertFalse(deduplicator.isDuplicate(null));
+        assertFalse(deduplicator.isDuplicate(null));
+        verifyNoInteractions(firestore);
+    }
+
+    @Test
+    @DisplayName("超過上限時淘汰最舊的事件 ID")
+    void testIsDuplicate_EvictsEldestWhenFull() {
+        WebhookEventDeduplicator deduplicator = new WebhookEventDeduplicator(firestore, 2, 60_000, false);
+
+        deduplicator.isDuplicate("E1");
+        deduplicator.isDuplicate("E2");
+        deduplicator.isDuplicate("E3");
+
+        assertTrue(deduplicator.isDuplicate("E3"));
+        assertFalse(deduplicator.isDuplicate("E1"));
+    }
+
+    @Test
+    @DisplayName("過期的事件 ID 不再視為重送")
+    void testIsDuplicate_ExpiresAfterTtl() throws Exception {
+        WebhookEventDeduplicator deduplicator = new WebhookEventDeduplicator(firestore, 100, 1, false);
+
+        assertFalse(deduplicator.isDuplicate("E1"));
+        Thread.sleep(5);
+        assertFalse(deduplicator.isDuplicate("E1"));
+    }
+}
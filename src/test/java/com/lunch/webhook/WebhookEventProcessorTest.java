@@ -0,0 +1,73 @@
+package com.lunch.webhook;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lunch.service.LineMessagingService;
+import com.lunch.service.LunchService;
+import com.lunch.service.UserStorageService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebhookEventProcessor 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WebhookEventProcessor 單元測試")
+class WebhookEventProcessorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private UserStorageService userStorageService;
+
+    @Mock
+    private LineMessagingService lineMessagingService;
+
+    @Mock
+    private LunchService lunchService;
+
+    @Mock
+    private WebhookEventDeduplicator webhookEventDeduplicator;
+
+    @InjectMocks
+    private WebhookEventProcessor processor;
+
+    private JsonNode textEvent(String text, long timestamp) throws Exception {
+        return objectMapper.readTree("""
+                {"type":"message","replyToken":"token-1","timestamp":%d,
+                 "source":{"userId":"U1"},"message":{"type":"text","text":"%s"}}
+                """.formatted(timestamp, text));
+    }
+
+    @Test
+    @DisplayName("指令回應使用事件的 reply token")
+    void testProcess_RepliesWithReplyToken() throws Exception {
+        when(lunchService.getAllRestaurants()).thenReturn(List.of("麥當勞"));
+
+        processor.process(textEvent("查看餐廳", System.currentTimeMillis()));
+
+        verify(lineMessagingService).replyMessage(eq("token-1"), eq("U1"), anyString());
+        verify(lineMessagingService, never()).sendMessageToUser(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("事件延遲過久時不使用已過期的 reply token")
+    void testProcess_SkipsExpiredReplyToken() throws Exception {
+        when(lunchService.getAllRestaurants()).thenReturn(List.of("麥當勞"));
+
+        processor.process(textEvent("查看餐廳", System.currentTimeMillis() - 120_000));
+
+        verify(lineMessagingService).replyMessage(isNull(), eq("U1"), anyString());
+    }
+}
@@ -0,0 +1,106 @@
+package com.lunch.webhook;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebhookEventQueue 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WebhookEventQueue 單元測試")
+class WebhookEventQueueTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private WebhookEventProcessor processor;
+
+    private WebhookEventQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    private JsonNode textEvent(String userId, String text) throws Exception {
+        return objectMapper.readTree("""
+                {"type":"message","source":{"userId":"%s"},"message":{"type":"text","text":"%s"}}
+                """.formatted(userId, text));
+    }
+
+    @Test
+    @DisplayName("同一用戶的事件依收到的順序處理")
+    void testSubmit_PreservesPerUserOrder() throws Exception {
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(40);
+        doAnswer(invocation -> {
+            JsonNode event = invocation.getArgument(0);
+            processed.add(event.path("source").path("userId").asText() + ":" + event.path("message").path("text").asText());
+            done.countDown();
+            return null;
+        }).when(processor).process(any());
+
+        queue = new WebhookEventQueue(processor, 4, 1000, 1000);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(queue.submit(textEvent("U1", String.valueOf(i))));
+            assertTrue(queue.submit(textEvent("U2", String.valueOf(i))));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (String userId : List.of("U1", "U2")) {
+            List<String> order = processed.stream()
+                    .filter(entry -> entry.startsWith(userId + ":"))
+                    .map(entry -> entry.substring(userId.length() + 1))
+                    .toList();
+            assertEquals(20, order.size());
+            for (int i = 0; i < 20; i++) {
+                assertEquals(String.valueOf(i), order.get(i));
+            }
+        }
+
+        queue.shutdown();
+        assertEquals(40, queue.stats().getProcessedCount());
+    }
+
+    @Test
+    @DisplayName("佇列已滿時丟棄事件並計入統計")
+    void testSubmit_RejectsWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(processor).process(any());
+
+        queue = new WebhookEventQueue(processor, 1, 1, 1000);
+        assertTrue(queue.submit(textEvent("U1", "a")));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(queue.submit(textEvent("U1", "b")));
+        assertFalse(queue.submit(textEvent("U1", "c")));
+
+        WebhookQueueStats stats = queue.stats();
+        assertEquals(1, stats.getQueueDepth());
+        assertEquals(1, stats.getRejectedCount());
+
+        release.countDown();
+    }
+}